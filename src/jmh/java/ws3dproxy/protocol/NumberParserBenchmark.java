@@ -0,0 +1,96 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.protocol;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ws3dproxy.server.SimulatedWorld;
+
+/**
+ * The double tokens of a "getall" report of 200 things, as the server prints
+ * them (16-17 digit coordinates), parsed by the JDK from a String per token
+ * and by {@link NumberParser} from the bytes. Run with
+ * {@code ./gradlew jmh -PjmhArgs=NumberParserBenchmark} (add {@code -prof gc}
+ * for the bytes allocated per number).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NumberParserBenchmark {
+
+    private ReportBuffer report;
+    /**
+     * Indexes of the tokens that are doubles.
+     */
+    private int[] doubles;
+
+    @Setup
+    public void setUp() {
+        SimulatedWorld world = new SimulatedWorld(800, 600, 42);
+        world.populate(200);
+        report = new ReportBuffer();
+        report.append(world.execute("getall"));
+        int[] found = new int[report.tokenCount()];
+        int n = 0;
+        for (int i = 0; i < report.tokenCount(); i++) {
+            String token = report.tokenString(i);
+            if (token.indexOf('.') >= 0) {
+                try {
+                    Double.parseDouble(token);
+                    found[n++] = i;
+                } catch (NumberFormatException ex) {
+                    //a name
+                }
+            }
+        }
+        doubles = new int[n];
+        System.arraycopy(found, 0, doubles, 0, n);
+    }
+
+    /**
+     * @return sum of the numbers, in ns per report (divide by the number of
+     * doubles for ns per number)
+     */
+    @Benchmark
+    public double jdkFromTokenString() {
+        double sum = 0;
+        for (int i : doubles) {
+            sum += Double.parseDouble(report.tokenString(i));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double numberParserFromBytes() {
+        double sum = 0;
+        for (int i : doubles) {
+            sum += report.parseDouble(i);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,104 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.protocol;
+
+import java.util.StringTokenizer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ws3dproxy.server.SimulatedWorld;
+
+/**
+ * Decoding of a "getall" report, already received: the former way (a
+ * {@link StringTokenizer} over the report and a String per number) against
+ * the schema of {@link ReportFormats#THING} in both modes. Run with
+ * {@code ./gradlew jmh -PjmhArgs=ReportDecodingBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReportDecodingBenchmark {
+
+    @Param({"50", "200"})
+    public int things;
+
+    private String text;
+    private ReportBuffer report;
+    private final ReportSchema.Record count = ReportFormats.COUNT.newRecord();
+    private final ReportSchema.Record thing = ReportFormats.THING.newRecord();
+
+    @Setup
+    public void setUp() {
+        SimulatedWorld world = new SimulatedWorld(800, 600, 42);
+        world.populate(things);
+        text = world.execute("getall");
+        report = new ReportBuffer();
+        report.append(text);
+    }
+
+    @Benchmark
+    public double tokenizer() {
+        StringTokenizer st = new StringTokenizer(text);
+        int number = Integer.parseInt(st.nextToken());
+        double sum = 0;
+        for (int k = 0; k < number; k++) {
+            String name = st.nextToken();
+            if (name.equals("||")) {
+                name = st.nextToken();
+            }
+            sum += Integer.parseInt(st.nextToken()) + Integer.parseInt(st.nextToken());
+            for (int f = 0; f < 8; f++) {
+                sum += Double.parseDouble(st.nextToken());
+            }
+            st.nextToken(); //color
+            sum += Double.parseDouble(st.nextToken()) + Double.parseDouble(st.nextToken());
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double schemaStrict() {
+        return decode(ReportSchema.Mode.STRICT);
+    }
+
+    @Benchmark
+    public double schemaFast() {
+        return decode(ReportSchema.Mode.FAST);
+    }
+
+    private double decode(ReportSchema.Mode mode) {
+        int i = ReportFormats.COUNT.decode(report, 0, count, mode);
+        int number = count.get(ReportFormats.COUNT_VALUE);
+        double sum = 0;
+        for (int k = 0; k < number; k++) {
+            i = ReportFormats.THING.decode(report, i, thing, mode);
+            sum += thing.get(ReportFormats.THING_X) + thing.get(ReportFormats.THING_Y);
+        }
+        return sum;
+    }
+}
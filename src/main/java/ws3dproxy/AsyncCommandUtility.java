@@ -0,0 +1,151 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy;
+
+import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import ws3dproxy.model.CreatureState;
+import ws3dproxy.protocol.CommandBuilder;
+
+/**
+ * Asynchronous counterpart of {@link CommandUtility}: commands are queued for
+ * the I/O thread of the connection (see {@link Connection#exchangeAsync})
+ * and the caller gets a future instead of waiting for the report. Commands
+ * queued together are pipelined.
+ *
+ * Futures are completed by the I/O thread. A report with an error code, or a
+ * malformed report, completes the future exceptionally with a
+ * {@link CompletionException} whose cause is the {@link CommandExecException}.
+ * Reports are decoded, and the response cache of {@link CommandUtility} used
+ * and invalidated, as by the synchronous commands.
+ */
+public class AsyncCommandUtility {
+
+    private static final Function<String, StringTokenizer> TO_RESPONSE = new Function<String, StringTokenizer>() {
+        @Override
+        public StringTokenizer apply(String returnMessage) {
+            try {
+                return CommandUtility.toResponse(returnMessage);
+            } catch (CommandExecException ex) {
+                throw new CompletionException(ex);
+            }
+        }
+    };
+
+    private static final Function<StringTokenizer, Void> IGNORE = new Function<StringTokenizer, Void>() {
+        @Override
+        public Void apply(StringTokenizer st) {
+            return null;
+        }
+    };
+
+    /**
+     * Sends a command in text format (e.g. "getsack 0").
+     *
+     * @param conn connection to the server
+     * @param command command in text format
+     * @return future of the server report
+     */
+    public static CompletableFuture<StringTokenizer> sendAsync(Connection conn, String command) {
+        return CommandUtility.sendCmdAndGetReportAsync(conn, command).thenApply(TO_RESPONSE);
+    }
+
+    /**
+     * @see CommandUtility#getCreatureState(String)
+     */
+    public static CompletableFuture<CreatureState> getCreatureStateAsync(String nameID) {
+        return getCreatureStateAsync(SocketUtility.getDefaultConnection(), nameID);
+    }
+
+    /**
+     * @see CommandUtility#getCreatureState(Connection, String)
+     */
+    public static CompletableFuture<CreatureState> getCreatureStateAsync(final Connection conn, String nameID) {
+        final String command = CommandBuilder.command("getcreaturestate").arg(nameID).build();
+        return CommandUtility.sendCmdAndGetReportAsync(conn, command).thenApply(new Function<String, CreatureState>() {
+            @Override
+            public CreatureState apply(String returnMessage) {
+                try {
+                    CreatureState cs = CommandUtility.decode(command, returnMessage, CommandUtility.CREATURE_STATE_DECODER);
+                    conn.setCreatureName(cs.getNameID());
+                    return cs;
+                } catch (CommandExecException ex) {
+                    throw new CompletionException(ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * @see CommandUtility#sendSetAngle(String, double, double, double)
+     */
+    public static CompletableFuture<Void> moveAsync(String robotID, double vr, double vl, double w) {
+        return moveAsync(SocketUtility.getDefaultConnection(), robotID, vr, vl, w);
+    }
+
+    /**
+     * @see CommandUtility#sendSetAngle(Connection, String, double, double,
+     * double)
+     */
+    public static CompletableFuture<Void> moveAsync(Connection conn, String robotID, double vr, double vl, double w) {
+        return sendAsync(conn, CommandBuilder.command("setAngle").arg(robotID).arg(vr).arg(vl).arg(w).build()).thenApply(IGNORE);
+    }
+
+    /**
+     * @see CommandUtility#sendGoTo(String, double, double, double, double)
+     */
+    public static CompletableFuture<Void> goToAsync(String robotID, double vr, double vl, double x, double y) {
+        return goToAsync(SocketUtility.getDefaultConnection(), robotID, vr, vl, x, y);
+    }
+
+    /**
+     * @see CommandUtility#sendGoTo(Connection, String, double, double, double,
+     * double)
+     */
+    public static CompletableFuture<Void> goToAsync(Connection conn, String robotID, double vr, double vl, double x, double y) {
+        return sendAsync(conn, CommandBuilder.command("setGoTo").arg(robotID).arg(vr).arg(vl).arg(x).arg(y).build()).thenApply(IGNORE);
+    }
+
+    /**
+     * @see CommandUtility#sendStopCreature(String)
+     */
+    public static CompletableFuture<Void> stopAsync(String robotID) {
+        return stopAsync(SocketUtility.getDefaultConnection(), robotID);
+    }
+
+    /**
+     * @see CommandUtility#sendStopCreature(Connection, String)
+     */
+    public static CompletableFuture<Void> stopAsync(Connection conn, String robotID) {
+        return sendAsync(conn, CommandBuilder.command("stop").arg(robotID).build()).thenApply(IGNORE);
+    }
+
+    /**
+     * @see CommandUtility#sendGetCreatureBagContent(String)
+     */
+    public static CompletableFuture<StringTokenizer> getCreatureBagContentAsync(String robotID) {
+        return getCreatureBagContentAsync(SocketUtility.getDefaultConnection(), robotID);
+    }
+
+    /**
+     * @see CommandUtility#sendGetCreatureBagContent(Connection, String)
+     */
+    public static CompletableFuture<StringTokenizer> getCreatureBagContentAsync(Connection conn, String robotID) {
+        return sendAsync(conn, CommandBuilder.command("getsack").arg(robotID).build());
+    }
+}
@@ -0,0 +1,276 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import ws3dproxy.util.Threads;
+
+/**
+ * The I/O thread of a connection. Commands submitted while the thread is busy
+ * are queued; each time it wakes up, the thread sends everything queued as a
+ * single pipelined batch and completes the futures with the reports, in
+ * order.
+ *
+ * If the connection has {@link PriorityLanes}, the queued commands are taken
+ * in the order of their lanes and a batch has at most
+ * {@link PriorityLanes#getMaxBatch()} commands.
+ *
+ * If the options of the connection have a write batch delay, the thread waits
+ * that long for more commands before sending a batch (see
+ * {@link ws3dproxy.transport.ConnectionOptions#setWriteBatchDelay(long, TimeUnit)}).
+ *
+ * If the connection has a {@link QueueLimit}, it bounds the commands queued
+ * here; a command rejected by it gets a rejection report. The I/O thread
+ * itself (e.g. a dependent stage submitting a command) is never blocked, and
+ * a caller that must not wait (e.g. a timer task) is rejected instead.
+ *
+ * The queue is guarded by a {@link ReentrantLock}, not by its monitor, so that
+ * the I/O thread and the submitters waiting for room release their carrier
+ * thread when they are virtual threads.
+ */
+final class AsyncDispatcher implements Runnable {
+
+    private static final class Request {
+
+        final String command;
+        final CompletableFuture<String> future = new CompletableFuture<String>();
+        final long submitted = System.nanoTime();
+
+        Request(String command) {
+            this.command = command;
+        }
+    }
+
+    private final Connection conn;
+    private final LaneQueue<Request> queue;
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Signalled when a command is queued (the I/O thread waits on it).
+     */
+    private final Condition notEmpty = lock.newCondition();
+    /**
+     * Signalled when the queue may have room (the submitters wait on it).
+     */
+    private final Condition room = lock.newCondition();
+    private final int maxBatch;
+    private final long batchDelayNanos;
+    private final Thread thread;
+    private volatile boolean running = true;
+    /**
+     * Tickets of the submitters waiting for room, so that they enter the
+     * queue in order. Guarded by the lock.
+     */
+    private long nextRoomTicket = 0;
+    private long roomTicket = 0;
+
+    AsyncDispatcher(Connection conn) {
+        this.conn = conn;
+        PriorityLanes lanes = conn.getPriorityLanes();
+        this.queue = new LaneQueue<Request>(lanes);
+        this.maxBatch = (lanes == null) ? Integer.MAX_VALUE : lanes.getMaxBatch();
+        this.batchDelayNanos = conn.getOptions().getWriteBatchDelay(TimeUnit.NANOSECONDS);
+        thread = Threads.start(this, "WS3D-IO " + conn);
+    }
+
+    /**
+     * @param command command in text format
+     * @param mayWait false if the caller must not wait for room: beyond the
+     * queue limit the command is then rejected (unless a perception query is
+     * shed for it)
+     * @return future completed with the report of the command by the I/O
+     * thread
+     */
+    CompletableFuture<String> submit(String command, boolean mayWait) {
+        Request r = new Request(command);
+        if (!running) {
+            r.future.completeExceptionally(new IOException("Connection " + conn + " is closed"));
+            return r.future;
+        }
+        QueueMetrics metrics = conn.getQueueMetrics();
+        Request victim = null;
+        lock.lock();
+        try {
+            //shutdown() clears running under the lock before draining the
+            //queue: a command queued after that would never be completed
+            if (!running) {
+                r.future.completeExceptionally(new IOException("Connection " + conn + " is closed"));
+                return r.future;
+            }
+            QueueLimit limit = conn.getQueueLimit();
+            if (limit != null && (queue.size() >= limit.getCapacity() || nextRoomTicket != roomTicket) && Thread.currentThread() != thread) {
+                if (limit.getOverload() == QueueLimit.Overload.FAIL_FAST || (!mayWait && limit.getOverload() == QueueLimit.Overload.BLOCK)) {
+                    metrics.rejected();
+                    r.future.complete(conn.rejectedReport(command));
+                    return r.future;
+                }
+                if (limit.getOverload() == QueueLimit.Overload.DROP_OLDEST_PERCEPTION) {
+                    victim = queue.pollOldest(CommandLane.PERCEPTION);
+                }
+                if (victim != null) {
+                    metrics.shed();
+                } else if (!mayWait) {
+                    metrics.rejected();
+                    r.future.complete(conn.rejectedReport(command));
+                    return r.future;
+                } else if (!awaitRoom(metrics)) {
+                    r.future.completeExceptionally(new IOException("Connection " + conn + " is closed"));
+                    return r.future;
+                }
+            }
+            queue.add(CommandLane.of(command), r);
+            metrics.enqueued();
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (victim != null) {
+            victim.future.complete(conn.rejectedReport(victim.command));
+        }
+        return r.future;
+    }
+
+    /**
+     * Waits, holding the lock, until it has room for one more
+     * command.
+     *
+     * @return false if the connection was closed meanwhile
+     */
+    private boolean awaitRoom(QueueMetrics metrics) {
+        metrics.blocked();
+        boolean interrupted = false;
+        long ticket = nextRoomTicket++;
+        QueueLimit limit;
+        while (running && (ticket != roomTicket || ((limit = conn.getQueueLimit()) != null && queue.size() >= limit.getCapacity()))) {
+            try {
+                room.await();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        roomTicket++;
+        room.signalAll();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return running;
+    }
+
+    /**
+     * Wakes up the commands waiting for room, after the queue limit of the
+     * connection changed.
+     */
+    void limitChanged() {
+        lock.lock();
+        try {
+            room.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the I/O thread. Commands still queued fail with an IOException.
+     */
+    void shutdown() {
+        lock.lock();
+        try {
+            running = false;
+        } finally {
+            lock.unlock();
+        }
+        thread.interrupt();
+        failAll(new IOException("Connection " + conn + " is closed"));
+    }
+
+    @Override
+    public void run() {
+        List<Request> batch = new ArrayList<Request>();
+        List<String> commands = new ArrayList<String>();
+        while (running) {
+            lock.lock();
+            try {
+                try {
+                    while (queue.isEmpty()) {
+                        notEmpty.await();
+                    }
+                    if (batchDelayNanos > 0) {
+                        long left = batchDelayNanos;
+                        while (queue.size() < maxBatch && left > 0) {
+                            left = notEmpty.awaitNanos(left);
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    break;
+                }
+                long now = System.nanoTime();
+                while (batch.size() < maxBatch && !queue.isEmpty()) {
+                    Request r = queue.poll();
+                    conn.getQueueMetrics().dequeued();
+                    conn.getQueueMetrics().waited(now - r.submitted);
+                    batch.add(r);
+                }
+                //room for the commands waiting for it
+                room.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            for (Request r : batch) {
+                commands.add(r.command);
+            }
+            try {
+                List<String> reports = conn.exchangeBatch(commands, false);
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).future.complete(reports.get(i));
+                }
+            } catch (IOException ex) {
+                for (Request r : batch) {
+                    r.future.completeExceptionally(ex);
+                }
+            } catch (RuntimeException ex) {
+                for (Request r : batch) {
+                    r.future.completeExceptionally(ex);
+                }
+            }
+            batch.clear();
+            commands.clear();
+        }
+        failAll(new IOException("Connection " + conn + " is closed"));
+    }
+
+    private void failAll(IOException ex) {
+        List<Request> failed = new ArrayList<Request>();
+        lock.lock();
+        try {
+            Request r;
+            while ((r = queue.pollAny()) != null) {
+                conn.getQueueMetrics().dequeued();
+                failed.add(r);
+            }
+            room.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Request r : failed) {
+            r.future.completeExceptionally(ex);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy;
+
+import ws3dproxy.protocol.ResponseFramer;
+
+/**
+ * Kind of traffic of a command, from the most to the least urgent (see
+ * {@link PriorityLanes}).
+ */
+public enum CommandLane {
+
+    /**
+     * Motor commands: "setAngle", "setGoTo", "setTurn", "stop", "start".
+     */
+    MOTOR,
+    /**
+     * Actions upon things ("sackit", "eatit", "hideit", "deliver" etc.) and
+     * any command that is neither motor nor perception.
+     */
+    ACTION,
+    /**
+     * Perception queries: "getcreaturestate", "getall", "getsack" etc.
+     */
+    PERCEPTION;
+
+    /**
+     * @param command command in text format
+     * @return the lane of the command
+     */
+    public static CommandLane of(String command) {
+        String verb = ResponseFramer.verbOf(command);
+        if (verb == null) {
+            return ACTION;
+        }
+        if (verb.equals("setAngle") || verb.equals("setGoTo") || verb.equals("setTurn") || verb.equals("stop") || verb.equals("start")) {
+            return MOTOR;
+        }
+        if (verb.startsWith("get") || verb.equals("camera") || verb.equals("closest") || verb.equals("check") || verb.equals("checkXY")) {
+            return PERCEPTION;
+        }
+        return ACTION;
+    }
+}
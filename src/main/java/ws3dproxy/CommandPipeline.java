@@ -0,0 +1,191 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringTokenizer;
+import ws3dproxy.model.CreatureState;
+import ws3dproxy.protocol.CommandBuilder;
+import ws3dproxy.protocol.ReportFormatException;
+
+/**
+ * A batch of commands that are written to the server back-to-back; their
+ * reports are then read and matched to the commands in order. A typical
+ * sense-act cycle (e.g. setAngle + getcreaturestate + getsack) costs about one
+ * round trip instead of one per command.
+ *
+ * Usage:
+ * <pre>
+ * CommandPipeline p = new CommandPipeline(conn);
+ * p.setAngle(robotID, vr, vl, w);
+ * int state = p.getCreatureState(nameID);
+ * p.execute();
+ * CreatureState cs = p.getCreatureStateReport(state);
+ * </pre>
+ *
+ * Each add method returns the position of the command in the batch, which is
+ * later used to get its report. A pipeline may be executed only once.
+ */
+public class CommandPipeline {
+
+    private final Connection conn;
+    private final List<String> commands = new ArrayList<String>();
+    private List<String> reports = null;
+
+    /**
+     * @param conn connection through which the commands are sent
+     */
+    public CommandPipeline(Connection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * Adds a command in text format (e.g. "getsack 0").
+     *
+     * @param command command in text format
+     * @return the position of the command in the batch
+     */
+    public synchronized int add(String command) {
+        if (reports != null) {
+            throw new IllegalStateException("Pipeline already executed");
+        }
+        commands.add(command);
+        return commands.size() - 1;
+    }
+
+    /**
+     * @see CommandUtility#sendSetAngle(String, double, double, double)
+     */
+    public int setAngle(String robotID, double vr, double vl, double w) {
+        return add(CommandBuilder.command("setAngle").arg(robotID).arg(vr).arg(vl).arg(w).build());
+    }
+
+    /**
+     * @see CommandUtility#sendGoTo(String, double, double, double, double)
+     */
+    public int goTo(String robotID, double vr, double vl, double x, double y) {
+        return add(CommandBuilder.command("setGoTo").arg(robotID).arg(vr).arg(vl).arg(x).arg(y).build());
+    }
+
+    /**
+     * @see CommandUtility#sendSetTurn(String, double, double, double)
+     */
+    public int setTurn(String robotID, double speed, double vr, double vl) {
+        return add(CommandBuilder.command("setTurn").arg(robotID).arg(speed).arg(vr).arg(vl).build());
+    }
+
+    /**
+     * @see CommandUtility#sendStopCreature(String)
+     */
+    public int stop(String robotID) {
+        return add(CommandBuilder.command("stop").arg(robotID).build());
+    }
+
+    /**
+     * @see CommandUtility#sendPutInSack(String, String)
+     */
+    public int putInSack(String robotID, String thingName) {
+        return add(CommandBuilder.command("sackit").arg(robotID).arg(thingName).build());
+    }
+
+    /**
+     * @see CommandUtility#sendEatIt(String, String)
+     */
+    public int eatIt(String robotID, String thingName) {
+        return add(CommandBuilder.command("eatit").arg(robotID).arg(thingName).build());
+    }
+
+    /**
+     * @see CommandUtility#sendGetCreatureBagContent(String)
+     */
+    public int getBagContent(String robotID) {
+        return add(CommandBuilder.command("getsack").arg(robotID).build());
+    }
+
+    /**
+     * The report is read with {@link #getCreatureStateReport(int)}.
+     *
+     * @see CommandUtility#getCreatureState(String)
+     */
+    public int getCreatureState(String robotNameID) {
+        return add(CommandBuilder.command("getcreaturestate").arg(robotNameID).build());
+    }
+
+    /**
+     * @see CommandUtility#sendGetWorldEntities()
+     */
+    public int getWorldEntities() {
+        return add("getall ");
+    }
+
+    /**
+     * @return number of commands in the batch
+     */
+    public synchronized int size() {
+        return commands.size();
+    }
+
+    /**
+     * Sends all the commands and reads all the reports.
+     *
+     * @return the raw reports, in the same order as the commands
+     */
+    public synchronized List<String> execute() {
+        if (reports != null) {
+            throw new IllegalStateException("Pipeline already executed");
+        }
+        if (commands.isEmpty()) {
+            reports = Collections.emptyList();
+        } else {
+            reports = Collections.unmodifiableList(conn.exchangeAll(commands));
+        }
+        return reports;
+    }
+
+    /**
+     * Returns the server report of a command of the batch.
+     *
+     * @param position position of the command in the batch
+     * @return report of the command
+     * @throws CommandExecException if the server responded with an error code
+     */
+    public synchronized StringTokenizer getReport(int position) throws CommandExecException {
+        if (reports == null) {
+            throw new IllegalStateException("Pipeline not executed yet");
+        }
+        return CommandUtility.toResponse(reports.get(position));
+    }
+
+    /**
+     * Returns the creature state reported for a "getcreaturestate" command of
+     * the batch.
+     *
+     * @param position position of the command in the batch
+     * @return the creature state
+     * @throws CommandExecException if the server responded with an error code
+     * or the report is malformed
+     */
+    public CreatureState getCreatureStateReport(int position) throws CommandExecException {
+        StringTokenizer st = getReport(position);
+        try {
+            return CommandUtility.parseCreatureState(st);
+        } catch (ReportFormatException ex) {
+            throw new CommandExecException("Bad report of \"" + commands.get(position) + "\": " + ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy;
+
+import ws3dproxy.protocol.ResponseFramer;
+
+/**
+ * This exception is thrown when a command was not sent because too many
+ * commands were waiting for its connection (see
+ * {@link Connection#setQueueLimit(QueueLimit)}).
+ */
+public class CommandRejectedException extends CommandExecException {
+
+    /**
+     * Beginning of the error report that the connection hands back in place
+     * of the report of a rejected command.
+     */
+    public static final String REPORT_PREFIX = ResponseFramer.ERROR_CODE + " Rejected:";
+
+    public CommandRejectedException(String message) {
+        super(message);
+    }
+}
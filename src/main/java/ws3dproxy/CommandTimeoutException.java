@@ -0,0 +1,37 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy;
+
+import ws3dproxy.protocol.ResponseFramer;
+
+/**
+ * This exception is thrown when the report of a command did not arrive
+ * before its deadline (see {@link Connection#setDeadline(String, long,
+ * java.util.concurrent.TimeUnit)}), or when the command was not sent because
+ * its connection is suspect after such a stall.
+ */
+public class CommandTimeoutException extends CommandExecException {
+
+    /**
+     * Beginning of the error report that the connection hands back in place
+     * of a report that did not arrive in time.
+     */
+    public static final String REPORT_PREFIX = ResponseFramer.ERROR_CODE + " Timeout:";
+
+    public CommandTimeoutException(String message) {
+        super(message);
+    }
+}
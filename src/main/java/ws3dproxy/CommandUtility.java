@@ -18,15 +18,26 @@
  **************************************************************************** */
 package ws3dproxy;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import ws3dproxy.model.Creature;
 import ws3dproxy.model.CreatureState;
 import ws3dproxy.model.Leaflet;
 import ws3dproxy.model.Thing;
 import ws3dproxy.model.WorldPoint;
+import ws3dproxy.protocol.CommandBuilder;
+import ws3dproxy.protocol.ReportBuffer;
+import ws3dproxy.protocol.ReportDecoder;
+import ws3dproxy.protocol.ReportFormatException;
+import ws3dproxy.protocol.ReportFormats;
+import ws3dproxy.protocol.ReportSchema;
+import ws3dproxy.protocol.ResponseFramer;
 import ws3dproxy.util.Logger;
 
 /**
@@ -39,18 +50,19 @@ import ws3dproxy.util.Logger;
  */
 public class CommandUtility {
 
-    public static final String ERROR_CODE = "@@@";
-    private static double selfX = 0.0, selfY = 0.0, wheel = 0.0, speed = 0.0, mySelfPitch = 0.0, fuel = 0.0, serotonin = 0.0, endorphine = 0.0, score = 0.0, size = 0.0;
-    private static double selfX1 = 0.0, selfY1 = 0.0, selfX2 = 0.0, selfY2 = 0.0;
-    private static String myselfColor = "No color yet", index = "none";
-    private static String myselfName = "none";
-    private static int motorSys = 2;
-    private static int hasLeaflet = 0;
-    private static int hasCollided = 0;
-    //private static List<Leaflet> leafletList = new ArrayList<Leaflet>();
-    private static List<Leaflet> leafletList;
-    private static CreatureState cs;
-    private static Creature creature;
+    public static final String ERROR_CODE = ResponseFramer.ERROR_CODE;
+    /**
+     * Concurrent "getcreaturestate" of the same creature through the same
+     * connection share a single query.
+     */
+    private static final SingleFlight<Map.Entry<Connection, String>, CreatureState> CREATURE_STATE_FLIGHTS = new SingleFlight<Map.Entry<Connection, String>, CreatureState>();
+    private static final ResponseCache RESPONSE_CACHE = new ResponseCache();
+    static final ReportDecoder<CreatureState> CREATURE_STATE_DECODER = new ReportDecoder<CreatureState>() {
+        @Override
+        public CreatureState decode(ReportBuffer report) {
+            return decodeCreatureState(report);
+        }
+    };
 
     /**
      * Command to create a visual reference (e.g. arrow) at a specific point
@@ -66,11 +78,21 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendNewWaypoint(double x, double y) throws CommandExecException {
+        return sendNewWaypoint(SocketUtility.getDefaultConnection(), x, y);
+    }
+
+    /**
+     * Same as {@link #sendNewWaypoint(double, double)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendNewWaypoint(Connection conn, double x, double y) throws CommandExecException {
 
         SocketUtility.show("Sending waypoint: x= " + x + " y= : " + y);
 
-        String controlMessage = "newwp " + x + " " + y;//newwp <X> <Y>
-        return sendCmdAndGetResponse(controlMessage);
+        String controlMessage = CommandBuilder.command("newwp").arg(x).arg(y).build();//newwp <X> <Y>
+        return sendCmdAndGetResponse(conn, controlMessage);
 
     }
 
@@ -85,11 +107,21 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendEnvironmentDimension(int width, int height) throws CommandExecException {
+        return sendEnvironmentDimension(SocketUtility.getDefaultConnection(), width, height);
+    }
+
+    /**
+     * Same as {@link #sendEnvironmentDimension(int, int)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendEnvironmentDimension(Connection conn, int width, int height) throws CommandExecException {
 
         SocketUtility.show("Sending dimension: width= " + width + " height= : " + height);
 
-        String controlMessage = "setenv " + width + " " + height;//setenv <width> <height>
-        return sendCmdAndGetResponse(controlMessage);
+        String controlMessage = CommandBuilder.command("setenv").arg(width).arg(height).build();//setenv <width> <height>
+        return sendCmdAndGetResponse(conn, controlMessage);
 
     }
 
@@ -105,10 +137,20 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendDelWaypoint(double x, double y) throws CommandExecException {
+        return sendDelWaypoint(SocketUtility.getDefaultConnection(), x, y);
+    }
+
+    /**
+     * Same as {@link #sendDelWaypoint(double, double)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendDelWaypoint(Connection conn, double x, double y) throws CommandExecException {
         SocketUtility.show("Delete waypoint: x= " + x + " y= : " + y);
 
-        String controlMessage = "delwp " + x + " " + y;//delwp <X> <Y>
-        return sendCmdAndGetResponse(controlMessage);
+        String controlMessage = CommandBuilder.command("delwp").arg(x).arg(y).build();//delwp <X> <Y>
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -119,8 +161,17 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendStartCreature(String robotID) throws CommandExecException {
-        String controlMessage = "start " + robotID;
-        return sendCmdAndGetResponse(controlMessage);
+        return sendStartCreature(SocketUtility.getDefaultConnection(), robotID);
+    }
+
+    /**
+     * Same as {@link #sendStartCreature(String)}, through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendStartCreature(Connection conn, String robotID) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("start").arg(robotID).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -131,8 +182,17 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendStopCreature(String robotID) throws CommandExecException {
-        String controlMessage = "stop " + robotID;
-        return sendCmdAndGetResponse(controlMessage);
+        return sendStopCreature(SocketUtility.getDefaultConnection(), robotID);
+    }
+
+    /**
+     * Same as {@link #sendStopCreature(String)}, through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendStopCreature(Connection conn, String robotID) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("stop").arg(robotID).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -152,9 +212,19 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendGoTo(String robotID, double vr, double vl, double x, double y) throws CommandExecException {
+        return sendGoTo(SocketUtility.getDefaultConnection(), robotID, vr, vl, x, y);
+    }
+
+    /**
+     * Same as {@link #sendGoTo(String, double, double, double, double)},
+     * through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendGoTo(Connection conn, String robotID, double vr, double vl, double x, double y) throws CommandExecException {
         SocketUtility.show("Sending speeds: Vr= " + vr + " Vl= " + vl);
-        String controlMessage = "setGoTo " + robotID + " " + vr + " " + vl + " " + x + " " + y;
-        return sendCmdAndGetResponse(controlMessage);
+        String controlMessage = CommandBuilder.command("setGoTo").arg(robotID).arg(vr).arg(vl).arg(x).arg(y).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -171,10 +241,20 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendSetAngle(String robotID, double vr, double vl, double w) throws CommandExecException {
+        return sendSetAngle(SocketUtility.getDefaultConnection(), robotID, vr, vl, w);
+    }
+
+    /**
+     * Same as {@link #sendSetAngle(String, double, double, double)},
+     * through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendSetAngle(Connection conn, String robotID, double vr, double vl, double w) throws CommandExecException {
         SocketUtility.show("Sending speeds: Vr= " + vr + " Vl= " + vl + " and w= " + w);
 
-        String controlMessage = "setAngle " + robotID + " " + vr + " " + vl + " " + w;//set <ID> <Vv> <Vl> <w>
-        return sendCmdAndGetResponse(controlMessage);
+        String controlMessage = CommandBuilder.command("setAngle").arg(robotID).arg(vr).arg(vl).arg(w).build();//set <ID> <Vv> <Vl> <w>
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -199,10 +279,20 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendSetTurn(String robotID, double speed, double vr, double vl) throws CommandExecException {
+        return sendSetTurn(SocketUtility.getDefaultConnection(), robotID, speed, vr, vl);
+    }
+
+    /**
+     * Same as {@link #sendSetTurn(String, double, double, double)},
+     * through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendSetTurn(Connection conn, String robotID, double speed, double vr, double vl) throws CommandExecException {
         SocketUtility.show("Sending speeds: Vr= " + vr + " Vl= " + vl + " and speed= " + speed);
 
-        String controlMessage = "setTurn " + robotID + " " + speed + " " + vr + " " + vl;
-        return sendCmdAndGetResponse(controlMessage);
+        String controlMessage = CommandBuilder.command("setTurn").arg(robotID).arg(speed).arg(vr).arg(vl).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -221,9 +311,18 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendGenLeaflet() throws CommandExecException {
+        return sendGenLeaflet(SocketUtility.getDefaultConnection());
+    }
+
+    /**
+     * Same as {@link #sendGenLeaflet()}, through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendGenLeaflet(Connection conn) throws CommandExecException {
         //randomly generates a new leaflet:
         String controlMessage = new String("leaflet");
-        return sendCmdAndGetResponse(controlMessage);
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -238,9 +337,19 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendDeliverLeaflet(String robotID, String leafletID) throws CommandExecException {
+        return sendDeliverLeaflet(SocketUtility.getDefaultConnection(), robotID, leafletID);
+    }
+
+    /**
+     * Same as {@link #sendDeliverLeaflet(String, String)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendDeliverLeaflet(Connection conn, String robotID, String leafletID) throws CommandExecException {
         //randomly generates a new leaflet:
-        String controlMessage = "deliver " + robotID + " " + leafletID;
-        return sendCmdAndGetResponse(controlMessage);
+        String controlMessage = CommandBuilder.command("deliver").arg(robotID).arg(leafletID).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -255,10 +364,20 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendPutInSack(String robotID, String thingName) throws CommandExecException {
+        return sendPutInSack(SocketUtility.getDefaultConnection(), robotID, thingName);
+    }
+
+    /**
+     * Same as {@link #sendPutInSack(String, String)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendPutInSack(Connection conn, String robotID, String thingName) throws CommandExecException {
         SocketUtility.show("Sending thing name: " + thingName);
 
-        String controlMessage = new String("sackit " + robotID + " " + thingName);//old graspit
-        return sendCmdAndGetResponse(controlMessage);
+        String controlMessage = CommandBuilder.command("sackit").arg(robotID).arg(thingName).build();//old graspit
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -272,10 +391,19 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendEatIt(String robotID, String thingName) throws CommandExecException {
+        return sendEatIt(SocketUtility.getDefaultConnection(), robotID, thingName);
+    }
+
+    /**
+     * Same as {@link #sendEatIt(String, String)}, through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendEatIt(Connection conn, String robotID, String thingName) throws CommandExecException {
         SocketUtility.show("Sending food name: " + thingName);
 
-        String controlMessage = "eatit " + robotID + " " + thingName;//eatit <ID> <thing name>
-        return sendCmdAndGetResponse(controlMessage);
+        String controlMessage = CommandBuilder.command("eatit").arg(robotID).arg(thingName).build();//eatit <ID> <thing name>
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -290,10 +418,20 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendDropIt(String robotID, int type, int color) throws CommandExecException {
+        return sendDropIt(SocketUtility.getDefaultConnection(), robotID, type, color);
+    }
+
+    /**
+     * Same as {@link #sendDropIt(String, int, int)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendDropIt(Connection conn, String robotID, int type, int color) throws CommandExecException {
         SocketUtility.show("Sending drop: type= " + type + " color= " + color);
         //drop <CreaturePoolIndex> <Type> <Thing color (for jewels) or any number for food> - Type: 3-Jewel;
-        String controlMessage = new String("drop " + robotID + " " + type + " " + color);
-        return sendCmdAndGetResponse(controlMessage);
+        String controlMessage = CommandBuilder.command("drop").arg(robotID).arg(type).arg(color).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -307,10 +445,20 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendHideIt(String robotID, String thingName) throws CommandExecException {
+        return sendHideIt(SocketUtility.getDefaultConnection(), robotID, thingName);
+    }
+
+    /**
+     * Same as {@link #sendHideIt(String, String)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendHideIt(Connection conn, String robotID, String thingName) throws CommandExecException {
         SocketUtility.show("Sending thing name: " + thingName);
 
-        String controlMessage = "hideit " + robotID + " " + thingName;//hideit <ID> <thing name>
-        return sendCmdAndGetResponse(controlMessage);
+        String controlMessage = CommandBuilder.command("hideit").arg(robotID).arg(thingName).build();//hideit <ID> <thing name>
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -326,10 +474,20 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendUnhideIt(String robotID, String thingName) throws CommandExecException {
+        return sendUnhideIt(SocketUtility.getDefaultConnection(), robotID, thingName);
+    }
+
+    /**
+     * Same as {@link #sendUnhideIt(String, String)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendUnhideIt(Connection conn, String robotID, String thingName) throws CommandExecException {
         SocketUtility.show("Sending thing name: " + thingName);
 
-        String controlMessage = new String("unhideit " + robotID + " " + thingName);//unhideit <ID> <thing name>
-        return sendCmdAndGetResponse(controlMessage);
+        String controlMessage = CommandBuilder.command("unhideit").arg(robotID).arg(thingName).build();//unhideit <ID> <thing name>
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -340,12 +498,20 @@ public class CommandUtility {
      * invalid parameter
      */
     public static boolean requestGameStatus() throws CommandExecException {
+        return requestGameStatus(SocketUtility.getDefaultConnection());
+    }
+
+    /**
+     * Same as {@link #requestGameStatus()}, through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static boolean requestGameStatus(Connection conn) throws CommandExecException {
         boolean ret = false;
         SocketUtility.show("Sending request if game has started.");
 
         String controlMessage = "game";
-        SocketUtility.sendMessage(controlMessage);
-        String returnMessage = SocketUtility.receiveMessage();
+        String returnMessage = conn.exchange(controlMessage);
         checkIfErrorMessage(returnMessage);
         SocketUtility.show("----->>>>Server response: " + returnMessage);
 
@@ -366,12 +532,21 @@ public class CommandUtility {
      * invalid parameter
      */
     public static boolean ifCreatureExists(String robotID) throws CommandExecException {
+        return ifCreatureExists(SocketUtility.getDefaultConnection(), robotID);
+    }
+
+    /**
+     * Same as {@link #ifCreatureExists(String)}, through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static boolean ifCreatureExists(Connection conn, String robotID) throws CommandExecException {
         boolean ret = false;
         String firstParam = "";
         //command "check" returns two parameters. First: true if creature exists; false otherwise. 
         // Second: creatureNameID
-        String controlMessage = "check " + robotID;
-        StringTokenizer st = sendCmdAndGetResponse(controlMessage);
+        String controlMessage = CommandBuilder.command("check").arg(robotID).build();
+        StringTokenizer st = sendCmdAndGetResponse(conn, controlMessage);
         if (st.hasMoreTokens()) {
             firstParam = st.nextToken();
             if (firstParam.equals("yes")) {
@@ -379,7 +554,7 @@ public class CommandUtility {
             }
         }
         if (st.hasMoreTokens()) {
-            myselfName = st.nextToken();
+            conn.setCreatureName(st.nextToken());
 
         }
 
@@ -399,9 +574,18 @@ public class CommandUtility {
      * invalid parameter
      */
     public static String checkCreature(double X, double Y, double pitch) throws CommandExecException {
-        String controlMessage = "checkXY " + X + " " + Y + " " + pitch;
-        SocketUtility.sendMessage(controlMessage);
-        String msg = SocketUtility.receiveMessage();
+        return checkCreature(SocketUtility.getDefaultConnection(), X, Y, pitch);
+    }
+
+    /**
+     * Same as {@link #checkCreature(double, double, double)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static String checkCreature(Connection conn, double X, double Y, double pitch) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("checkXY").arg(X).arg(Y).arg(pitch).build();
+        String msg = conn.exchange(controlMessage);
         if (!msg.equals("")) {
             checkIfErrorMessage(msg);
         }
@@ -415,9 +599,17 @@ public class CommandUtility {
      * @throws CommandExecException
      */
     public static String sendResetWorld() throws CommandExecException {
+        return sendResetWorld(SocketUtility.getDefaultConnection());
+    }
+
+    /**
+     * Same as {@link #sendResetWorld()}, through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static String sendResetWorld(Connection conn) throws CommandExecException {
         String controlMessage = "worldReset ";
-        SocketUtility.sendMessage(controlMessage);
-        String msg = SocketUtility.receiveMessage();
+        String msg = conn.exchange(controlMessage);
         if (!msg.equals("")) {
             checkIfErrorMessage(msg);
         }
@@ -435,8 +627,17 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer setMindName(String robotID) throws CommandExecException {
-        String controlMessage = "mindName " + robotID;
-        return sendCmdAndGetResponse(controlMessage);
+        return setMindName(SocketUtility.getDefaultConnection(), robotID);
+    }
+
+    /**
+     * Same as {@link #setMindName(String)}, through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer setMindName(Connection conn, String robotID) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("mindName").arg(robotID).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -455,8 +656,17 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendStartCamera(String robotID) throws CommandExecException {
-        String controlMessage = "camera " + robotID;
-        return sendCmdAndGetResponse(controlMessage);
+        return sendStartCamera(SocketUtility.getDefaultConnection(), robotID);
+    }
+
+    /**
+     * Same as {@link #sendStartCamera(String)}, through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendStartCamera(Connection conn, String robotID) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("camera").arg(robotID).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -469,8 +679,31 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendGetSimulationParameters() throws CommandExecException {
+        return sendGetSimulationParameters(SocketUtility.getDefaultConnection());
+    }
+
+    /**
+     * Same as {@link #sendGetSimulationParameters()}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendGetSimulationParameters(Connection conn) throws CommandExecException {
         String controlMessage = "getsimulpars";
-        return sendCmdAndGetResponse(controlMessage);
+        return sendCmdAndGetResponse(conn, controlMessage);
+    }
+
+    /**
+     * Same as {@link #sendGetSimulationParameters(Connection)}, the report
+     * being decoded (see {@link ReportFormats#SIMULATION_PARAMETERS}). The
+     * report may come from the response cache.
+     *
+     * @param conn connection to the server
+     * @param decoder decoder of the report
+     */
+    public static <T> T sendGetSimulationParameters(Connection conn, ReportDecoder<T> decoder) throws CommandExecException {
+        String controlMessage = "getsimulpars";
+        return decode(controlMessage, sendCmdAndGetReport(conn, controlMessage), decoder);
     }
 
     /**
@@ -483,8 +716,17 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendGetFreeMemory() throws CommandExecException {
+        return sendGetFreeMemory(SocketUtility.getDefaultConnection());
+    }
+
+    /**
+     * Same as {@link #sendGetFreeMemory()}, through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendGetFreeMemory(Connection conn) throws CommandExecException {
         String controlMessage = "memory";
-        return sendCmdAndGetResponse(controlMessage);
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -496,8 +738,17 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendGetClock() throws CommandExecException {
+        return sendGetClock(SocketUtility.getDefaultConnection());
+    }
+
+    /**
+     * Same as {@link #sendGetClock()}, through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendGetClock(Connection conn) throws CommandExecException {
         String controlMessage = "getclock";
-        return sendCmdAndGetResponse(controlMessage);
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -511,8 +762,18 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendGetCreaturePosition(String robotID) throws CommandExecException {
-        String controlMessage = "getcreatcoords " + robotID;
-        return sendCmdAndGetResponse(controlMessage);
+        return sendGetCreaturePosition(SocketUtility.getDefaultConnection(), robotID);
+    }
+
+    /**
+     * Same as {@link #sendGetCreaturePosition(String)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendGetCreaturePosition(Connection conn, String robotID) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("getcreatcoords").arg(robotID).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -526,8 +787,18 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendGetCreatureInfo(String robotID) throws CommandExecException {
-        String controlMessage = "getcreatinfo " + robotID;
-        return sendCmdAndGetResponse(controlMessage);
+        return sendGetCreatureInfo(SocketUtility.getDefaultConnection(), robotID);
+    }
+
+    /**
+     * Same as {@link #sendGetCreatureInfo(String)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendGetCreatureInfo(Connection conn, String robotID) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("getcreatinfo").arg(robotID).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -543,8 +814,31 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendGetCreatureBagContent(String robotID) throws CommandExecException {
-        String controlMessage = "getsack " + robotID;
-        return sendCmdAndGetResponse(controlMessage);
+        return sendGetCreatureBagContent(SocketUtility.getDefaultConnection(), robotID);
+    }
+
+    /**
+     * Same as {@link #sendGetCreatureBagContent(String)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendGetCreatureBagContent(Connection conn, String robotID) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("getsack").arg(robotID).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
+    }
+
+    /**
+     * Same as {@link #sendGetCreatureBagContent(Connection, String)}, the
+     * report being decoded from its bytes (see
+     * {@link ReportFormats#BAG}).
+     *
+     * @param conn connection to the server
+     * @param robotID ID of the creature
+     * @param decoder decoder of the report
+     */
+    public static <T> T sendGetCreatureBagContent(Connection conn, String robotID, ReportDecoder<T> decoder) throws CommandExecException {
+        return conn.exchange(CommandBuilder.command("getsack").arg(robotID).build(), decoder);
     }
 
     /**
@@ -566,8 +860,18 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendGetAffordances(String thingID) throws CommandExecException {
-        String controlMessage = "getcreatcoords " + thingID;
-        return sendCmdAndGetResponse(controlMessage);
+        return sendGetAffordances(SocketUtility.getDefaultConnection(), thingID);
+    }
+
+    /**
+     * Same as {@link #sendGetAffordances(String)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendGetAffordances(Connection conn, String thingID) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("getcreatcoords").arg(thingID).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -579,8 +883,18 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendGetEnvironmentDimension() throws CommandExecException {
+        return sendGetEnvironmentDimension(SocketUtility.getDefaultConnection());
+    }
+
+    /**
+     * Same as {@link #sendGetEnvironmentDimension()}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendGetEnvironmentDimension(Connection conn) throws CommandExecException {
         String controlMessage = "getenvironmen ";
-        return sendCmdAndGetResponse(controlMessage);
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -593,8 +907,17 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendGetNumberOfEntities() throws CommandExecException {
+        return sendGetNumberOfEntities(SocketUtility.getDefaultConnection());
+    }
+
+    /**
+     * Same as {@link #sendGetNumberOfEntities()}, through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendGetNumberOfEntities(Connection conn) throws CommandExecException {
         String controlMessage = "getNumEntities ";
-        return sendCmdAndGetResponse(controlMessage);
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -611,8 +934,17 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendGetWorldEntities() throws CommandExecException {
+        return sendGetWorldEntities(SocketUtility.getDefaultConnection());
+    }
+
+    /**
+     * Same as {@link #sendGetWorldEntities()}, through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendGetWorldEntities(Connection conn) throws CommandExecException {
         String controlMessage = "getall ";
-        return sendCmdAndGetResponse(controlMessage);
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -626,8 +958,17 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendGetClosest(String robotID) throws CommandExecException {
+        return sendGetClosest(SocketUtility.getDefaultConnection(), robotID);
+    }
+
+    /**
+     * Same as {@link #sendGetClosest(String)}, through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendGetClosest(Connection conn, String robotID) throws CommandExecException {
         String controlMessage = "closest";
-        return sendCmdAndGetResponse(controlMessage);
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -642,8 +983,18 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendNewCreature(double X, double Y, double pitch) throws CommandExecException {
-        String controlMessage = "new " + X + " " + Y + " " + pitch;
-        return sendCmdAndGetResponse(controlMessage);
+        return sendNewCreature(SocketUtility.getDefaultConnection(), X, Y, pitch);
+    }
+
+    /**
+     * Same as {@link #sendNewCreature(double, double, double)},
+     * through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendNewCreature(Connection conn, double X, double Y, double pitch) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("new").arg(X).arg(Y).arg(pitch).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -658,8 +1009,18 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendNewCreature(double X, double Y, double pitch, int color) throws CommandExecException {
-        String controlMessage = "new " + X + " " + Y + " " + pitch + " " + color;
-        return sendCmdAndGetResponse(controlMessage);
+        return sendNewCreature(SocketUtility.getDefaultConnection(), X, Y, pitch, color);
+    }
+
+    /**
+     * Same as {@link #sendNewCreature(double, double, double, int)},
+     * through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendNewCreature(Connection conn, double X, double Y, double pitch, int color) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("new").arg(X).arg(Y).arg(pitch).arg(color).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -673,8 +1034,18 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendNewCage(double X, double Y) throws CommandExecException {
-        String controlMessage = "cage " + X + " " + Y;
-        return sendCmdAndGetResponse(controlMessage);
+        return sendNewCage(SocketUtility.getDefaultConnection(), X, Y);
+    }
+
+    /**
+     * Same as {@link #sendNewCage(double, double)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendNewCage(Connection conn, double X, double Y) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("cage").arg(X).arg(Y).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -689,8 +1060,18 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendNewFood(int type, double X, double Y) throws CommandExecException {
-        String controlMessage = "food " + type + " " + X + " " + Y;
-        return sendCmdAndGetResponse(controlMessage);
+        return sendNewFood(SocketUtility.getDefaultConnection(), type, X, Y);
+    }
+
+    /**
+     * Same as {@link #sendNewFood(int, double, double)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendNewFood(Connection conn, int type, double X, double Y) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("food").arg(type).arg(X).arg(Y).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -706,8 +1087,18 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendNewFoodInBatch(int type, int number, String X_Y) throws CommandExecException {
-        String controlMessage = "batchoffood " + type + " " + number + " " + X_Y;
-        return sendCmdAndGetResponse(controlMessage);
+        return sendNewFoodInBatch(SocketUtility.getDefaultConnection(), type, number, X_Y);
+    }
+
+    /**
+     * Same as {@link #sendNewFoodInBatch(int, int, String)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendNewFoodInBatch(Connection conn, int type, int number, String X_Y) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("batchoffood").arg(type).arg(number).arg(X_Y).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -723,8 +1114,18 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendNewJewelsInBatch(int type, int number, String X_Y) throws CommandExecException {
-        String controlMessage = "batchofjewels " + type + " " + number + " " + X_Y;
-        return sendCmdAndGetResponse(controlMessage);
+        return sendNewJewelsInBatch(SocketUtility.getDefaultConnection(), type, number, X_Y);
+    }
+
+    /**
+     * Same as {@link #sendNewJewelsInBatch(int, int, String)},
+     * through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendNewJewelsInBatch(Connection conn, int type, int number, String X_Y) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("batchofjewels").arg(type).arg(number).arg(X_Y).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -739,13 +1140,33 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendNewJewel(int type, double X, double Y) throws CommandExecException {
-        String controlMessage = "jewel " + type + " " + X + " " + Y;
-        return sendCmdAndGetResponse(controlMessage);
+        return sendNewJewel(SocketUtility.getDefaultConnection(), type, X, Y);
+    }
+
+    /**
+     * Same as {@link #sendNewJewel(int, double, double)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendNewJewel(Connection conn, int type, double X, double Y) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("jewel").arg(type).arg(X).arg(Y).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     public static synchronized StringTokenizer sendNewDeliverySpot(int type, double X, double Y) throws CommandExecException {
-        String controlMessage = "newDeliverySpot " + type + " " + X + " " + Y;
-        return sendCmdAndGetResponse(controlMessage);
+        return sendNewDeliverySpot(SocketUtility.getDefaultConnection(), type, X, Y);
+    }
+
+    /**
+     * Same as {@link #sendNewDeliverySpot(int, double, double)},
+     * through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendNewDeliverySpot(Connection conn, int type, double X, double Y) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("newDeliverySpot").arg(type).arg(X).arg(Y).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -762,8 +1183,18 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendNewBrick(int type, double X1, double Y1, double X2, double Y2) throws CommandExecException {
-        String controlMessage = "brick " + type + " " + X1 + " " + Y1 + " " + X2 + " " + Y2;
-        return sendCmdAndGetResponse(controlMessage);
+        return sendNewBrick(SocketUtility.getDefaultConnection(), type, X1, Y1, X2, Y2);
+    }
+
+    /**
+     * Same as {@link #sendNewBrick(int, double, double, double, double)},
+     * through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendNewBrick(Connection conn, int type, double X1, double Y1, double X2, double Y2) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("brick").arg(type).arg(X1).arg(Y1).arg(X2).arg(Y2).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -779,8 +1210,18 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendGetCreatureState(String robotNameID) throws CommandExecException {
-        String controlMessage = "getcreaturestate " + robotNameID;
-        return sendCmdAndGetResponse(controlMessage);
+        return sendGetCreatureState(SocketUtility.getDefaultConnection(), robotNameID);
+    }
+
+    /**
+     * Same as {@link #sendGetCreatureState(String)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendGetCreatureState(Connection conn, String robotNameID) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("getcreaturestate").arg(robotNameID).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -793,8 +1234,17 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendRefuel(String robotID) throws CommandExecException {
-        String controlMessage = "refuel " + robotID;
-        return sendCmdAndGetResponse(controlMessage);
+        return sendRefuel(SocketUtility.getDefaultConnection(), robotID);
+    }
+
+    /**
+     * Same as {@link #sendRefuel(String)}, through the given connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendRefuel(Connection conn, String robotID) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("refuel").arg(robotID).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -808,8 +1258,18 @@ public class CommandUtility {
      * invalid parameter
      */
     public static synchronized StringTokenizer sendDeleteThing(int type, String thingID) throws CommandExecException {
-        String controlMessage = "deleteth " + type + " " + thingID;
-        return sendCmdAndGetResponse(controlMessage);
+        return sendDeleteThing(SocketUtility.getDefaultConnection(), type, thingID);
+    }
+
+    /**
+     * Same as {@link #sendDeleteThing(int, String)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static StringTokenizer sendDeleteThing(Connection conn, int type, String thingID) throws CommandExecException {
+        String controlMessage = CommandBuilder.command("deleteth").arg(type).arg(thingID).build();
+        return sendCmdAndGetResponse(conn, controlMessage);
     }
 
     /**
@@ -821,9 +1281,18 @@ public class CommandUtility {
      * @return
      */
     public static synchronized Creature initializeCreature(String indexID, String nameID) {
-        myselfName = nameID;
-        creature = initializeCreature(indexID);
-        return creature;
+        return initializeCreature(SocketUtility.getDefaultConnection(), indexID, nameID);
+    }
+
+    /**
+     * Same as {@link #initializeCreature(String, String)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static Creature initializeCreature(Connection conn, String indexID, String nameID) {
+        conn.setCreatureName(nameID);
+        return createCreatureFromState(conn, nameID);
     }
 
     /**
@@ -834,22 +1303,25 @@ public class CommandUtility {
      * @return
      */
     public static synchronized Creature initializeCreature(String indexID) {
-        creature = null;
+        return initializeCreature(SocketUtility.getDefaultConnection(), indexID);
+    }
+
+    /**
+     * Same as {@link #initializeCreature(String)}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     */
+    public static Creature initializeCreature(Connection conn, String indexID) {
+        //the name was already read by ifCreatureExists
+        return createCreatureFromState(conn, conn.getCreatureName());
+    }
+
+    private static Creature createCreatureFromState(Connection conn, String nameID) {
+        Creature creature = null;
         try {
-            //myselfName was already initialized in ifCreatureExists
-            //return initializeCreature(indexID, myselfName);
-            cs = CommandUtility.getCreatureState(myselfName);
-            myselfColor = cs.getColorName();
-            speed = cs.getSpeed();
-            wheel = cs.getWheel();
-            size = cs.getCreatureSize();
-            mySelfPitch = cs.getPitch();
-            motorSys = cs.getMotorSys();
-            fuel = cs.getFuel();
-            serotonin = cs.getSerotonin();
-            endorphine = cs.getEndorphine();
-            creature = Creature.getInstance(cs);
-            
+            CreatureState cs = getCreatureState(conn, nameID);
+            creature = Creature.getInstance(cs, conn);
 
         } catch (CommandExecException ex) {
             Logger.logException(CommandUtility.class.getName(), ex);
@@ -869,403 +1341,190 @@ public class CommandUtility {
      * @throws CommandExecException An exception is thrown in case of missing or
      * invalid parameter
      */
-    public static synchronized CreatureState getCreatureState(String nameID) throws CommandExecException {
-
-        HashMap<String, Integer[]> leafletItemsMap = new HashMap<String, Integer[]>();
-
-        String command = "";
-
-        double x1 = 0.0, x2 = 0.0, y1 = 0.0, y2 = 0.0, thingPitch = 0.0, hardness = 0.0, energy = 0.0, shininess = 0.0;
-        double comX = 0.0, comY = 0.0;
-        float distance = 0;
-        String thingName = "none";
-        int category = 0;
-        int isOccluded = 0;
-        int number = 0; //number of Thing in visual sensor
-        int spuriousNum = 0;
-        int numberOfLeaflets = 0;
-        int numberOfLeafletItems = 0;
-        long leafletID = 0;
-        int payment = 0;
-        int situationOfLeaflet = 0;
-        String itemKey = "";
-        Integer totalNumber = 0;
-        Integer collected = 0;
-        String thingColor = "No color yet";
-        List<Thing> thingsInVision = new ArrayList<Thing>();
-        List<Thing> thingsInFrustrum = new ArrayList<Thing>();
-        String actionData = " ";
-
-        StringTokenizer st = CommandUtility.sendGetCreatureState(nameID);
-
-        ///////////////////Creature data:
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - myName missing!");
-        } else {
-            command = st.nextToken();
-            myselfName = command; //string
-        }
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - index is missing!");
-        } else {
-            index = st.nextToken();
-        }
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - Center of mass X is missing!");
-        } else {
-            command = st.nextToken();
-            selfX = Double.parseDouble(command);
-
-        }
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - Center of mass Y is missing!");
-        } else {
-            command = st.nextToken();
-            selfY = Double.parseDouble(command);
-
-        }
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - creature size missing!");
-        } else {
-            command = st.nextToken();
-            size = Double.parseDouble(command);
-
-        }
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - pitch missing!");
-        } else {
-            command = st.nextToken();
-            mySelfPitch = Double.parseDouble(command);
-//            mySelfPitch = Math.toRadians(mySelfPitch) + Constants.M_PI_2;
-            mySelfPitch = Math.toRadians(mySelfPitch);
-
-        }
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - motor system missing!");
-
-        } else {
-            command = st.nextToken();
-            motorSys = Integer.parseInt(command);
-        }
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - wheel missing!");
-        } else {
-            command = st.nextToken();
-            wheel = Double.parseDouble(command);
-        }
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - speed missing!");
-        } else {
-            command = st.nextToken();
-            speed = Double.parseDouble(command);
-        }
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - fuel missing !");
-        } else {
-            command = st.nextToken();
-            fuel = Double.parseDouble(command);
+    public static CreatureState getCreatureState(String nameID) throws CommandExecException {
+        return getCreatureState(SocketUtility.getDefaultConnection(), nameID);
+    }
 
-        }
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - serotonin missing !");
-        } else {
-            command = st.nextToken();
-            serotonin = Double.parseDouble(command);
-        }
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - endorphine missing !");
-        } else {
-            command = st.nextToken();
-            endorphine = Double.parseDouble(command);
-        }
+    /**
+     * Same as {@link #getCreatureState(String)}, through the given connection.
+     * A caller that asks for the state of a creature while the same query is
+     * in flight shares its result (see {@link SingleFlight}).
+     *
+     * @param conn connection to the server
+     */
+    public static CreatureState getCreatureState(Connection conn, String nameID) throws CommandExecException {
+        return getCreatureState(conn, nameID, CREATURE_STATE_DECODER);
+    }
 
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - score is missing !");
+    /**
+     * Same as {@link #getCreatureState(Connection, String)}, the report being
+     * decoded by the given decoder (e.g. a {@link CreatureStateDecoder}, which
+     * reuses its objects from report to report). Such a decoder keeps state
+     * from one report to the next, so the query is not shared with the other
+     * callers: each call decodes its own report.
+     *
+     * @param conn connection to the server
+     * @param nameID ID of the Creature
+     * @param decoder decoder of the report
+     */
+    public static CreatureState getCreatureState(final Connection conn, final String nameID, final ReportDecoder<CreatureState> decoder) throws CommandExecException {
+        CreatureState cs;
+        if (decoder != CREATURE_STATE_DECODER) {
+            cs = conn.exchange(CommandBuilder.command("getcreaturestate").arg(nameID).build(), decoder);
         } else {
-            command = st.nextToken();
-            score = Double.parseDouble(command);
+            cs = CREATURE_STATE_FLIGHTS.execute(new AbstractMap.SimpleImmutableEntry<Connection, String>(conn, nameID), new SingleFlight.Query<CreatureState>() {
+                @Override
+                public CreatureState execute() throws CommandExecException {
+                    //decoded from the bytes of the report
+                    return conn.exchange(CommandBuilder.command("getcreaturestate").arg(nameID).build(), decoder);
+                }
+            });
         }
+        conn.setCreatureName(cs.getNameID());
+        return cs;
+    }
 
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - X1 is missing!");
-        } else {
-            command = st.nextToken();
-            selfX1 = Double.parseDouble(command);
-
-        }
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - Y1 is missing!");
-        } else {
-            command = st.nextToken();
-            selfY1 = Double.parseDouble(command);
+    /**
+     * @return the single-flight of "getcreaturestate", e.g. to know how many
+     * queries were shared
+     */
+    public static SingleFlight<Map.Entry<Connection, String>, CreatureState> getCreatureStateFlights() {
+        return CREATURE_STATE_FLIGHTS;
+    }
 
-        }
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - X2 is missing!");
-        } else {
-            command = st.nextToken();
-            selfX2 = Double.parseDouble(command);
+    /**
+     * @return the cache of the near-static queries ("getsimulpars",
+     * "getenvironmen", "getNumEntities"), e.g. to change their time to live or
+     * to know how many reports were served from it
+     */
+    public static ResponseCache getResponseCache() {
+        return RESPONSE_CACHE;
+    }
 
+    /**
+     * Builds the creature state from the server report of a "getcreaturestate"
+     * command.
+     *
+     * @param st tokens of the server report
+     * @return the creature state that encapsulates its attributes such as
+     * position, color, pitch, energy level etc
+     * @see #getCreatureState(String)
+     */
+    static CreatureState parseCreatureState(StringTokenizer st) {
+        StringBuilder sb = new StringBuilder();
+        while (st.hasMoreTokens()) {
+            sb.append(st.nextToken()).append(' ');
         }
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - Y2 is missing!");
-        } else {
-            command = st.nextToken();
-            selfY2 = Double.parseDouble(command);
+        ReportBuffer report = new ReportBuffer();
+        report.append(sb.toString());
+        return decodeCreatureState(report);
+    }
 
-        }
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - creature's color missing !");
-        } else {
-            command = st.nextToken();
-            myselfColor = command; //string
-        }
-        /**
-         * Thing upon which an action was performed (except SEE):
-         */
-        if (!st.hasMoreTokens()) {
-            System.out.println("No contact action performed. Thing upon which an action was performed is empty!");
-            Logger.logErr("No contact action performed. Thing upon which an action was performed is empty!");
-        } else {
-            actionData = st.nextToken();
-            //System.out.println("--------------------actionData: " + actionData);
-        }
+    /**
+     * Same as {@link #parseCreatureState(StringTokenizer)}, from the bytes of
+     * the report.
+     *
+     * @param r the server report
+     * @return the creature state
+     * @throws ReportFormatException if a field is missing or malformed
+     */
+    static CreatureState decodeCreatureState(ReportBuffer r) {
+        ReportSchema.Mode mode = ReportFormats.getMode();
+        ReportSchema.Record c = ReportFormats.CREATURE.newRecord();
+        ReportSchema.Record count = ReportFormats.COUNT.newRecord();
+        ReportSchema.Record t = ReportFormats.THING.newRecord();
+        List<Leaflet> leafletList = new ArrayList<Leaflet>();
+        List<Thing> thingsInVision = new ArrayList<Thing>();
+        List<Thing> thingsInFrustrum = new ArrayList<Thing>();
 
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - hasCollided missing !");
-        } else {
-            command = st.nextToken();
-            hasCollided = Integer.parseInt(command);
-        }
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - hasLeaflet missing !");
-        } else {
-            command = st.nextToken();
-            hasLeaflet = Integer.parseInt(command);
-        }
+        ///////////////////Creature data:
+        int i = ReportFormats.CREATURE.decode(r, 0, c, mode);
+        String myName = c.get(ReportFormats.CREATURE_NAME);
+        int hasLeaflet = c.get(ReportFormats.CREATURE_HAS_LEAFLET);
 
+        //number of leaflets, or the spurious "0" of the empty leaflet list
+        i = ReportFormats.COUNT.decode(r, i, count, mode);
         if (hasLeaflet == 1) { //true
-            /*
-             * Read leaflets:
-             */
-            leafletList = new ArrayList<Leaflet>();
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - missing number of leaflets!");
-            } else {
-                command = st.nextToken();
-                numberOfLeaflets = Integer.parseInt(command);
-            }
-            for (int i = 0; i <= numberOfLeaflets - 1; i++) { //loop to create leaflets
-
-                if (!st.hasMoreTokens()) {
-                    Logger.logErr("Error - missing leaflet ID!");
-                } else {
-                    command = st.nextToken();
-                    leafletID = Long.parseLong(command);
-                }
-
-                if (!st.hasMoreTokens()) {
-                    Logger.logErr("Error - missing number of types in leaflet!");
-                } else {
-                    command = st.nextToken();
-                    numberOfLeafletItems = Integer.parseInt(command);
-                }
-                for (int j = 0; j <= numberOfLeafletItems - 1; j++) { //loop to create a leaflet
-                    if (!st.hasMoreTokens()) {
-                        Logger.logErr("Error - type is missing!");
-                    } else {
-                        command = st.nextToken();
-                        itemKey = command;
-                    }
-                    if (!st.hasMoreTokens()) {
-                        Logger.logErr("Error - total number of a specific type is missing!");
-                    } else {
-                        command = st.nextToken();
-                        totalNumber = Integer.parseInt(command);
-                    }
-                    if (!st.hasMoreTokens()) {
-                        Logger.logErr("Error - number of collected items of a type is missing!");
-                    } else {
-                        command = st.nextToken();
-                        collected = Integer.parseInt(command);
-                    }
-                    Integer[] values = {0, 0};
-                    values[0] = totalNumber; //total number of a type
-                    values[1] = collected; //how many have been collected
-                    leafletItemsMap.put(itemKey, values);
+            ReportSchema.Record leaflet = ReportFormats.LEAFLET.newRecord();
+            ReportSchema.Record item = ReportFormats.LEAFLET_ITEM.newRecord();
+            ReportSchema.Record end = ReportFormats.LEAFLET_END.newRecord();
+            //the leaflets copy their items
+            HashMap<String, Integer[]> leafletItemsMap = new HashMap<String, Integer[]>();
+            int numberOfLeaflets = count.get(ReportFormats.COUNT_VALUE);
+            for (int l = 0; l < numberOfLeaflets; l++) { //loop to create leaflets
+                i = ReportFormats.LEAFLET.decode(r, i, leaflet, mode);
+                int numberOfLeafletItems = leaflet.get(ReportFormats.LEAFLET_ITEMS);
+                for (int k = 0; k < numberOfLeafletItems; k++) { //loop to create a leaflet
+                    i = ReportFormats.LEAFLET_ITEM.decode(r, i, item, mode);
+                    Integer[] values = {item.get(ReportFormats.LEAFLET_ITEM_TOTAL), item.get(ReportFormats.LEAFLET_ITEM_COLLECTED)};
+                    leafletItemsMap.put(item.get(ReportFormats.LEAFLET_ITEM_TYPE), values);
                 }
-                if (!st.hasMoreTokens()) {
-                    Logger.logErr("Error - missing payment of leaflet!");
-                } else {
-                    command = st.nextToken();
-                    payment = Integer.parseInt(command);
-                }
-                if (!st.hasMoreTokens()) {
-                    Logger.logErr("Error - missing situation of leaflet!");
-                } else {
-                    command = st.nextToken();
-                    if (command.equals("true")) {
-                        situationOfLeaflet = 1;
-                    } else {
-                        situationOfLeaflet = 0;
-
-                    }
-
-                }
-                leafletList.add(new Leaflet(leafletID, leafletItemsMap, payment, situationOfLeaflet));
+                i = ReportFormats.LEAFLET_END.decode(r, i, end, mode);
+                leafletList.add(new Leaflet(leaflet.get(ReportFormats.LEAFLET_ID), leafletItemsMap, end.get(ReportFormats.LEAFLET_PAYMENT), end.get(ReportFormats.LEAFLET_SITUATION) ? 1 : 0));
                 leafletItemsMap.clear();
             }
-
-        } else {
-
-            leafletList = new ArrayList<Leaflet>();
-
-            //consume spurious " 0" of the empty leaflet list:
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - expecting 0 of the leaflet empty list!");
-            } else {
-                command = st.nextToken();
-                spuriousNum = Integer.parseInt(command);
-            }
         }
 
         //update creature state in Status:
-        cs = CreatureState.getInstance(index, myselfName, myselfColor, speed, wheel, mySelfPitch, motorSys, fuel, serotonin, endorphine, score, new WorldPoint(selfX, selfY), selfX1, selfY1, selfX2, selfY2, hasCollided, hasLeaflet, leafletList);
+        CreatureState cs = CreatureState.getInstance(c.get(ReportFormats.CREATURE_INDEX), myName, c.get(ReportFormats.CREATURE_COLOR),
+                c.get(ReportFormats.CREATURE_SPEED), c.get(ReportFormats.CREATURE_WHEEL), Math.toRadians(c.get(ReportFormats.CREATURE_PITCH)),
+                c.get(ReportFormats.CREATURE_MOTOR_SYSTEM), c.get(ReportFormats.CREATURE_FUEL), c.get(ReportFormats.CREATURE_SEROTONIN),
+                c.get(ReportFormats.CREATURE_ENDORPHINE), c.get(ReportFormats.CREATURE_SCORE),
+                new WorldPoint(c.get(ReportFormats.CREATURE_X), c.get(ReportFormats.CREATURE_Y)),
+                c.get(ReportFormats.CREATURE_X1), c.get(ReportFormats.CREATURE_Y1), c.get(ReportFormats.CREATURE_X2), c.get(ReportFormats.CREATURE_Y2),
+                c.get(ReportFormats.CREATURE_HAS_COLLIDED), hasLeaflet, leafletList);
         /**
          * Read Contact and Visual sensors!!!!!!
          */
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - missing number of things!");
-        } else {
-            command = st.nextToken();
-            number = Integer.parseInt(command);
-        }
-
-        if (number > 0) {
-            for (int i = 0; i <= number - 1; i++) { //loop to create Things
-                if (!st.hasMoreTokens()) {
-                    Logger.logErr("Error - missing name!");
-                } else {
-                    command = st.nextToken();
-                    if (command.equals("||")) {
-                        command = st.nextToken();
-                    }
-                    thingName = command;
-
-                }
-                if (!st.hasMoreTokens()) {
-                    Logger.logErr("Error - missing category!");
-                } else {
-                    command = st.nextToken();
-                    category = Integer.parseInt(command);
-
-                }
-                if (!st.hasMoreTokens()) {
-                    Logger.logErr("Error - missing if occluded!");
-                } else {
-                    command = st.nextToken();
-                    isOccluded = Integer.parseInt(command);
-
-                }
-                if (!st.hasMoreTokens()) {
-                    Logger.logErr("Error - missing X1!");
-                } else {
-                    command = st.nextToken();
-                    x1 = Double.parseDouble(command);
-                }
-                if (!st.hasMoreTokens()) {
-                    Logger.logErr("Error - missing X2!");
-                } else {
-                    command = st.nextToken();
-                    x2 = Double.parseDouble(command);
-                }
-                if (!st.hasMoreTokens()) {
-                    Logger.logErr("Error - missing Y1!");
-                } else {
-                    command = st.nextToken();
-                    y1 = Double.parseDouble(command);
-                }
-                if (!st.hasMoreTokens()) {
-                    Logger.logErr("Error - missing Y2!");
-                } else {
-                    command = st.nextToken();
-                    y2 = Double.parseDouble(command);
-                }
-                if (!st.hasMoreTokens()) {
-                    Logger.logErr("Error - missing pitch !");
-                } else {
-                    command = st.nextToken();
-                    thingPitch = Double.parseDouble(command);
-                    thingPitch = Math.toRadians(thingPitch);//Math.toRadians(thingPitch) + Constants.M_PI_2;
-
-                }
-                if (!st.hasMoreTokens()) {
-                    Logger.logErr("Error - missing hardness!");
-                } else {
-                    command = st.nextToken();
-                    hardness = Double.parseDouble(command);
-                }
-                if (!st.hasMoreTokens()) {
-                    Logger.logErr("Error - missing energy!");
-                } else {
-                    command = st.nextToken();
-                    energy = Double.parseDouble(command);
-                }
-                if (!st.hasMoreTokens()) {
-                    Logger.logErr("Error - missing shininess!");
-                } else {
-                    command = st.nextToken();
-                    shininess = Double.parseDouble(command);
-                }
-                if (!st.hasMoreTokens()) {
-                    Logger.logErr("Error - missing color of thing!");
-                } else {
-                    command = st.nextToken();
-                    thingColor = command;
-                }
-                if (!st.hasMoreTokens()) {
-                    Logger.logErr("Error - missing center of mass X!");
-                } else {
-                    command = st.nextToken();
-                    comX = Double.parseDouble(command);
-                }
-                if (!st.hasMoreTokens()) {
-                    Logger.logErr("Error - missing center of mass Y!");
-                } else {
-                    command = st.nextToken();
-                    comY = Double.parseDouble(command);
-                }
-                //
-                switch (isOccluded) {
-                    case 0: //actually visible
-
-                        if (cs.getThingsInVisionMap().containsKey(thingName)) {
-                            thingsInVision.add(cs.getThingsInVisionMap().get(thingName).update(x1, y1, x2, y2, comX, comY, thingColor, isOccluded, energy, thingPitch, shininess));
-                        } else {
-                            thingsInVision.add(createThing(thingName, category, isOccluded, thingColor, x1, y1, x2, y2, comX, comY, thingPitch, hardness, energy, shininess));
-                        }
-                    default: //add both cases (occluded or not) in the next list:
-                        if (cs.getThingsInCameraFrustrumMap().containsKey(thingName)) {
-                            thingsInFrustrum.add(cs.getThingsInCameraFrustrumMap().get(thingName).update(x1, y1, x2, y2, comX, comY, thingColor, isOccluded, energy, thingPitch, shininess));
-                        } else {
-                            thingsInFrustrum.add(createThing(thingName, category, isOccluded, thingColor, x1, y1, x2, y2, comX, comY, thingPitch, hardness, energy, shininess));
-                        }
-                }
-
+        i = ReportFormats.COUNT.decode(r, i, count, mode);
+        int number = count.get(ReportFormats.COUNT_VALUE);
+        for (int k = 0; k < number; k++) { //loop to create Things
+            i = ReportFormats.THING.decode(r, i, t, mode);
+            String thingName = t.get(ReportFormats.THING_NAME);
+            int isOccluded = t.get(ReportFormats.THING_OCCLUDED);
+            switch (isOccluded) {
+                case 0: //actually visible
+                    thingsInVision.add(updateOrCreateThing(cs.getThingsInVisionMap().get(thingName), thingName, t));
+                default: //add both cases (occluded or not) in the next list:
+                    thingsInFrustrum.add(updateOrCreateThing(cs.getThingsInCameraFrustrumMap().get(thingName), thingName, t));
             }
         }
 
         //may be "NONE":
-        cs.setInfoThingActedUpon(actionData);
+        cs.setInfoThingActedUpon(c.get(ReportFormats.CREATURE_ACTED_UPON));
 
-        cs.setThingsInVision(thingsInVision);
-        cs.setThingsInCameraFrustrum(thingsInFrustrum);
+        cs.setThings(thingsInVision, thingsInFrustrum);
 
         cs.notifyMyObservers();
         return cs;
     }
 
+    /**
+     * @param known the thing as previously seen, or null
+     * @param name name of the thing
+     * @param t a THING record
+     * @return the known thing updated, or a new one
+     */
+    private static Thing updateOrCreateThing(Thing known, String name, ReportSchema.Record t) {
+        double pitch = Math.toRadians(t.get(ReportFormats.THING_PITCH));
+        if (known != null) {
+            return known.update(t.get(ReportFormats.THING_X1), t.get(ReportFormats.THING_Y1), t.get(ReportFormats.THING_X2), t.get(ReportFormats.THING_Y2),
+                    t.get(ReportFormats.THING_X), t.get(ReportFormats.THING_Y), t.get(ReportFormats.THING_COLOR), t.get(ReportFormats.THING_OCCLUDED),
+                    t.get(ReportFormats.THING_ENERGY), pitch, t.get(ReportFormats.THING_SHININESS));
+        }
+        return createThing(name, t.get(ReportFormats.THING_CATEGORY), t.get(ReportFormats.THING_OCCLUDED), t.get(ReportFormats.THING_COLOR),
+                t.get(ReportFormats.THING_X1), t.get(ReportFormats.THING_Y1), t.get(ReportFormats.THING_X2), t.get(ReportFormats.THING_Y2),
+                t.get(ReportFormats.THING_X), t.get(ReportFormats.THING_Y), pitch, t.get(ReportFormats.THING_HARDNESS),
+                t.get(ReportFormats.THING_ENERGY), t.get(ReportFormats.THING_SHININESS));
+    }
+
     private static void checkIfErrorMessage(String resp) throws CommandExecException {
+        if (resp.startsWith(CommandTimeoutException.REPORT_PREFIX)) {
+            throw new CommandTimeoutException(resp);
+        }
+        if (resp.startsWith(CommandRejectedException.REPORT_PREFIX)) {
+            throw new CommandRejectedException(resp);
+        }
         StringTokenizer st = new StringTokenizer(resp);
         if (st.hasMoreTokens()) {
             String startResp = st.nextToken();
@@ -1275,9 +1534,87 @@ public class CommandUtility {
         }
     }
 
-    private static StringTokenizer sendCmdAndGetResponse(String formattedCmd) throws CommandExecException {
-        SocketUtility.sendMessage(formattedCmd);
-        String returnMessage = SocketUtility.receiveMessage();
+    private static StringTokenizer sendCmdAndGetResponse(Connection conn, String formattedCmd) throws CommandExecException {
+        return toResponse(sendCmdAndGetReport(conn, formattedCmd));
+    }
+
+    /**
+     * @return the report of the command, from the response cache if it is
+     * there (not checked for errors). Commands whose reports are not cached
+     * do not take its lock (the connection drops the reports an action
+     * changes).
+     */
+    private static String sendCmdAndGetReport(Connection conn, String formattedCmd) {
+        if (!RESPONSE_CACHE.caches(formattedCmd)) {
+            return conn.exchange(formattedCmd);
+        }
+        String returnMessage = RESPONSE_CACHE.get(conn, formattedCmd);
+        if (returnMessage != null) {
+            return returnMessage;
+        }
+        long generation = RESPONSE_CACHE.generation();
+        returnMessage = conn.exchange(formattedCmd);
+        if (!returnMessage.startsWith(ResponseFramer.ERROR_CODE)) {
+            RESPONSE_CACHE.put(conn, formattedCmd, returnMessage, generation);
+        }
+        return returnMessage;
+    }
+
+    /**
+     * Same as {@link #sendCmdAndGetReport(Connection, String)}, through the
+     * I/O thread of the connection (see {@link AsyncCommandUtility}).
+     *
+     * @return future of the report (not checked for errors)
+     */
+    static CompletableFuture<String> sendCmdAndGetReportAsync(final Connection conn, final String formattedCmd) {
+        if (!RESPONSE_CACHE.caches(formattedCmd)) {
+            return conn.exchangeAsync(formattedCmd);
+        }
+        String cached = RESPONSE_CACHE.get(conn, formattedCmd);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        final long generation = RESPONSE_CACHE.generation();
+        return conn.exchangeAsync(formattedCmd).thenApply(new Function<String, String>() {
+            @Override
+            public String apply(String returnMessage) {
+                if (!returnMessage.startsWith(ResponseFramer.ERROR_CODE)) {
+                    RESPONSE_CACHE.put(conn, formattedCmd, returnMessage, generation);
+                }
+                return returnMessage;
+            }
+        });
+    }
+
+    /**
+     * Checks a server report and decodes it.
+     *
+     * @param command the command of the report
+     * @param returnMessage the server report
+     * @param decoder decoder of the report
+     * @return the decoded report
+     * @throws CommandExecException if the server responded with an error code
+     * or the report is malformed
+     */
+    static <T> T decode(String command, String returnMessage, ReportDecoder<T> decoder) throws CommandExecException {
+        checkIfErrorMessage(returnMessage);
+        ReportBuffer report = new ReportBuffer();
+        report.append(returnMessage);
+        try {
+            return decoder.decode(report);
+        } catch (ReportFormatException ex) {
+            throw new CommandExecException("Bad report of \"" + command + "\": " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Checks a server report and splits it into tokens.
+     *
+     * @param returnMessage the server report
+     * @return tokens of the report
+     * @throws CommandExecException if the server responded with an error code
+     */
+    static StringTokenizer toResponse(String returnMessage) throws CommandExecException {
         checkIfErrorMessage(returnMessage);
         StringTokenizer st = new StringTokenizer(returnMessage);
         SocketUtility.show("----->>>>Server response: " + returnMessage);
@@ -1285,7 +1622,7 @@ public class CommandUtility {
     }
 
     //TODO update an already created THING instead of keep creating objects
-    private static Thing createThing(String name, int category, int ifIsOccluded, String thingColor, double x1, double y1, double x2, double y2, double comX, double comY, double thingPitch, double hardness, double energy, double shininess) {
+    static Thing createThing(String name, int category, int ifIsOccluded, String thingColor, double x1, double y1, double x2, double y2, double comX, double comY, double thingPitch, double hardness, double energy, double shininess) {
 
         return new Thing(name, category, x1, y1, x2, y2, comX, comY, thingColor, ifIsOccluded, thingPitch, hardness, energy, shininess) {
         };
@@ -0,0 +1,1147 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import ws3dproxy.model.Creature;
+import ws3dproxy.protocol.ReportDecoder;
+import ws3dproxy.protocol.ReportFormatException;
+import ws3dproxy.protocol.ResponseFramer;
+import ws3dproxy.transport.ConnectionOptions;
+import ws3dproxy.transport.IoCounters;
+import ws3dproxy.transport.TcpTransport;
+import ws3dproxy.transport.Transport;
+import ws3dproxy.util.Logger;
+import ws3dproxy.util.Threads;
+import ws3dproxy.util.TimerWheel;
+
+/**
+ * A client connection to the server. Each connection has its own network
+ * socket, so commands sent through different connections are executed in
+ * parallel. Commands sent through the same connection are serialized: a
+ * command and its report are always exchanged as a single unit.
+ *
+ * The lines are carried by a {@link Transport}: the server socket by default,
+ * or any other implementation given to {@link #Connection(Transport)}. A
+ * command sent by {@link #exchange(String)} is written at once (one write per
+ * command); the commands of {@link #exchangeAll(List)} and those queued for
+ * the I/O thread (see {@link #exchangeAsync(String)}) are written together,
+ * the latter after the write batch delay of the {@link ConnectionOptions}.
+ *
+ * If a {@link ReconnectPolicy} is set, a broken link is re-established with
+ * exponential backoff: the transport is reopened, the greeting of the server
+ * is read again, the creatures bound to this connection are bound again to
+ * the server (see {@link Creature#rebind()}) and the commands that were in
+ * flight are replayed or, if not idempotent, get an error report.
+ *
+ * A deadline can be set for the reports of every command, or of a given verb
+ * (see {@link #setDeadline(String, long, TimeUnit)}). When a report does not
+ * arrive in time, the link is closed (the stalled report could otherwise be
+ * taken for the report of the next command), the command gets a timeout
+ * report, turned into a {@link CommandTimeoutException} by
+ * {@link CommandUtility}, and the connection is marked suspect: the next
+ * commands fail at once with a timeout report, unless the link is
+ * re-established by the reconnection policy.
+ *
+ * The threads waiting for the connection are let in first come, first served
+ * or, if {@link PriorityLanes} are set, in the order of the lanes of their
+ * commands (e.g. a "stop" before a queued "getall").
+ */
+public class Connection {
+
+    private final Transport transport;
+    private final ConnectionOptions options;
+    /**
+     * Held while a command is written and its report read. A lock rather than
+     * a monitor: a virtual thread blocked on the socket while holding it
+     * releases its carrier thread (see {@link ws3dproxy.util.Threads}).
+     */
+    private final ReentrantLock ioLock = new ReentrantLock();
+    /**
+     * Framer of the report being read, reused while holding the I/O lock.
+     */
+    private final ResponseFramer framer = new ResponseFramer(null);
+    private AsyncDispatcher dispatcher;
+    private final Object dispatcherLock = new Object();
+    private volatile ReconnectPolicy reconnectPolicy;
+    /**
+     * Lock of the wait between reconnection attempts, which is cut short
+     * by {@link #close()}.
+     */
+    private final ReentrantLock reconnectLock = new ReentrantLock();
+    private final Condition closing = reconnectLock.newCondition();
+    private volatile boolean closed = false;
+    private volatile long defaultDeadlineNanos = 0;
+    private final Map<String, Long> verbDeadlineNanos = new ConcurrentHashMap<String, Long>();
+    /**
+     * Why the connection is suspect, or null if it is not.
+     */
+    private volatile String suspectReason = null;
+    private volatile PriorityLanes priorityLanes;
+    /**
+     * Threads waiting for their turn to use the connection, the thread whose
+     * turn it is and how many times it took its turn (reentrancy).
+     */
+    private final ReentrantLock turnLock = new ReentrantLock();
+    private final Condition turnChanged = turnLock.newCondition();
+    private LaneQueue<Thread> waiting = new LaneQueue<Thread>(null);
+    private Thread owner = null;
+    private int ownerHolds = 0;
+    /**
+     * Waiting threads whose command was rejected to make room.
+     */
+    private final Set<Thread> shed = new HashSet<Thread>();
+    /**
+     * Tickets of the threads waiting for room, so that they enter the queue in
+     * order (and ahead of the threads arriving later).
+     */
+    private long nextRoomTicket = 0;
+    private long roomTicket = 0;
+    private volatile QueueLimit queueLimit = null;
+    private final QueueMetrics queueMetrics = new QueueMetrics();
+    /**
+     * Name of the last creature checked or read through this connection (see
+     * {@link CommandUtility#ifCreatureExists(Connection, String)}).
+     */
+    private volatile String creatureName = "none";
+
+    /**
+     * Creates a (not yet opened) connection. The kind of transport (blocking
+     * streams or non-blocking channel) follows
+     * {@link SocketUtility#isUsingBlockingStreams()}, and its options
+     * {@link SocketUtility#getConnectionOptions()}.
+     *
+     * @param host IP address or name of remote host (or localhost)
+     * @param port port number to connect to server
+     */
+    public Connection(String host, int port) {
+        this(host, port, SocketUtility.isUsingBlockingStreams());
+    }
+
+    /**
+     * Creates a (not yet opened) connection.
+     *
+     * @param host IP address or name of remote host (or localhost)
+     * @param port port number to connect to server
+     * @param useBlockingStreams true to use the blocking socket streams; false
+     * to use the non-blocking channel
+     */
+    public Connection(String host, int port, boolean useBlockingStreams) {
+        this(host, port, useBlockingStreams, SocketUtility.getConnectionOptions());
+    }
+
+    /**
+     * Creates a (not yet opened) connection.
+     *
+     * @param host IP address or name of remote host (or localhost)
+     * @param port port number to connect to server
+     * @param useBlockingStreams true to use the blocking socket streams; false
+     * to use the non-blocking channel
+     * @param options options of the socket and of the batching of the writes
+     */
+    public Connection(String host, int port, boolean useBlockingStreams, ConnectionOptions options) {
+        this(new TcpTransport(host, port, useBlockingStreams, options), options);
+    }
+
+    /**
+     * Creates a (not yet opened) connection over the given transport.
+     *
+     * @param transport carrier of the commands and reports
+     */
+    public Connection(Transport transport) {
+        this(transport, new ConnectionOptions());
+    }
+
+    /**
+     * Creates a (not yet opened) connection over the given transport.
+     *
+     * @param transport carrier of the commands and reports
+     * @param options options of the batching of the writes (the socket
+     * options, if any, are those of the transport)
+     */
+    public Connection(Transport transport, ConnectionOptions options) {
+        this.transport = transport;
+        this.options = new ConnectionOptions(options);
+    }
+
+    /**
+     * Creation of the network socket through which the server/client interact
+     * with each other: client sends commands to the server which in turn
+     * process them and sends back a failure or success report.
+     *
+     * @throws RuntimeException if the server is unavailable
+     */
+    public void open() {
+        ioLock.lock();
+        try {
+            closed = false;
+            try {
+                transport.open();
+                registerWithIKernel();
+                suspectReason = null;
+
+            } catch (Exception ex) {
+                SocketUtility.show("Server " + this + " is unavailable");
+                SocketUtility.show("Please check WorldServer3D.");
+                throw new RuntimeException("WS3D server unavailable at " + this, ex);
+            }
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    /**
+     * Closes the network socket. A thread waiting for a report through this
+     * connection is woken up and gets an empty report (or a failed future).
+     */
+    public void close() {
+        reconnectLock.lock();
+        try {
+            closed = true;
+            closing.signalAll();
+        } finally {
+            reconnectLock.unlock();
+        }
+        synchronized (dispatcherLock) {
+            if (dispatcher != null) {
+                dispatcher.shutdown();
+            }
+        }
+        closeSocket();
+    }
+
+    private void closeSocket() {
+        try {
+            transport.close();
+        } catch (IOException ex) {
+            Logger.logException(Connection.class.getName(), ex);
+        }
+    }
+
+    /**
+     * @return true if the network socket is open
+     */
+    public boolean isOpen() {
+        return transport.isOpen();
+    }
+
+    /**
+     * Sets how a broken link is recovered.
+     *
+     * @param policy the reconnection policy, or null (default) to give up at
+     * the first I/O error
+     */
+    public void setReconnectPolicy(ReconnectPolicy policy) {
+        this.reconnectPolicy = policy;
+    }
+
+    /**
+     * @return the reconnection policy, or null if a broken link is not
+     * recovered
+     */
+    public ReconnectPolicy getReconnectPolicy() {
+        return reconnectPolicy;
+    }
+
+    /**
+     * Sets the order in which the commands waiting for this connection are
+     * sent. Must be called before the connection is used concurrently (and
+     * before the first async command).
+     *
+     * @param lanes the ordering, or null (default) for first come, first
+     * served
+     */
+    public void setPriorityLanes(PriorityLanes lanes) {
+        turnLock.lock();
+        try {
+            this.priorityLanes = lanes;
+            LaneQueue<Thread> q = new LaneQueue<Thread>(lanes);
+            Thread t;
+            while ((t = waiting.pollAny()) != null) {
+                q.add(CommandLane.ACTION, t);
+            }
+            waiting = q;
+        } finally {
+            turnLock.unlock();
+        }
+    }
+
+    /**
+     * @return the ordering of the waiting commands, or null if first come,
+     * first served
+     */
+    public PriorityLanes getPriorityLanes() {
+        return priorityLanes;
+    }
+
+    /**
+     * Bounds the number of commands waiting for this connection.
+     *
+     * @param limit the bound and what happens beyond it, or null (default)
+     * for no bound
+     */
+    public void setQueueLimit(QueueLimit limit) {
+        this.queueLimit = limit;
+        turnLock.lock();
+        try {
+            //threads blocked for room may now fit
+            turnChanged.signalAll();
+        } finally {
+            turnLock.unlock();
+        }
+        synchronized (dispatcherLock) {
+            if (dispatcher != null) {
+                dispatcher.limitChanged();
+            }
+        }
+    }
+
+    /**
+     * @return the bound of the commands waiting, or null if there is none
+     */
+    public QueueLimit getQueueLimit() {
+        return queueLimit;
+    }
+
+    String getCreatureName() {
+        return creatureName;
+    }
+
+    void setCreatureName(String name) {
+        creatureName = name;
+    }
+
+    /**
+     * @return depth, waits and rejections of the commands waiting for this
+     * connection, sync and async
+     */
+    public QueueMetrics getQueueMetrics() {
+        return queueMetrics;
+    }
+
+    /**
+     * Sets the time allowed for the report of every command (unless a verb
+     * has its own deadline). The time is counted from the moment the report
+     * is awaited: for pipelined commands, once the report of the previous
+     * command has been received.
+     *
+     * @param deadline maximum wait for a report, or 0 (default) for none
+     * @param unit unit of the deadline
+     */
+    public void setDeadline(long deadline, TimeUnit unit) {
+        this.defaultDeadlineNanos = unit.toNanos(deadline);
+    }
+
+    /**
+     * Sets the time allowed for the reports of the given verb, instead of the
+     * one set by {@link #setDeadline(long, TimeUnit)}.
+     *
+     * @param verb first token of the command (e.g. "getall")
+     * @param deadline maximum wait for a report, or 0 for none
+     * @param unit unit of the deadline
+     */
+    public void setDeadline(String verb, long deadline, TimeUnit unit) {
+        verbDeadlineNanos.put(verb, unit.toNanos(deadline));
+    }
+
+    /**
+     * @return true if a report did not arrive in time and the link has not
+     * been re-established since
+     */
+    public boolean isSuspect() {
+        return suspectReason != null;
+    }
+
+    /**
+     * Sends a command and waits for its report. No other command can be sent
+     * through this connection in the meantime.
+     *
+     * @param s command in text format
+     * @return failure or success report of the command execution, a timeout
+     * report (see {@link CommandTimeoutException#REPORT_PREFIX}), a rejection
+     * report (see {@link CommandRejectedException#REPORT_PREFIX}) or an empty
+     * string if the connection is broken and could not be recovered
+     */
+    public String exchange(String s) {
+        if (!takeTurn(CommandLane.of(s))) {
+            return rejectedReport(s);
+        }
+        try {
+            invalidateCached(s);
+            return send(s);
+        } finally {
+            invalidateCached(s);
+            endTurn();
+        }
+    }
+
+    private String send(String s) {
+        ioLock.lock();
+        try {
+            String made = sendFramed(s);
+            return (made != null) ? made : framer.getResponse();
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    /**
+     * Sends a command and decodes its report straight from the bytes received
+     * (see {@link ws3dproxy.protocol.ReportBuffer}), without first turning it into a String. No
+     * other command can be sent through this connection in the meantime.
+     *
+     * @param s command in text format
+     * @param decoder decoder of the report
+     * @return the decoded report
+     * @throws CommandExecException if the server responded with an error
+     * report or the decoder found it malformed (see
+     * {@link ReportFormatException}), a {@link CommandTimeoutException} if
+     * the report did not arrive
+     * in time, a {@link CommandRejectedException} if the command was rejected
+     * by the queue limit, or if the connection is broken and could not be
+     * recovered
+     */
+    public <T> T exchange(String s, ReportDecoder<T> decoder) throws CommandExecException {
+        if (!takeTurn(CommandLane.of(s))) {
+            throw new CommandRejectedException(rejectedReport(s));
+        }
+        try {
+            invalidateCached(s);
+            return send(s, decoder);
+        } finally {
+            invalidateCached(s);
+            endTurn();
+        }
+    }
+
+    private <T> T send(String s, ReportDecoder<T> decoder) throws CommandExecException {
+        ioLock.lock();
+        try {
+            String made = sendFramed(s);
+            if (made == null && !framer.isError()) {
+                try {
+                    return decoder.decode(framer.getReport());
+                } catch (ReportFormatException ex) {
+                    throw new CommandExecException("Bad report of \"" + s + "\": " + ex.getMessage());
+                }
+            }
+            String report = (made != null) ? made : framer.getResponse();
+            if (report.startsWith(CommandTimeoutException.REPORT_PREFIX)) {
+                throw new CommandTimeoutException(report);
+            }
+            if (report.isEmpty()) {
+                throw new CommandExecException("No report of \"" + s + "\": connection to " + this + " is broken");
+            }
+            throw new CommandExecException(report);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    /**
+     * Sends a command and reads its report into the framer.
+     *
+     * @return null if the report is in the framer; otherwise the report made
+     * up by the connection (timeout, lost or empty report)
+     */
+    private String sendFramed(String s) {
+        for (int tries = 1;; tries++) {
+            if (isSuspect() && !recoverSuspect()) {
+                return suspectReport(s);
+            }
+            try {
+                transport.writeLine(s);
+                receive(s);
+                return null;
+            } catch (InterruptedIOException ex) {
+                Logger.logException(Connection.class.getName(), ex);
+                return timeoutReport(ex);
+            } catch (IOException ex) {
+                if (!recover(ex, tries)) {
+                    return "";
+                }
+                if (!reconnectPolicy.isReplayable(s)) {
+                    return lostReport(s);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends several commands back-to-back and only then reads their reports,
+     * in the same order. The whole batch costs about one round trip instead of
+     * one per command. No other command can be sent through this connection in
+     * the meantime.
+     *
+     * @param commands commands in text format
+     * @return the reports, one per command and in the same order
+     */
+    public List<String> exchangeAll(List<String> commands) {
+        try {
+            return exchangeBatch(commands, true);
+        } catch (IOException ex) {
+            Logger.logException(Connection.class.getName(), ex);
+            List<String> reports = new ArrayList<String>(commands.size());
+            while (reports.size() < commands.size()) {
+                reports.add("");
+            }
+            return reports;
+        }
+    }
+
+    /**
+     * Same as {@link #exchangeAll(List)}, but a broken connection is reported
+     * to the caller.
+     *
+     * @param bounded false if the commands were already admitted by the queue
+     * limit (async commands)
+     */
+    List<String> exchangeBatch(List<String> commands, boolean bounded) throws IOException {
+        CommandLane lane = CommandLane.PERCEPTION;
+        for (String s : commands) {
+            CommandLane l = CommandLane.of(s);
+            if (l.ordinal() < lane.ordinal()) {
+                lane = l;
+            }
+        }
+        if (!takeTurn(lane, bounded)) {
+            List<String> reports = new ArrayList<String>(commands.size());
+            for (String s : commands) {
+                reports.add(rejectedReport(s));
+            }
+            return reports;
+        }
+        try {
+            for (String s : commands) {
+                invalidateCached(s);
+            }
+            return sendBatch(commands);
+        } finally {
+            for (String s : commands) {
+                invalidateCached(s);
+            }
+            endTurn();
+        }
+    }
+
+    /**
+     * Drops the reports of the response cache that an action changes (see
+     * {@link ResponseCache}). Called before the command is written and again
+     * once its report is read (a query sent meanwhile may have stored the
+     * previous value), whichever way it is sent: one by one, pipelined or by
+     * the I/O thread.
+     */
+    private void invalidateCached(String s) {
+        if (CommandLane.of(s) == CommandLane.ACTION) {
+            CommandUtility.getResponseCache().invalidateFor(this, s);
+        }
+    }
+
+    private List<String> sendBatch(List<String> commands) throws IOException {
+        ioLock.lock();
+        try {
+            String[] reports = new String[commands.size()];
+            List<Integer> pending = new ArrayList<Integer>(commands.size());
+            for (int i = 0; i < reports.length; i++) {
+                pending.add(i);
+            }
+            for (int tries = 1; !pending.isEmpty(); tries++) {
+                if (isSuspect() && !recoverSuspect()) {
+                    for (int i : pending) {
+                        reports[i] = suspectReport(commands.get(i));
+                    }
+                    break;
+                }
+                int done = 0;
+                try {
+                    if (pending.size() == reports.length) {
+                        transport.writeLines(commands);
+                    } else {
+                        List<String> replayed = new ArrayList<String>(pending.size());
+                        for (int i : pending) {
+                            replayed.add(commands.get(i));
+                        }
+                        transport.writeLines(replayed);
+                    }
+                    for (; done < pending.size(); done++) {
+                        int i = pending.get(done);
+                        reports[i] = readResponse(commands.get(i));
+                    }
+                    pending.clear();
+                } catch (InterruptedIOException ex) {
+                    //the reports of the next commands are stuck behind the stall
+                    Logger.logException(Connection.class.getName(), ex);
+                    for (int i : pending.subList(done, pending.size())) {
+                        reports[i] = timeoutReport(ex);
+                    }
+                    pending.clear();
+                } catch (IOException ex) {
+                    if (!recover(ex, tries)) {
+                        throw ex;
+                    }
+                    //the commands whose reports were not received are in flight
+                    List<Integer> replay = new ArrayList<Integer>();
+                    for (int i : pending.subList(done, pending.size())) {
+                        if (reconnectPolicy.isReplayable(commands.get(i))) {
+                            replay.add(i);
+                        } else {
+                            reports[i] = lostReport(commands.get(i));
+                        }
+                    }
+                    pending = replay;
+                }
+            }
+            return Arrays.asList(reports);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    private boolean takeTurn(CommandLane lane) {
+        return takeTurn(lane, true);
+    }
+
+    /**
+     * Waits until it is the turn of the current thread to use the connection:
+     * first come, first served, or according to the priority lanes.
+     *
+     * @param lane lane of the command(s) to be sent
+     * @param bounded whether the queue limit applies
+     * @return false if the command was rejected by the queue limit, in which
+     * case the turn was not taken
+     */
+    private boolean takeTurn(CommandLane lane, boolean bounded) {
+        Thread me = Thread.currentThread();
+        turnLock.lock();
+        try {
+            if (owner == me) {
+                ownerHolds++;
+                return true;
+            }
+            if (owner == null && waiting.isEmpty()) {
+                owner = me;
+                ownerHolds = 1;
+                queueMetrics.admitted();
+                return true;
+            }
+            long start = System.nanoTime();
+            boolean interrupted = false;
+            QueueLimit limit = bounded ? queueLimit : null;
+            if (limit != null && (waiting.size() >= limit.getCapacity() || nextRoomTicket != roomTicket)) {
+                if (!makeRoom(limit)) {
+                    queueMetrics.rejected();
+                    return false;
+                }
+                if (waiting.size() >= limit.getCapacity() || nextRoomTicket != roomTicket) {
+                    queueMetrics.blocked();
+                    long ticket = nextRoomTicket++;
+                    while (ticket != roomTicket || ((limit = queueLimit) != null && waiting.size() >= limit.getCapacity() && owner != null)) {
+                        try {
+                            turnChanged.await();
+                        } catch (InterruptedException ex) {
+                            interrupted = true;
+                        }
+                    }
+                    roomTicket++;
+                    turnChanged.signalAll();
+                }
+            }
+            if (owner == null && waiting.isEmpty()) {
+                owner = me;
+                ownerHolds = 1;
+            } else {
+                waiting.add(lane, me);
+                queueMetrics.enqueued();
+                while (owner != me) {
+                    if (shed.remove(me)) {
+                        if (interrupted) {
+                            me.interrupt();
+                        }
+                        return false;
+                    }
+                    try {
+                        turnChanged.await();
+                    } catch (InterruptedException ex) {
+                        interrupted = true;
+                    }
+                }
+                queueMetrics.waited(System.nanoTime() - start);
+            }
+            if (interrupted) {
+                me.interrupt();
+            }
+            return true;
+        } finally {
+            turnLock.unlock();
+        }
+    }
+
+    /**
+     * Applies the overload policy of a full queue.
+     *
+     * @return false if the new command is rejected; true if it may wait (for
+     * room, or for its turn if a waiting perception query was shed)
+     */
+    private boolean makeRoom(QueueLimit limit) {
+        switch (limit.getOverload()) {
+            case FAIL_FAST:
+                return false;
+            case DROP_OLDEST_PERCEPTION:
+                Thread victim = waiting.pollOldest(CommandLane.PERCEPTION);
+                if (victim != null) {
+                    shed.add(victim);
+                    queueMetrics.shed();
+                    turnChanged.signalAll();
+                }
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Hands the connection over to the next waiting thread.
+     */
+    private void endTurn() {
+        turnLock.lock();
+        try {
+            if (--ownerHolds > 0) {
+                return;
+            }
+            owner = waiting.poll();
+            if (owner != null) {
+                ownerHolds = 1;
+                queueMetrics.dequeued();
+            }
+            //the next owner, and the threads blocked for room
+            turnChanged.signalAll();
+        } finally {
+            turnLock.unlock();
+        }
+    }
+
+    /**
+     * Sends a command without waiting for its report. The command is queued
+     * for the I/O thread of this connection, which sends all the queued
+     * commands as a single pipelined batch and completes their futures, in
+     * order. The I/O thread is started on the first call.
+     *
+     * Dependent stages that are not async run on the I/O thread: keep them
+     * short, or use the async variants of {@link CompletableFuture}.
+     *
+     * @param s command in text format
+     * @return future completed with the failure or success report of the
+     * command execution, or completed exceptionally with an IOException if
+     * the connection is broken or closed
+     */
+    public CompletableFuture<String> exchangeAsync(String s) {
+        return dispatcher().submit(s, true);
+    }
+
+    /**
+     * Same as {@link #exchangeAsync(String)}, but never waits for room in the
+     * queue: beyond the {@link QueueLimit} the command gets a rejection
+     * report at once, whatever the overload policy. For the callers that
+     * must not block, e.g. the tasks of a {@link ws3dproxy.util.TimerWheel}.
+     *
+     * @param s command in text format
+     * @return future completed as with {@link #exchangeAsync(String)}
+     */
+    public CompletableFuture<String> tryExchangeAsync(String s) {
+        return dispatcher().submit(s, false);
+    }
+
+    private AsyncDispatcher dispatcher() {
+        synchronized (dispatcherLock) {
+            if (dispatcher == null) {
+                dispatcher = new AsyncDispatcher(this);
+            }
+            return dispatcher;
+        }
+    }
+
+    /**
+     * The command is a text message (sequence of strings) that are sent to the
+     * server through the network socket.
+     *
+     * @param s command in text format
+     */
+    public void sendMessage(String s) {
+        //show("Sent to server: " + s);
+        try {
+            transport.writeLine(s);
+        } catch (IOException ex) {
+            ioLock.lock();
+            try {
+                recover(ex, 1);
+            } finally {
+                ioLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * After having processed the command, the server responds to the client
+     * with a failure or success report in text format. The report is read as
+     * a single line; use {@link #receiveResponse(String)} when the command is
+     * known.
+     *
+     * @return failure or success report of the command execution
+     */
+    public String receiveMessage() {
+        return receiveResponse(null);
+    }
+
+    /**
+     * Reads the report of the given command. The end of the report is found
+     * by a {@link ResponseFramer}, so a report is neither cut short when it
+     * arrives in pieces nor merged with the report of the next command.
+     *
+     * @param command the command (in text format) whose report is expected
+     * @return failure or success report of the command execution, or an empty
+     * string if the connection is broken (it is then recovered, if there is a
+     * reconnection policy, for the next commands)
+     */
+    public String receiveResponse(String command) {
+        try {
+            ioLock.lock();
+            try {
+                return readResponse(command);
+            } finally {
+                ioLock.unlock();
+            }
+        } catch (InterruptedIOException ex) {
+            Logger.logException(Connection.class.getName(), ex);
+            return timeoutReport(ex);
+        } catch (IOException ex) {
+            ioLock.lock();
+            try {
+                recover(ex, 1);
+            } finally {
+                ioLock.unlock();
+            }
+            return "";
+        }
+    }
+
+    /**
+     * Reads the report of the given command within its deadline.
+     *
+     * @throws InterruptedIOException if the deadline expired
+     */
+    private String readResponse(String command) throws IOException {
+        receive(command);
+        return framer.getResponse();
+    }
+
+    /**
+     * Reads the report of the given command into the framer, within its
+     * deadline. The caller holds the I/O lock.
+     *
+     * @throws InterruptedIOException if the deadline expired
+     */
+    private void receive(final String command) throws IOException {
+        final long deadline = deadlineOf(command);
+        if (deadline <= 0) {
+            readFramed(command);
+            return;
+        }
+        Deadline d = new Deadline("no report of \"" + command + "\" within " + TimeUnit.NANOSECONDS.toMillis(deadline) + " ms from " + this);
+        TimerWheel.Timeout timeout = TimerWheel.getShared().schedule(d, deadline, TimeUnit.NANOSECONDS);
+        try {
+            readFramed(command);
+        } catch (IOException ex) {
+            if (timeout.isExpired()) {
+                InterruptedIOException t = new InterruptedIOException(d.reason);
+                t.initCause(ex);
+                throw t;
+            }
+            throw ex;
+        } finally {
+            timeout.cancel();
+        }
+        if (!d.received()) {
+            //the timer stalled the connection as the report arrived
+            throw new InterruptedIOException(d.reason);
+        }
+    }
+
+    /**
+     * The deadline of a report being received. Either the report is received
+     * in time or the timer stalls the connection, never both: a command does
+     * not succeed on a connection left suspect and closed.
+     */
+    private final class Deadline implements Runnable {
+
+        private final String reason;
+        private boolean ended = false;
+
+        Deadline(String reason) {
+            this.reason = reason;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (ended) {
+                    return;
+                }
+                ended = true;
+                stall(reason);
+            }
+        }
+
+        /**
+         * @return false if the deadline had already expired
+         */
+        synchronized boolean received() {
+            if (ended) {
+                return false;
+            }
+            ended = true;
+            return true;
+        }
+    }
+
+    private long deadlineOf(String command) {
+        String verb = ResponseFramer.verbOf(command);
+        Long d = (verb == null) ? null : verbDeadlineNanos.get(verb);
+        return (d != null) ? d : defaultDeadlineNanos;
+    }
+
+    /**
+     * Called by the timer when a report is late: the waiting reader is woken
+     * up by closing the link.
+     */
+    private void stall(String reason) {
+        suspectReason = reason;
+        closeSocket();
+    }
+
+    /**
+     * @return true if the link of a suspect connection was re-established
+     */
+    private boolean recoverSuspect() {
+        if (reconnectPolicy == null || closed) {
+            return false;
+        }
+        return recover(new InterruptedIOException(suspectReason), 1);
+    }
+
+    private String timeoutReport(InterruptedIOException ex) {
+        return CommandTimeoutException.REPORT_PREFIX + " " + ex.getMessage();
+    }
+
+    String rejectedReport(String command) {
+        return CommandRejectedException.REPORT_PREFIX + " \"" + command + "\" not sent, " + queueLimit + " reached on " + this;
+    }
+
+    private String suspectReport(String command) {
+        return CommandTimeoutException.REPORT_PREFIX + " \"" + command + "\" not sent, " + this + " is suspect: " + suspectReason;
+    }
+
+    private void readFramed(String command) throws IOException {
+        framer.reset(command);
+        //over TCP the bytes go straight from the socket to the framer
+        boolean complete;
+        do {
+            complete = transport.readLine(framer);
+        } while (!complete);
+    }
+
+    /**
+     * Re-establishes a broken link according to the reconnection policy. The
+     * caller holds the I/O lock, so no other command is sent
+     * meanwhile.
+     *
+     * @param cause the error that broke the link
+     * @param tries number of times the current command(s) have been tried
+     * @return true if the link was re-established and the commands in flight
+     * can be handled; false if they must fail
+     */
+    private boolean recover(IOException cause, int tries) {
+        ReconnectPolicy policy = reconnectPolicy;
+        if (policy == null || closed || tries > policy.getMaxAttempts()) {
+            Logger.logException(Connection.class.getName(), cause);
+            return false;
+        }
+        SocketUtility.show("Connection to " + this + " lost (" + cause + "), reconnecting: " + policy);
+        for (int attempt = 1; attempt <= policy.getMaxAttempts(); attempt++) {
+            if (!pause(policy.getDelayMillis(attempt))) {
+                return false;
+            }
+            closeSocket();
+            try {
+                transport.open();
+                if (closed) {
+                    closeSocket();
+                    return false;
+                }
+                SocketUtility.show("Reconnected to " + this + " ... " + readResponse(null));
+                suspectReason = null;
+                restoreSession();
+                return true;
+            } catch (IOException ex) {
+                SocketUtility.show("Reconnection attempt " + attempt + " to " + this + " failed: " + ex);
+            }
+        }
+        SocketUtility.show("Giving up reconnecting to " + this);
+        closeSocket();
+        return false;
+    }
+
+    /**
+     * Waits before a reconnection attempt.
+     *
+     * @return false if the connection was closed or the thread interrupted
+     * meanwhile
+     */
+    private boolean pause(long millis) {
+        long deadline = System.currentTimeMillis() + millis;
+        reconnectLock.lock();
+        try {
+            long left;
+            while (!closed && (left = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    closing.await(left, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return !closed;
+        } finally {
+            reconnectLock.unlock();
+        }
+    }
+
+    /**
+     * Binds the creatures of this connection again to the server. This is done
+     * by another thread, once the commands in flight are handled: a creature
+     * is locked before its connection, never the other way round.
+     */
+    private void restoreSession() {
+        final List<Creature> creatures = Creature.getInstances(this);
+        if (creatures.isEmpty()) {
+            return;
+        }
+        Threads.start(new Runnable() {
+            @Override
+            public void run() {
+                for (Creature c : creatures) {
+                    try {
+                        if (!c.rebind()) {
+                            SocketUtility.show("Creature " + c.getName() + " (" + c.getIndex() + ") not found after reconnecting to " + Connection.this);
+                        }
+                    } catch (CommandExecException ex) {
+                        Logger.logException(Connection.class.getName(), ex);
+                    }
+                }
+            }
+        }, "WS3D-restore " + this);
+    }
+
+    /**
+     * @return the error report of a command that was in flight when the link
+     * broke and can not be replayed
+     */
+    private static String lostReport(String command) {
+        return ResponseFramer.ERROR_CODE + " Connection lost: \"" + command + "\" may or may not have been executed";
+    }
+
+    private void registerWithIKernel() {
+        String s;
+        s = receiveMessage();
+        SocketUtility.show("Connecting to Server ... " + s);
+    }
+
+    /**
+     * @return options of the socket and of the batching of the writes
+     */
+    public ConnectionOptions getOptions() {
+        return new ConnectionOptions(options);
+    }
+
+    /**
+     * @return counters of the system calls made on the socket, or null if the
+     * transport is not a socket
+     */
+    public IoCounters getIoCounters() {
+        Transport t = transport.unwrap();
+        return (t instanceof TcpTransport) ? ((TcpTransport) t).getCounters() : null;
+    }
+
+    /**
+     * @return the transport of this connection
+     */
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * @return the writer or null if the client is not connected to the server
+     * or the transport is not TCP
+     * @see TcpTransport#getWriter()
+     */
+    public PrintWriter getWriter() {
+        Transport t = transport.unwrap();
+        return (t instanceof TcpTransport) ? ((TcpTransport) t).getWriter() : null;
+    }
+
+    /**
+     * @return the reader or null if the client is not connected to the server
+     * or the transport is not TCP
+     * @see TcpTransport#getReader()
+     */
+    public BufferedReader getReader() {
+        Transport t = transport.unwrap();
+        return (t instanceof TcpTransport) ? ((TcpTransport) t).getReader() : null;
+    }
+
+    /**
+     * @return the host of the server, or null if the transport is not TCP
+     */
+    public String getHost() {
+        Transport t = transport.unwrap();
+        return (t instanceof TcpTransport) ? ((TcpTransport) t).getHost() : null;
+    }
+
+    /**
+     * @return the port of the server, or -1 if the transport is not TCP
+     */
+    public int getPort() {
+        Transport t = transport.unwrap();
+        return (t instanceof TcpTransport) ? ((TcpTransport) t).getPort() : -1;
+    }
+
+    public String toString() {
+        return transport.toString();
+    }
+}
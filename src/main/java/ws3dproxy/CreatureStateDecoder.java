@@ -0,0 +1,216 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import ws3dproxy.model.CreatureState;
+import ws3dproxy.model.Leaflet;
+import ws3dproxy.model.Thing;
+import ws3dproxy.model.WorldPoint;
+import ws3dproxy.protocol.ReportBuffer;
+import ws3dproxy.protocol.ReportDecoder;
+import ws3dproxy.protocol.ReportFormats;
+import ws3dproxy.protocol.ReportSchema;
+
+/**
+ * Decoder of the "getcreaturestate" reports of a single creature that reuses
+ * everything it builds from report to report: the records, the lists, the
+ * texts that did not change, the leaflets and the things still seen, which
+ * are updated in place. At steady state a report is decoded into the
+ * {@link CreatureState} of the creature with next to no allocation, e.g. for
+ * a perception loop at 20 Hz (see {@link ws3dproxy.model.Creature#setStateReuse(boolean)}).
+ *
+ * Unlike {@link CommandUtility#getCreatureState(Connection, String)}, a thing
+ * both seen and in the camera frustrum is the same instance in both lists,
+ * and the observers of the sensory buffer are notified once per report.
+ */
+public final class CreatureStateDecoder implements ReportDecoder<CreatureState> {
+
+    private final ReportSchema.Record creature = ReportFormats.CREATURE.newRecord();
+    private final ReportSchema.Record count = ReportFormats.COUNT.newRecord();
+    private final ReportSchema.Record leaflet = ReportFormats.LEAFLET.newRecord();
+    private final ReportSchema.Record item = ReportFormats.LEAFLET_ITEM.newRecord();
+    private final ReportSchema.Record end = ReportFormats.LEAFLET_END.newRecord();
+    private final ReportSchema.Record thing = ReportFormats.THING.newRecord();
+    private final WorldPoint position = new WorldPoint(0, 0);
+    /**
+     * Those of the last report, and those of the report before (swapped).
+     */
+    private List<Leaflet> leaflets = new ArrayList<Leaflet>();
+    private List<Leaflet> previousLeaflets = new ArrayList<Leaflet>();
+    private List<Thing> thingsInFrustrum = new ArrayList<Thing>();
+    private List<Thing> previousThings = new ArrayList<Thing>();
+    private final List<Thing> thingsInVision = new ArrayList<Thing>();
+    private String index = null;
+    private String name = null;
+    private String color = null;
+    private String actedUpon = null;
+
+    /**
+     * Synchronized on the decoder only: decoders of other creatures, and the
+     * default decoder, run at the same time.
+     */
+    @Override
+    public synchronized CreatureState decode(ReportBuffer r) {
+        ReportSchema.Mode mode = ReportFormats.getMode();
+        ReportSchema.Record c = creature;
+
+        ///////////////////Creature data:
+        int i = ReportFormats.CREATURE.decode(r, 0, c, mode);
+        name = c.get(ReportFormats.CREATURE_NAME, name);
+        index = c.get(ReportFormats.CREATURE_INDEX, index);
+        color = c.get(ReportFormats.CREATURE_COLOR, color);
+        int hasLeaflet = c.get(ReportFormats.CREATURE_HAS_LEAFLET);
+
+        //number of leaflets, or the spurious "0" of the empty leaflet list
+        i = ReportFormats.COUNT.decode(r, i, count, mode);
+        List<Leaflet> l = previousLeaflets;
+        previousLeaflets = leaflets;
+        leaflets = l;
+        leaflets.clear();
+        if (hasLeaflet == 1) { //true
+            int numberOfLeaflets = count.get(ReportFormats.COUNT_VALUE);
+            for (int k = 0; k < numberOfLeaflets; k++) {
+                i = decodeLeaflet(r, i, mode);
+            }
+        }
+
+        position.setX(c.get(ReportFormats.CREATURE_X));
+        position.setY(c.get(ReportFormats.CREATURE_Y));
+        CreatureState cs = CreatureState.getInstance(index, name, color,
+                c.get(ReportFormats.CREATURE_SPEED), c.get(ReportFormats.CREATURE_WHEEL), Math.toRadians(c.get(ReportFormats.CREATURE_PITCH)),
+                c.get(ReportFormats.CREATURE_MOTOR_SYSTEM), c.get(ReportFormats.CREATURE_FUEL), c.get(ReportFormats.CREATURE_SEROTONIN),
+                c.get(ReportFormats.CREATURE_ENDORPHINE), c.get(ReportFormats.CREATURE_SCORE), position,
+                c.get(ReportFormats.CREATURE_X1), c.get(ReportFormats.CREATURE_Y1), c.get(ReportFormats.CREATURE_X2), c.get(ReportFormats.CREATURE_Y2),
+                c.get(ReportFormats.CREATURE_HAS_COLLIDED), hasLeaflet, leaflets);
+
+        //Contact and Visual sensors
+        i = ReportFormats.COUNT.decode(r, i, count, mode);
+        List<Thing> t = previousThings;
+        previousThings = thingsInFrustrum;
+        thingsInFrustrum = t;
+        thingsInFrustrum.clear();
+        thingsInVision.clear();
+        int number = count.get(ReportFormats.COUNT_VALUE);
+        for (int k = 0; k < number; k++) {
+            i = ReportFormats.THING.decode(r, i, thing, mode);
+            Thing th = updateOrCreateThing(k);
+            if (thing.get(ReportFormats.THING_OCCLUDED) == 0) { //actually visible
+                thingsInVision.add(th);
+            }
+            thingsInFrustrum.add(th);
+        }
+        previousThings.clear();
+
+        //may be "NONE"; an unchanged action is not parsed again
+        String acted = c.get(ReportFormats.CREATURE_ACTED_UPON, actedUpon);
+        if (acted != actedUpon || acted.equals("NONE")) {
+            cs.setInfoThingActedUpon(acted);
+            actedUpon = acted;
+        }
+
+        cs.replaceThings(thingsInVision, thingsInFrustrum);
+
+        cs.notifyMyObservers();
+        return cs;
+    }
+
+    /**
+     * Decodes a leaflet into the leaflet of the same ID of the previous
+     * report, if it has the same items and payment.
+     *
+     * @return index of the token following the leaflet
+     */
+    private int decodeLeaflet(ReportBuffer r, int from, ReportSchema.Mode mode) {
+        int i = ReportFormats.LEAFLET.decode(r, from, leaflet, mode);
+        long id = leaflet.get(ReportFormats.LEAFLET_ID);
+        int numberOfItems = leaflet.get(ReportFormats.LEAFLET_ITEMS);
+        int itemsFrom = i;
+        Leaflet known = null;
+        for (int k = 0; k < previousLeaflets.size() && known == null; k++) {
+            if (previousLeaflets.get(k).getID() == id) {
+                known = previousLeaflets.get(k);
+            }
+        }
+        boolean same = known != null && known.getItems().size() == numberOfItems;
+        for (int k = 0; k < numberOfItems; k++) {
+            i = ReportFormats.LEAFLET_ITEM.decode(r, i, item, mode);
+            same = same && updateItem(known);
+        }
+        i = ReportFormats.LEAFLET_END.decode(r, i, end, mode);
+        int situation = end.get(ReportFormats.LEAFLET_SITUATION) ? 1 : 0;
+        if (!same || known.getPayment() != end.get(ReportFormats.LEAFLET_PAYMENT)) {
+            HashMap<String, Integer[]> items = new HashMap<String, Integer[]>();
+            for (int k = 0, j = itemsFrom; k < numberOfItems; k++) {
+                j = ReportFormats.LEAFLET_ITEM.decode(r, j, item, mode);
+                items.put(item.get(ReportFormats.LEAFLET_ITEM_TYPE), new Integer[]{item.get(ReportFormats.LEAFLET_ITEM_TOTAL), item.get(ReportFormats.LEAFLET_ITEM_COLLECTED)});
+            }
+            known = new Leaflet(id, items, end.get(ReportFormats.LEAFLET_PAYMENT), situation);
+        }
+        known.setSituation(situation);
+        leaflets.add(known);
+        return i;
+    }
+
+    /**
+     * @return false if the leaflet has no item of the type of the item record
+     */
+    private boolean updateItem(Leaflet known) {
+        for (String type : known.getItems().keySet()) {
+            if (item.equals(ReportFormats.LEAFLET_ITEM_TYPE, type)) {
+                Integer[] values = known.getItems().get(type);
+                values[0] = item.get(ReportFormats.LEAFLET_ITEM_TOTAL);
+                values[1] = item.get(ReportFormats.LEAFLET_ITEM_COLLECTED);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param k position of the thing in the report
+     * @return the thing of the same name of the previous report, updated, or
+     * a new one
+     */
+    private Thing updateOrCreateThing(int k) {
+        Thing known = null;
+        //things usually come in the same order
+        if (k < previousThings.size() && thing.equals(ReportFormats.THING_NAME, previousThings.get(k).getName())) {
+            known = previousThings.get(k);
+        } else {
+            for (int j = 0; j < previousThings.size() && known == null; j++) {
+                if (thing.equals(ReportFormats.THING_NAME, previousThings.get(j).getName())) {
+                    known = previousThings.get(j);
+                }
+            }
+        }
+        double pitch = Math.toRadians(thing.get(ReportFormats.THING_PITCH));
+        if (known != null) {
+            return known.update(thing.get(ReportFormats.THING_X1), thing.get(ReportFormats.THING_Y1), thing.get(ReportFormats.THING_X2), thing.get(ReportFormats.THING_Y2),
+                    thing.get(ReportFormats.THING_X), thing.get(ReportFormats.THING_Y), thing.get(ReportFormats.THING_COLOR, known.getAttributes().getColor()),
+                    thing.get(ReportFormats.THING_OCCLUDED), thing.get(ReportFormats.THING_ENERGY), pitch, thing.get(ReportFormats.THING_SHININESS));
+        }
+        Thing created = CommandUtility.createThing(thing.get(ReportFormats.THING_NAME), thing.get(ReportFormats.THING_CATEGORY), thing.get(ReportFormats.THING_OCCLUDED), thing.get(ReportFormats.THING_COLOR),
+                thing.get(ReportFormats.THING_X1), thing.get(ReportFormats.THING_Y1), thing.get(ReportFormats.THING_X2), thing.get(ReportFormats.THING_Y2),
+                thing.get(ReportFormats.THING_X), thing.get(ReportFormats.THING_Y), pitch, thing.get(ReportFormats.THING_HARDNESS),
+                thing.get(ReportFormats.THING_ENERGY), thing.get(ReportFormats.THING_SHININESS));
+        //owned by this decoder from now on
+        created.getAttributes().setUpdatedInPlace(true);
+        return created;
+    }
+}
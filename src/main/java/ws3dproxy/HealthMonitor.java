@@ -0,0 +1,337 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy;
+
+import java.util.Arrays;
+import java.util.Observable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import ws3dproxy.protocol.ResponseFramer;
+import ws3dproxy.util.Threads;
+
+/**
+ * Watches the health of a connection: a cheap command ("getclock") is sent
+ * periodically, and the round-trip times of the last probes are kept to
+ * compute percentiles. The observers (see {@link java.util.Observer}) are
+ * notified with a {@link HealthEvent} whenever the status changes:
+ * <ul>
+ * <li>DEGRADED when the 90th percentile of the round-trip times exceeds the
+ * threshold (see {@link #setDegradedThreshold(long, TimeUnit)}), HEALTHY again
+ * when it falls back below;</li>
+ * <li>UNRESPONSIVE when a probe is not answered in time (see
+ * {@link #setUnresponsiveAfter(long, TimeUnit)}) or fails, HEALTHY again with
+ * the next probe answered.</li>
+ * </ul>
+ *
+ * The probes are asynchronous (see {@link Connection#exchangeAsync(String)}),
+ * so the round-trip times include the wait behind the other commands of the
+ * connection, as the agents see it. A new probe is not sent while the
+ * previous one is unanswered, nor while the queue of the connection is full
+ * (the probe then fails, see {@link Connection#tryExchangeAsync(String)}).
+ * The probes are sent by a thread of the monitor, on which the observers are
+ * notified of an unanswered probe; they are notified of an answered one on
+ * the I/O thread of the connection: they must be short.
+ */
+public class HealthMonitor extends Observable {
+
+    public enum Status {
+
+        HEALTHY, DEGRADED, UNRESPONSIVE
+    }
+
+    /**
+     * Change of the status of a connection.
+     */
+    public static final class HealthEvent {
+
+        private final Status previous;
+        private final Status status;
+        private final long p50Nanos;
+        private final long p90Nanos;
+        private final String reason;
+
+        HealthEvent(Status previous, Status status, long p50Nanos, long p90Nanos, String reason) {
+            this.previous = previous;
+            this.status = status;
+            this.p50Nanos = p50Nanos;
+            this.p90Nanos = p90Nanos;
+            this.reason = reason;
+        }
+
+        public Status getPrevious() {
+            return previous;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @param unit unit of the result
+         * @return median round-trip time when the status changed
+         */
+        public long getMedian(TimeUnit unit) {
+            return unit.convert(p50Nanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @param unit unit of the result
+         * @return 90th percentile of the round-trip times when the status
+         * changed
+         */
+        public long getP90(TimeUnit unit) {
+            return unit.convert(p90Nanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @return why the status changed
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return previous + " -> " + status + ": " + reason;
+        }
+    }
+
+    private static final String PROBE = "getclock";
+    private static final int WINDOW = 64;
+
+    private final Connection connection;
+    private final long periodNanos;
+    private long degradedNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    private long unresponsiveNanos = TimeUnit.SECONDS.toNanos(2);
+    /**
+     * Round-trip times of the last probes (ring buffer).
+     */
+    private final long[] samples = new long[WINDOW];
+    private int sampleCount = 0;
+    private long probes = 0;
+    private long failures = 0;
+    private Status status = Status.HEALTHY;
+    /**
+     * When the probe in flight was sent, or 0.
+     */
+    private long probeSent = 0;
+    /**
+     * The thread sending the probes while running; a thread that is no longer
+     * this one stops.
+     */
+    private Thread prober = null;
+    private boolean running = false;
+
+    /**
+     * @param connection the connection watched (opened)
+     * @param period interval between probes
+     * @param unit unit of the interval
+     */
+    public HealthMonitor(Connection connection, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Invalid probe period: " + period);
+        }
+        this.connection = connection;
+        this.periodNanos = unit.toNanos(period);
+    }
+
+    /**
+     * @param rtt 90th percentile of the round-trip times beyond which the
+     * connection is degraded (default 100 ms)
+     * @param unit unit of the threshold
+     */
+    public synchronized void setDegradedThreshold(long rtt, TimeUnit unit) {
+        degradedNanos = unit.toNanos(rtt);
+    }
+
+    /**
+     * @param wait time after which an unanswered probe makes the connection
+     * unresponsive (default 2 s)
+     * @param unit unit of the wait
+     */
+    public synchronized void setUnresponsiveAfter(long wait, TimeUnit unit) {
+        unresponsiveNanos = unit.toNanos(wait);
+    }
+
+    /**
+     * Starts probing; the first probe is sent at once.
+     */
+    public synchronized void start() {
+        if (!running) {
+            running = true;
+            prober = Threads.start(new Runnable() {
+                @Override
+                public void run() {
+                    probe();
+                }
+            }, "WS3D-health " + connection);
+        }
+    }
+
+    /**
+     * Stops probing. The probe in flight, if any, is still recorded.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (prober != null) {
+            LockSupport.unpark(prober);
+            prober = null;
+        }
+    }
+
+    public synchronized Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @param q the quantile, between 0 and 1 (e.g. 0.99)
+     * @param unit unit of the result
+     * @return the quantile of the round-trip times of the last probes, or -1
+     * if no probe has been answered yet
+     */
+    public synchronized long getPercentile(double q, TimeUnit unit) {
+        if (sampleCount == 0) {
+            return -1;
+        }
+        return unit.convert(percentile(q), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return number of probes sent
+     */
+    public synchronized long getProbeCount() {
+        return probes;
+    }
+
+    /**
+     * @return number of probes failed or answered too late
+     */
+    public synchronized long getFailureCount() {
+        return failures;
+    }
+
+    /**
+     * Runs on the thread of the monitor until it is stopped, ticking once per
+     * period. The thread is parked (not waiting on the monitor), so that a
+     * virtual thread does not pin its carrier.
+     */
+    private void probe() {
+        long next = System.nanoTime();
+        while (tick()) {
+            next += periodNanos;
+            long left;
+            while ((left = next - System.nanoTime()) > 0 && isProber()) {
+                LockSupport.parkNanos(this, left);
+            }
+        }
+    }
+
+    private synchronized boolean isProber() {
+        return running && prober == Thread.currentThread();
+    }
+
+    /**
+     * Sends a probe or, if the previous one is unanswered, checks whether it
+     * is late.
+     *
+     * @return false if the monitor was stopped
+     */
+    private boolean tick() {
+        HealthEvent event = null;
+        boolean send = false;
+        synchronized (this) {
+            if (!isProber()) {
+                return false;
+            }
+            long now = System.nanoTime();
+            if (probeSent == 0) {
+                probeSent = now;
+                probes++;
+                send = true;
+            } else if (now - probeSent > unresponsiveNanos && status != Status.UNRESPONSIVE) {
+                failures++;
+                event = change(Status.UNRESPONSIVE, "no report to \"" + PROBE + "\" for " + TimeUnit.NANOSECONDS.toMillis(now - probeSent) + " ms");
+            }
+        }
+        publish(event);
+        if (send) {
+            final long sent = System.nanoTime();
+            //a probe stuck behind a full queue would hide the unanswered ones
+            connection.tryExchangeAsync(PROBE).whenComplete(new BiConsumer<String, Throwable>() {
+                @Override
+                public void accept(String report, Throwable ex) {
+                    answered(sent, report, ex);
+                }
+            });
+        }
+        return true;
+    }
+
+    private void answered(long sent, String report, Throwable ex) {
+        long rtt = System.nanoTime() - sent;
+        HealthEvent event;
+        synchronized (this) {
+            probeSent = 0;
+            if (ex != null || report == null || report.startsWith(ResponseFramer.ERROR_CODE)) {
+                failures++;
+                event = change(Status.UNRESPONSIVE, "\"" + PROBE + "\" failed: " + ((ex != null) ? ex : report));
+            } else {
+                samples[sampleCount % WINDOW] = rtt;
+                sampleCount++;
+                long p90 = percentile(0.9);
+                if (p90 > degradedNanos) {
+                    event = change(Status.DEGRADED, "p90 round trip " + p90 / 1000 + " us");
+                } else {
+                    event = change(Status.HEALTHY, "p90 round trip " + p90 / 1000 + " us");
+                }
+            }
+        }
+        publish(event);
+    }
+
+    /**
+     * @return the event of the change, or null if the status is unchanged
+     */
+    private HealthEvent change(Status s, String reason) {
+        if (s == status) {
+            return null;
+        }
+        Status previous = status;
+        status = s;
+        return new HealthEvent(previous, s, (sampleCount == 0) ? 0 : percentile(0.5), (sampleCount == 0) ? 0 : percentile(0.9), reason);
+    }
+
+    private void publish(HealthEvent event) {
+        if (event != null) {
+            setChanged();
+            notifyObservers(event);
+        }
+    }
+
+    private long percentile(double q) {
+        int n = Math.min(sampleCount, WINDOW);
+        long[] sorted = Arrays.copyOf(samples, n);
+        Arrays.sort(sorted);
+        int i = (int) Math.ceil(q * n) - 1;
+        return sorted[Math.max(0, Math.min(n - 1, i))];
+    }
+
+    @Override
+    public synchronized String toString() {
+        return connection + " " + status + ", " + probes + " probes, " + failures + " failures";
+    }
+}
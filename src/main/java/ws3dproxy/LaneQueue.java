@@ -0,0 +1,158 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue of items in lanes, polled according to {@link PriorityLanes}; without
+ * lanes it is a plain FIFO. Not thread safe: the owner synchronizes.
+ */
+final class LaneQueue<T> {
+
+    private static final class Entry<T> {
+
+        final T item;
+        final CommandLane lane;
+        final long enqueued;
+
+        Entry(T item, CommandLane lane, long enqueued) {
+            this.item = item;
+            this.lane = lane;
+            this.enqueued = enqueued;
+        }
+    }
+
+    private final PriorityLanes lanes;
+    /**
+     * One queue per lane, in the order of the lanes (a single one for FIFO).
+     */
+    private final List<ArrayDeque<Entry<T>>> queues;
+    /**
+     * Turns left to each lane in the current round.
+     */
+    private final int[] credits;
+    private int size = 0;
+
+    /**
+     * @param lanes the ordering, or null for FIFO
+     */
+    LaneQueue(PriorityLanes lanes) {
+        this.lanes = lanes;
+        int n = (lanes == null) ? 1 : CommandLane.values().length;
+        queues = new ArrayList<ArrayDeque<Entry<T>>>(n);
+        for (int i = 0; i < n; i++) {
+            queues.add(new ArrayDeque<Entry<T>>());
+        }
+        credits = new int[n];
+        refill();
+    }
+
+    void add(CommandLane lane, T item) {
+        int i = (lanes == null) ? 0 : lane.ordinal();
+        queues.get(i).add(new Entry<T>(item, lane, (lanes == null) ? 0 : System.nanoTime()));
+        size++;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the next item, or null if the queue is empty
+     */
+    T poll() {
+        if (size == 0) {
+            return null;
+        }
+        size--;
+        if (lanes == null) {
+            return queues.get(0).poll().item;
+        }
+        //starvation protection: the oldest head beyond the maximum wait
+        long now = System.nanoTime();
+        long maxWait = lanes.getMaxWait(TimeUnit.NANOSECONDS);
+        int overdue = -1;
+        for (int i = 0; i < queues.size(); i++) {
+            Entry<T> head = queues.get(i).peek();
+            if (head != null && now - head.enqueued > maxWait && (overdue < 0 || head.enqueued < queues.get(overdue).peek().enqueued)) {
+                overdue = i;
+            }
+        }
+        if (overdue >= 0) {
+            return queues.get(overdue).poll().item;
+        }
+        while (true) {
+            for (int i = 0; i < queues.size(); i++) {
+                if (credits[i] > 0 && !queues.get(i).isEmpty()) {
+                    credits[i]--;
+                    return queues.get(i).poll().item;
+                }
+            }
+            refill();
+        }
+    }
+
+    /**
+     * Removes an item, whatever the ordering (e.g. to discard them all).
+     *
+     * @return an item, or null if the queue is empty
+     */
+    T pollAny() {
+        for (ArrayDeque<Entry<T>> q : queues) {
+            Entry<T> e = q.poll();
+            if (e != null) {
+                size--;
+                return e.item;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the item of the given lane that has waited longest, whatever
+     * the ordering (e.g. to shed it).
+     *
+     * @return the item, or null if no item of the lane is waiting
+     */
+    T pollOldest(CommandLane lane) {
+        ArrayDeque<Entry<T>> q = queues.get((lanes == null) ? 0 : lane.ordinal());
+        Iterator<Entry<T>> it = q.iterator();
+        while (it.hasNext()) {
+            Entry<T> e = it.next();
+            if (e.lane == lane) {
+                it.remove();
+                size--;
+                return e.item;
+            }
+        }
+        return null;
+    }
+
+    private void refill() {
+        for (int i = 0; i < credits.length; i++) {
+            credits[i] = (lanes == null) ? 1 : lanes.getWeight(CommandLane.values()[i]);
+        }
+    }
+}
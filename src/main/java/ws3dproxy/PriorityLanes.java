@@ -0,0 +1,90 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How a {@link Connection} orders the commands waiting for it: each
+ * {@link CommandLane} has a weight, and out of every round of waiting
+ * commands a lane gets as many turns as its weight, the most urgent lane
+ * first (weighted round robin). A command that has waited longer than the
+ * maximum wait goes first whatever its lane, so perception is slowed down by
+ * a burst of motor commands but never starved.
+ *
+ * The async commands of the connection are sent in batches of at most
+ * {@link #getMaxBatch()} commands, so that a motor command submitted while a
+ * long queue of perception queries is waiting goes out with the next batch.
+ */
+public final class PriorityLanes {
+
+    private final int[] weights;
+    private final long maxWaitNanos;
+    private final int maxBatch;
+
+    /**
+     * Weights 8 (motor), 4 (action), 1 (perception), maximum wait of 50 ms,
+     * batches of up to 16 commands.
+     */
+    public PriorityLanes() {
+        this(8, 4, 1, 50, TimeUnit.MILLISECONDS, 16);
+    }
+
+    /**
+     * @param motorWeight turns of the motor lane per round
+     * @param actionWeight turns of the action lane per round
+     * @param perceptionWeight turns of the perception lane per round
+     * @param maxWait wait after which a command goes first
+     * @param unit unit of the maximum wait
+     * @param maxBatch maximum number of async commands sent together
+     */
+    public PriorityLanes(int motorWeight, int actionWeight, int perceptionWeight, long maxWait, TimeUnit unit, int maxBatch) {
+        if (motorWeight < 1 || actionWeight < 1 || perceptionWeight < 1 || maxWait < 0 || maxBatch < 1) {
+            throw new IllegalArgumentException("Invalid priority lanes: weights " + motorWeight + "/" + actionWeight + "/" + perceptionWeight + ", max wait " + maxWait + ", max batch " + maxBatch);
+        }
+        this.weights = new int[]{motorWeight, actionWeight, perceptionWeight};
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.maxBatch = maxBatch;
+    }
+
+    /**
+     * @param lane a lane
+     * @return turns of the lane per round
+     */
+    public int getWeight(CommandLane lane) {
+        return weights[lane.ordinal()];
+    }
+
+    /**
+     * @param unit unit of the result
+     * @return wait after which a command goes first
+     */
+    public long getMaxWait(TimeUnit unit) {
+        return unit.convert(maxWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return maximum number of async commands sent together
+     */
+    public int getMaxBatch() {
+        return maxBatch;
+    }
+
+    @Override
+    public String toString() {
+        return "weights " + weights[0] + "/" + weights[1] + "/" + weights[2] + ", max wait " + getMaxWait(TimeUnit.MILLISECONDS) + " ms, max batch " + maxBatch;
+    }
+}
@@ -0,0 +1,74 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy;
+
+/**
+ * How many commands may wait for a {@link Connection}, and what happens to a
+ * command submitted when that many are already waiting:
+ * <ul>
+ * <li>BLOCK: the caller waits until there is room;</li>
+ * <li>FAIL_FAST: the command is rejected at once;</li>
+ * <li>DROP_OLDEST_PERCEPTION: the perception query that has waited longest
+ * (see {@link CommandLane#PERCEPTION}) is rejected to make room; if no
+ * perception query is waiting, the caller waits as with BLOCK.</li>
+ * </ul>
+ * A rejected command is not sent: its report is a rejection report (see
+ * {@link CommandRejectedException#REPORT_PREFIX}).
+ *
+ * The threads waiting for their turn and the async commands queued for the
+ * I/O thread are two queues, each one bounded by the capacity.
+ */
+public final class QueueLimit {
+
+    public enum Overload {
+
+        BLOCK, FAIL_FAST, DROP_OLDEST_PERCEPTION
+    }
+
+    private final int capacity;
+    private final Overload overload;
+
+    /**
+     * @param capacity maximum number of commands waiting
+     * @param overload what happens to a command submitted beyond the capacity
+     */
+    public QueueLimit(int capacity, Overload overload) {
+        if (capacity < 1 || overload == null) {
+            throw new IllegalArgumentException("Invalid queue limit: capacity " + capacity + ", overload " + overload);
+        }
+        this.capacity = capacity;
+        this.overload = overload;
+    }
+
+    /**
+     * @return maximum number of commands waiting
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return what happens to a command submitted beyond the capacity
+     */
+    public Overload getOverload() {
+        return overload;
+    }
+
+    @Override
+    public String toString() {
+        return "capacity " + capacity + ", " + overload;
+    }
+}
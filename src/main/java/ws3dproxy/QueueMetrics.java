@@ -0,0 +1,185 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of the commands waiting for a {@link Connection}: how many are
+ * waiting, how long they waited and how many were held back or rejected by
+ * the {@link QueueLimit}. The wait of a command lasts from its submission
+ * until its turn to be sent (or, for an async command, until it is taken
+ * into a batch); it is counted in a histogram of power-of-2 microseconds.
+ */
+public final class QueueMetrics {
+
+    private static final int BUCKETS = 32;
+
+    /**
+     * Commands waited less than 2^i microseconds in bucket i (the last one
+     * takes everything beyond).
+     */
+    private final long[] waits = new long[BUCKETS];
+    private int depth = 0;
+    private int maxDepth = 0;
+    private long submitted = 0;
+    private long blocked = 0;
+    private long rejected = 0;
+    private long shed = 0;
+
+    QueueMetrics() {
+    }
+
+    /**
+     * A command was submitted and is waiting.
+     */
+    synchronized void enqueued() {
+        submitted++;
+        if (++depth > maxDepth) {
+            maxDepth = depth;
+        }
+    }
+
+    /**
+     * A command was submitted and sent without waiting.
+     */
+    synchronized void admitted() {
+        submitted++;
+        waits[0]++;
+    }
+
+    /**
+     * A waiting command was taken from the queue (to be sent, or failed).
+     */
+    synchronized void dequeued() {
+        depth--;
+    }
+
+    /**
+     * A waiting command got its turn.
+     *
+     * @param waitNanos time since its submission
+     */
+    synchronized void waited(long waitNanos) {
+        long micros = waitNanos / 1000;
+        int i = (micros <= 0) ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        waits[i]++;
+    }
+
+    /**
+     * A command had to wait for room in the queue.
+     */
+    synchronized void blocked() {
+        blocked++;
+    }
+
+    /**
+     * A command was rejected when submitted.
+     */
+    synchronized void rejected() {
+        submitted++;
+        rejected++;
+    }
+
+    /**
+     * A waiting perception query was rejected to make room.
+     */
+    synchronized void shed() {
+        depth--;
+        shed++;
+    }
+
+    /**
+     * @return number of commands waiting now
+     */
+    public synchronized int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return largest number of commands waiting at once
+     */
+    public synchronized int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return number of commands submitted, rejected ones included
+     */
+    public synchronized long getSubmittedCount() {
+        return submitted;
+    }
+
+    /**
+     * @return number of commands that had to wait for room in the queue
+     */
+    public synchronized long getBlockedCount() {
+        return blocked;
+    }
+
+    /**
+     * @return number of commands rejected when submitted (FAIL_FAST)
+     */
+    public synchronized long getRejectedCount() {
+        return rejected;
+    }
+
+    /**
+     * @return number of waiting perception queries rejected to make room
+     * (DROP_OLDEST_PERCEPTION)
+     */
+    public synchronized long getShedCount() {
+        return shed;
+    }
+
+    /**
+     * @return histogram of the waits: element i counts the commands that
+     * waited less than 2^i microseconds (the last element, any longer)
+     */
+    public synchronized long[] getWaitHistogram() {
+        return waits.clone();
+    }
+
+    /**
+     * @param q the quantile, between 0 and 1 (e.g. 0.99)
+     * @param unit unit of the result
+     * @return upper bound of the bucket of the histogram holding the quantile
+     * of the waits, or 0 if no command got its turn yet
+     */
+    public synchronized long getWaitPercentile(double q, TimeUnit unit) {
+        long total = 0;
+        for (long n : waits) {
+            total += n;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += waits[i];
+            if (seen >= rank && seen > 0) {
+                return unit.convert(1L << i, TimeUnit.MICROSECONDS);
+            }
+        }
+        return unit.convert(1L << (BUCKETS - 1), TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "depth " + depth + " (max " + maxDepth + "), submitted " + submitted + ", blocked " + blocked + ", rejected " + rejected + ", shed " + shed + ", wait p50 < " + getWaitPercentile(0.5, TimeUnit.MICROSECONDS) + " us, p99 < " + getWaitPercentile(0.99, TimeUnit.MICROSECONDS) + " us";
+    }
+}
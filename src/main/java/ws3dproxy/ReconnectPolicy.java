@@ -0,0 +1,122 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import ws3dproxy.protocol.ResponseFramer;
+
+/**
+ * How a {@link Connection} recovers from a broken link: how many times and
+ * how often it tries to reconnect (exponential backoff), and which of the
+ * commands that were in flight may be sent again once reconnected.
+ *
+ * A command may be replayed if executing it twice has the same effect as
+ * executing it once: queries (e.g. "getcreaturestate", "getall") and motor
+ * commands that set an absolute value (e.g. "setAngle", "stop"). Commands
+ * that create, consume or deliver something (e.g. "new", "eatit",
+ * "deliver") are not replayed: they get an error report instead, since the
+ * server may or may not have executed them.
+ */
+public final class ReconnectPolicy {
+
+    /**
+     * Verbs replayed by default.
+     */
+    private static final Set<String> IDEMPOTENT_VERBS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            "getcreaturestate", "getall", "getsack", "getclock", "getcreatcoords", "getcreatinfo",
+            "getsimulpars", "getNumEntities", "getenvironmen", "check", "checkXY", "camera", "closest",
+            "game", "memory", "mindName", "setAngle", "setGoTo", "setTurn", "stop", "start", "setenv")));
+
+    private final int maxAttempts;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final Set<String> replayableVerbs;
+
+    /**
+     * Creates a policy that replays the idempotent commands.
+     *
+     * @param maxAttempts number of reconnection attempts before giving up
+     * @param initialDelay wait before the first attempt; doubled after each
+     * failed attempt
+     * @param maxDelay upper bound of the wait between attempts
+     * @param unit unit of the delays
+     */
+    public ReconnectPolicy(int maxAttempts, long initialDelay, long maxDelay, TimeUnit unit) {
+        this(maxAttempts, initialDelay, maxDelay, unit, IDEMPOTENT_VERBS);
+    }
+
+    /**
+     * @param maxAttempts number of reconnection attempts before giving up
+     * @param initialDelay wait before the first attempt; doubled after each
+     * failed attempt
+     * @param maxDelay upper bound of the wait between attempts
+     * @param unit unit of the delays
+     * @param replayableVerbs verbs of the commands that may be sent again
+     */
+    public ReconnectPolicy(int maxAttempts, long initialDelay, long maxDelay, TimeUnit unit, Set<String> replayableVerbs) {
+        if (maxAttempts < 1 || initialDelay < 0 || maxDelay < initialDelay) {
+            throw new IllegalArgumentException("Invalid reconnect policy: " + maxAttempts + " attempts, delay " + initialDelay + ".." + maxDelay);
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialDelayMillis = unit.toMillis(initialDelay);
+        this.maxDelayMillis = unit.toMillis(maxDelay);
+        this.replayableVerbs = Collections.unmodifiableSet(new HashSet<String>(replayableVerbs));
+    }
+
+    /**
+     * @return number of reconnection attempts before giving up
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param attempt number of the attempt, starting at 1
+     * @return wait before the given attempt, in milliseconds
+     */
+    public long getDelayMillis(int attempt) {
+        long delay = initialDelayMillis;
+        for (int i = 1; i < attempt && delay < maxDelayMillis; i++) {
+            delay *= 2;
+        }
+        return Math.min(delay, maxDelayMillis);
+    }
+
+    /**
+     * @param command command in text format
+     * @return true if the command may be sent again after a reconnection
+     */
+    public boolean isReplayable(String command) {
+        String verb = ResponseFramer.verbOf(command);
+        return verb != null && replayableVerbs.contains(verb);
+    }
+
+    /**
+     * @return verbs replayed by default
+     */
+    public static Set<String> getIdempotentVerbs() {
+        return IDEMPOTENT_VERBS;
+    }
+
+    @Override
+    public String toString() {
+        return maxAttempts + " attempts, " + initialDelayMillis + ".." + maxDelayMillis + " ms";
+    }
+}
@@ -0,0 +1,262 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import ws3dproxy.protocol.ResponseFramer;
+
+/**
+ * Cache of the reports of the near-static queries sent through
+ * {@link CommandUtility}, per connection and with a time to live per verb:
+ * <ul>
+ * <li>"getsimulpars" (world size and delivery spot): 10 s;</li>
+ * <li>"getenvironmen" (world size): 10 s;</li>
+ * <li>"getNumEntities": 500 ms.</li>
+ * </ul>
+ * A command of the same connection that changes the values drops them at
+ * once: "setenv" the world size, "newDeliverySpot" the simulation
+ * parameters, "worldReset" everything, and any action (a command neither
+ * motor nor perception, see {@link CommandLane}) the number of entities.
+ * The connection drops them whichever way the command is sent: through
+ * {@link CommandUtility}, a {@link CommandPipeline},
+ * {@link Connection#exchange(String)} or the I/O thread.
+ * Changes made by other connections or clients are only seen when the
+ * reports expire.
+ */
+public final class ResponseCache {
+
+    private static final String SIMULATION_PARAMETERS = "getsimulpars";
+    private static final String ENVIRONMENT_DIMENSION = "getenvironmen";
+    private static final String NUMBER_OF_ENTITIES = "getNumEntities";
+
+    private static final class Entry {
+
+        final String report;
+        final long expires;
+
+        Entry(String report, long expires) {
+            this.report = report;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * Time to live of the reports, by verb; verbs not present are not cached.
+     * Replaced, never changed, so that {@link #concerns(String)} reads it
+     * without the lock.
+     */
+    private volatile Map<String, Long> ttlNanos;
+    /**
+     * Reports by connection and command.
+     */
+    private final Map<Connection, Map<String, Entry>> reports = new WeakHashMap<Connection, Map<String, Entry>>();
+    private final Map<String, long[]> counters = new HashMap<String, long[]>();
+    /**
+     * Incremented by every invalidation, so that the report of a query that
+     * was in flight meanwhile is not stored.
+     */
+    private long generation = 0;
+
+    ResponseCache() {
+        Map<String, Long> ttl = new HashMap<String, Long>();
+        ttl.put(SIMULATION_PARAMETERS, TimeUnit.SECONDS.toNanos(10));
+        ttl.put(ENVIRONMENT_DIMENSION, TimeUnit.SECONDS.toNanos(10));
+        ttl.put(NUMBER_OF_ENTITIES, TimeUnit.MILLISECONDS.toNanos(500));
+        ttlNanos = ttl;
+    }
+
+    /**
+     * @param verb verb of the query (e.g. "getsimulpars")
+     * @param ttl time to live of its reports, or 0 not to cache them
+     * @param unit unit of the time to live
+     */
+    public synchronized void setTtl(String verb, long ttl, TimeUnit unit) {
+        Map<String, Long> m = new HashMap<String, Long>(ttlNanos);
+        if (ttl > 0) {
+            m.put(verb, unit.toNanos(ttl));
+            ttlNanos = m;
+        } else {
+            m.remove(verb);
+            ttlNanos = m;
+            invalidate(verb);
+        }
+    }
+
+    /**
+     * @param verb verb of the query
+     * @param unit unit of the result
+     * @return time to live of its reports, or 0 if they are not cached
+     */
+    public synchronized long getTtl(String verb, TimeUnit unit) {
+        Long ttl = ttlNanos.get(verb);
+        return (ttl == null) ? 0 : unit.convert(ttl, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Tells, without taking the lock of the cache, whether the report of a
+     * command may be served from it: only queries with a time to live are.
+     *
+     * @param command command in text format
+     * @return false if the command can be sent without touching the cache
+     */
+    boolean caches(String command) {
+        return ttlNanos.containsKey(ResponseFramer.verbOf(command));
+    }
+
+    /**
+     * @param conn connection of the query
+     * @param command the query
+     * @return the cached report, or null if the query is not cached or its
+     * report has expired
+     */
+    synchronized String get(Connection conn, String command) {
+        String verb = ResponseFramer.verbOf(command);
+        if (verb == null || !ttlNanos.containsKey(verb)) {
+            return null;
+        }
+        Map<String, Entry> m = reports.get(conn);
+        Entry e = (m == null) ? null : m.get(command.trim());
+        long[] c = countersOf(verb);
+        if (e == null || System.nanoTime() - e.expires > 0) {
+            c[1]++;
+            return null;
+        }
+        c[0]++;
+        return e.report;
+    }
+
+    /**
+     * @return the current generation, to be given to
+     * {@link #put(Connection, String, String, long)}
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Stores the report of a query, unless something was invalidated since
+     * the query was sent.
+     *
+     * @param generation the generation when the query was sent
+     */
+    synchronized void put(Connection conn, String command, String report, long generation) {
+        String verb = ResponseFramer.verbOf(command);
+        Long ttl = (verb == null) ? null : ttlNanos.get(verb);
+        if (ttl == null || generation != this.generation || report.isEmpty()) {
+            return;
+        }
+        Map<String, Entry> m = reports.get(conn);
+        if (m == null) {
+            m = new HashMap<String, Entry>();
+            reports.put(conn, m);
+        }
+        m.put(command.trim(), new Entry(report, System.nanoTime() + ttl));
+    }
+
+    /**
+     * Drops the reports that the given command changes.
+     *
+     * @param conn connection of the command
+     * @param command command about to be sent, or just sent
+     */
+    synchronized void invalidateFor(Connection conn, String command) {
+        String verb = ResponseFramer.verbOf(command);
+        if (CommandLane.of(command) != CommandLane.ACTION) {
+            return;
+        }
+        generation++;
+        Map<String, Entry> m = reports.get(conn);
+        if (m == null) {
+            return;
+        }
+        if ("worldReset".equals(verb)) {
+            m.clear();
+            return;
+        }
+        if ("setenv".equals(verb)) {
+            remove(m, ENVIRONMENT_DIMENSION);
+            remove(m, SIMULATION_PARAMETERS);
+        } else if ("newDeliverySpot".equals(verb)) {
+            remove(m, SIMULATION_PARAMETERS);
+        }
+        remove(m, NUMBER_OF_ENTITIES);
+    }
+
+    /**
+     * Drops every cached report.
+     */
+    public synchronized void clear() {
+        generation++;
+        reports.clear();
+    }
+
+    /**
+     * @param verb verb of the query
+     * @return number of reports of the query served from the cache
+     */
+    public synchronized long getHitCount(String verb) {
+        return countersOf(verb)[0];
+    }
+
+    /**
+     * @param verb verb of the query
+     * @return number of times the query had to be sent
+     */
+    public synchronized long getMissCount(String verb) {
+        return countersOf(verb)[1];
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, long[]> e : counters.entrySet()) {
+            sb.append(e.getKey()).append(": ").append(e.getValue()[0]).append(" hits, ").append(e.getValue()[1]).append(" misses; ");
+        }
+        return sb.toString();
+    }
+
+    private void invalidate(String verb) {
+        generation++;
+        for (Map<String, Entry> m : reports.values()) {
+            remove(m, verb);
+        }
+    }
+
+    /**
+     * Removes the reports of every command of the given verb.
+     */
+    private static void remove(Map<String, Entry> m, String verb) {
+        Iterator<String> it = m.keySet().iterator();
+        while (it.hasNext()) {
+            if (verb.equals(ResponseFramer.verbOf(it.next()))) {
+                it.remove();
+            }
+        }
+    }
+
+    private long[] countersOf(String verb) {
+        long[] c = counters.get(verb);
+        if (c == null) {
+            c = new long[2];
+            counters.put(verb, c);
+        }
+        return c;
+    }
+}
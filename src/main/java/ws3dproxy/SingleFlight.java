@@ -0,0 +1,123 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-flight execution of identical read-only queries: while a query is
+ * in flight, the callers of the same query (same key) do not send it again
+ * but wait for it and share its result. A caller that arrives once the
+ * query has completed starts a new one, so a result is never older than the
+ * query in flight when the caller arrived.
+ *
+ * The result is shared by all the callers of a flight: it must not be
+ * modified, or each caller must be handed a copy.
+ *
+ * @param <K> type of the key of a query (e.g. the connection and command)
+ * @param <V> type of the result
+ */
+public final class SingleFlight<K, V> {
+
+    /**
+     * A query.
+     *
+     * @param <V> type of the result
+     */
+    public interface Query<V> {
+
+        V execute() throws CommandExecException;
+    }
+
+    private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<K, CompletableFuture<V>>();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong joined = new AtomicLong();
+
+    /**
+     * Executes the query, or joins the identical one in flight.
+     *
+     * @param key key of the query
+     * @param query the query, executed by the calling thread if none is in
+     * flight
+     * @return the result of the query
+     * @throws CommandExecException the exception of the query, if it failed
+     */
+    public V execute(K key, Query<V> query) throws CommandExecException {
+        CompletableFuture<V> mine = new CompletableFuture<V>();
+        CompletableFuture<V> flight = flights.putIfAbsent(key, mine);
+        if (flight != null) {
+            joined.incrementAndGet();
+            return await(flight);
+        }
+        executed.incrementAndGet();
+        V result;
+        try {
+            result = query.execute();
+        } catch (CommandExecException ex) {
+            flights.remove(key, mine);
+            mine.completeExceptionally(ex);
+            throw ex;
+        } catch (RuntimeException ex) {
+            flights.remove(key, mine);
+            mine.completeExceptionally(ex);
+            throw ex;
+        } catch (Error ex) {
+            flights.remove(key, mine);
+            mine.completeExceptionally(ex);
+            throw ex;
+        }
+        //later callers must start a fresh query
+        flights.remove(key, mine);
+        mine.complete(result);
+        return result;
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) throws CommandExecException {
+        try {
+            return flight.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof CommandExecException) {
+                throw (CommandExecException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * @return number of queries actually executed
+     */
+    public long getExecutedCount() {
+        return executed.get();
+    }
+
+    /**
+     * @return number of calls that joined a query in flight
+     */
+    public long getJoinedCount() {
+        return joined.get();
+    }
+}
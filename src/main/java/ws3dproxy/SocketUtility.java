@@ -19,35 +19,50 @@
 package ws3dproxy;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.PrintWriter;
-import java.net.Socket;
-import ws3dproxy.util.Logger;
+import ws3dproxy.transport.ConnectionOptions;
+import ws3dproxy.transport.RecordingTransport;
+import ws3dproxy.transport.TcpTransport;
+import ws3dproxy.transport.Transport;
+import ws3dproxy.util.Threads;
 
 /**
  * Utility class for this client server communication model through a network
  * socket.
  *
+ * Every {@link Connection} has its own socket. The static methods of this class
+ * operate on the default connection, which is the last one created by
+ * {@link #createSocket(String, int)} or {@link #createConnection(String, int)}.
+ *
  * @author ecalhau
  */
 public class SocketUtility {
 
     /**
-     * The network socket through which the server/client interact with each
-     * other: client sends commands to the server which in turn process them and
-     * sends back a failure or success report.
+     * The connection used by the static methods of this class and by the
+     * {@link CommandUtility} methods that do not take a connection.
+     */
+    private static volatile Connection defaultConnection;
+    /**
+     * If true, the old blocking streams are used instead of the non-blocking
+     * channel. False by default, whatever the JDK.
+     */
+    private static boolean useBlockingStreams = false;
+    /**
+     * Session log of the next connection, or null if not recording.
      */
-    protected static Socket sock;
+    private static String recordingFile = null;
+    private static int recordedSessions = 0;
     /**
-     * Writer of the commands (text messages) sent to the server.
+     * Reconnection policy of the next connections, or null.
      */
-    protected static PrintWriter out;
+    private static volatile ReconnectPolicy reconnectPolicy = null;
     /**
-     * Reader of the text report received from the server after the command
-     * execution.
+     * Socket options of the next connections.
      */
-    protected static BufferedReader in;
+    private static volatile ConnectionOptions connectionOptions = new ConnectionOptions();
 
     /**
      * Creation of the network socket through which the server/client interact
@@ -58,18 +73,144 @@ public class SocketUtility {
      * @param port port number to connect to server
      */
     public static void createSocket(String host, int port) {
-        /* Server socket to receive connections */
+        createConnection(host, port);
+    }
+
+    /**
+     * Opens a new connection to the server, which also becomes the default
+     * connection.
+     *
+     * @param host IP address or name of remote host (or localhost)
+     * @param port port number to connect to server
+     * @return the opened connection
+     */
+    public static Connection createConnection(String host, int port) {
+        String log = nextRecordingFile();
+        if (log == null) {
+            return createConnection(new Connection(host, port));
+        }
         try {
-            sock = new Socket(host, port);
-            createWriter();
-            createReader();
-            registerWithIKernel();
-
-        } catch (Exception ex) {
-        show("Server " + host + ":" + port + " is unavailable");
-        show("Please check WorldServer3D.");
-        throw new RuntimeException("WS3D server unavailable at " + host + ":" + port, ex);
+            ConnectionOptions options = getConnectionOptions();
+            Transport tcp = new TcpTransport(host, port, useBlockingStreams, options);
+            return createConnection(new Connection(new RecordingTransport(tcp, new File(log)), options));
+        } catch (IOException ex) {
+            throw new RuntimeException("Session log can not be created: " + log, ex);
+        }
+    }
+
+    /**
+     * Opens a new connection over the given transport (e.g. an in-memory one),
+     * which also becomes the default connection.
+     *
+     * @param transport carrier of the commands and reports
+     * @return the opened connection
+     */
+    public static Connection createConnection(Transport transport) {
+        return createConnection(new Connection(transport));
+    }
+
+    private static Connection createConnection(Connection c) {
+        c.setReconnectPolicy(reconnectPolicy);
+        c.open();
+        defaultConnection = c;
+        return c;
+    }
+
+    /**
+     * Sets how the connections created afterwards recover from a broken link
+     * (see {@link Connection#setReconnectPolicy(ReconnectPolicy)}).
+     *
+     * @param policy the reconnection policy, or null (default) to give up at
+     * the first I/O error
+     */
+    public static void setReconnectPolicy(ReconnectPolicy policy) {
+        reconnectPolicy = policy;
+    }
+
+    /**
+     * @return the reconnection policy of the connections created afterwards,
+     * or null
+     */
+    public static ReconnectPolicy getReconnectPolicy() {
+        return reconnectPolicy;
+    }
+
+    /**
+     * Sets the socket options (TCP_NODELAY, buffer sizes, keep-alive) and the
+     * write batching of the connections created afterwards. Unless changed
+     * here, TCP_NODELAY is on (see {@link ConnectionOptions}).
+     *
+     * @param options the options (copied)
+     */
+    public static void setConnectionOptions(ConnectionOptions options) {
+        connectionOptions = new ConnectionOptions(options);
+    }
+
+    /**
+     * @return a copy of the options of the connections created afterwards
+     */
+    public static ConnectionOptions getConnectionOptions() {
+        return new ConnectionOptions(connectionOptions);
+    }
+
+    /**
+     * Starts the recording mode: the sessions of the connections opened
+     * afterwards by {@link #createConnection(String, int)} are recorded (see
+     * {@link RecordingTransport}), and can be replayed offline with a
+     * {@link ws3dproxy.transport.ReplayTransport}. The first connection is
+     * recorded to the given file, the next ones to "file.1", "file.2" etc.
+     *
+     * @param file path of the session log
+     */
+    public static synchronized void startRecording(String file) {
+        recordingFile = file;
+        recordedSessions = 0;
+    }
+
+    /**
+     * Stops the recording mode. Connections already being recorded are
+     * recorded until they are closed.
+     */
+    public static synchronized void stopRecording() {
+        recordingFile = null;
+    }
+
+    private static synchronized String nextRecordingFile() {
+        if (recordingFile == null) {
+            return null;
         }
+        int n = recordedSessions++;
+        return (n == 0) ? recordingFile : recordingFile + "." + n;
+    }
+
+    /**
+     * @return the default connection or null if no connection has been created
+     */
+    public static Connection getDefaultConnection() {
+        return defaultConnection;
+    }
+
+    /**
+     * Selects the old blocking socket streams instead of the non-blocking
+     * channel. Must be called before {@link #createSocket(String, int)}.
+     *
+     * With virtual threads (see {@link Threads#isVirtual()}) the streams may be
+     * preferred: a virtual thread blocked on a socket stream releases its
+     * carrier thread, whereas one parked on a selector holds it.
+     *
+     * @param blocking true to use the blocking streams; false (default) to use
+     * the non-blocking channel
+     */
+    public static void setUseBlockingStreams(boolean blocking) {
+        useBlockingStreams = blocking;
+    }
+
+    /**
+     * @return true if the blocking streams are used instead of the
+     * non-blocking channel
+     */
+    public static boolean isUsingBlockingStreams() {
+        return useBlockingStreams;
     }
 
     /**
@@ -79,8 +220,7 @@ public class SocketUtility {
      * @param s command in text format
      */
     protected static void sendMessage(String s) {
-        //show("Sent to server: " + s);
-        out.println(s);
+        defaultConnection.sendMessage(s);
     }
 
     /**
@@ -89,51 +229,8 @@ public class SocketUtility {
      *
      * @return failure or success report of the command execution
      */
-    @SuppressWarnings("empty-statement")
     protected static String receiveMessage() {
-        StringBuilder s = new StringBuilder("");
-        String st;
-        if (!sock.isClosed()) {
-            try {
-                while (!in.ready());
-                do {
-
-                    st = in.readLine();
-                    if (st != null && !st.equals("")) {
-                        s.append(st);
-                    }
-
-                } while (in.ready());
-            } catch (IOException ex) {
-                ex.printStackTrace();
-            }
-        }
-        return s.toString();
-    }
-
-    private static void createWriter() {
-        try {
-            out = new PrintWriter(sock.getOutputStream(), true);
-        } catch (IOException ex) {
-//            show("Error during writer creation.");
-            Logger.logException(SocketUtility.class.getName(), ex);
-        }
-    }
-
-    private static void createReader() {
-        try {
-            in = new BufferedReader(
-                    new InputStreamReader(sock.getInputStream()), 65535);
-        } catch (IOException ex) {
-//            show("Error during reader creation.");
-            Logger.logException(SocketUtility.class.getName(), ex);
-        }
-    }
-
-    private static void registerWithIKernel() {
-        String s;
-        s = receiveMessage();
-        show("Connecting to Server ... " + s);
+        return defaultConnection.receiveMessage();
     }
 
     /**
@@ -141,9 +238,10 @@ public class SocketUtility {
      * send commands to the server.
      *
      * @return the writer or null if the client is not connected to the server
+     * (or the default connection is not TCP)
      */
     public static PrintWriter getWriter() {
-        return out;
+        return defaultConnection == null ? null : defaultConnection.getWriter();
     }
 
     /**
@@ -151,9 +249,10 @@ public class SocketUtility {
      * receive the failure/success report from the server.
      *
      * @return the reader or null if the client is not connected to the server
+     * (or the default connection is not TCP)
      */
     public static BufferedReader getReader() {
-        return in;
+        return defaultConnection == null ? null : defaultConnection.getReader();
     }
 
     /**
@@ -19,8 +19,12 @@
 package ws3dproxy;
 
 import java.util.StringTokenizer;
+import java.util.concurrent.locks.ReentrantLock;
 import ws3dproxy.model.Creature;
 import ws3dproxy.model.World;
+import ws3dproxy.protocol.ReportFormats;
+import ws3dproxy.protocol.ReportSchema;
+import ws3dproxy.transport.Transport;
 import ws3dproxy.util.Logger;
 
 /**
@@ -41,6 +45,18 @@ public class WS3DProxy {
     //private Creature creature = null;
     //private String robotIndexID, robotNameID;
     private World world = null; //also referenced by "Environment" in comments
+    /**
+     * Connection owned by this proxy. Creatures created or retrieved through
+     * this proxy send their commands through it.
+     */
+    private Connection connection;
+    /**
+     * Held while a creature is looked up and created, so that two threads do
+     * not create it twice. Not held during the wait that follows the creation,
+     * nor is the monitor of the proxy: a (virtual) thread creating a creature
+     * does not hold up the others.
+     */
+    private final ReentrantLock creationLock = new ReentrantLock();
     
     private static final long xDefault = 400;
     private static final long yDefault = 300;
@@ -59,7 +75,20 @@ public class WS3DProxy {
         this.host = host;
         this.port = port;
         connect();
-        this.world = World.getInstance();
+        this.world = World.getInstance(connection);
+    }
+
+    /**
+     * Client server communication is established over the given transport,
+     * e.g. an in-memory one to run without a server.
+     *
+     * @param transport carrier of the commands and reports
+     */
+    public WS3DProxy(Transport transport) {
+        this.connection = SocketUtility.createConnection(transport);
+        this.host = connection.getHost();
+        this.port = connection.getPort();
+        this.world = World.getInstance(connection);
     }
 
     /**
@@ -71,7 +100,6 @@ public class WS3DProxy {
     public WS3DProxy() {
         this("localhost", 4011);
         //connect();
-        this.world = World.getInstance();
     }
 
     /**
@@ -80,7 +108,14 @@ public class WS3DProxy {
      */
     private void connect() {
         /* Server socket to receive connections */
-        SocketUtility.createSocket(host, port);
+        connection = SocketUtility.createConnection(host, port);
+    }
+
+    /**
+     * @return the connection owned by this proxy
+     */
+    public Connection getConnection() {
+        return connection;
     }
     
     /**
@@ -90,7 +125,7 @@ public class WS3DProxy {
      * @return the creature
      * @throws CommandExecException
      */
-    public synchronized Creature createCreature() throws CommandExecException {
+    public Creature createCreature() throws CommandExecException {
         return createCreature(xDefault, yDefault, pitchDefault);
     }
     
@@ -106,7 +141,7 @@ public class WS3DProxy {
      * @return the creature created
      * @throws CommandExecException
      */
-    public synchronized Creature createCreature(double x, double y, double pitch) throws CommandExecException {
+    public Creature createCreature(double x, double y, double pitch) throws CommandExecException {
         return(createCreature(x,y,pitch,0));
     }
 
@@ -123,26 +158,32 @@ public class WS3DProxy {
      * @return the creature created
      * @throws CommandExecException
      */
-    public synchronized Creature createCreature(double x, double y, double pitch, int color) throws CommandExecException {
-        String cIndex = CommandUtility.checkCreature(x, y, pitch);
+    public Creature createCreature(double x, double y, double pitch, int color) throws CommandExecException {
         String robotIndexID = "";
         String robotNameID = "";
-        if (cIndex.equals("")) {
-            StringTokenizer st = CommandUtility.sendNewCreature(x, y, pitch, color);
-            if (st.hasMoreTokens()) {
-                robotIndexID = st.nextToken();
-            }
-            if (st.hasMoreTokens()) {
-                robotNameID = st.nextToken();
+        Creature creature;
+        creationLock.lock();
+        try {
+            String cIndex = CommandUtility.checkCreature(connection, x, y, pitch);
+            if (cIndex.equals("")) {
+                StringTokenizer st = CommandUtility.sendNewCreature(connection, x, y, pitch, color);
+                if (st.hasMoreTokens()) {
+                    robotIndexID = st.nextToken();
+                }
+                if (st.hasMoreTokens()) {
+                    robotNameID = st.nextToken();
+                }
+            }else{
+                String[] split = cIndex.split(" ");
+
+                robotIndexID = split[0];
+                robotNameID =  split[1];
             }
-        }else{
-            String[] split = cIndex.split(" ");
 
-            robotIndexID = split[0];
-            robotNameID =  split[1];
+            creature = CommandUtility.initializeCreature(connection, robotIndexID, robotNameID);
+        } finally {
+            creationLock.unlock();
         }
-
-        Creature creature = CommandUtility.initializeCreature(robotIndexID, robotNameID);
         try {
             //This delay is a precaution, since the creature takes a few milliseconds to be set in the JME scene graph
             //Otherwise, the return of the updateStatus might be a void response.
@@ -166,9 +207,9 @@ public class WS3DProxy {
      */
     public synchronized Creature getCreature(String robotIndexID) throws CommandExecException {
 
-        if (CommandUtility.ifCreatureExists(robotIndexID)) {
+        if (CommandUtility.ifCreatureExists(connection, robotIndexID)) {
             //this.robotIndexID = robotIndex;
-            Creature creature = CommandUtility.initializeCreature(robotIndexID);
+            Creature creature = CommandUtility.initializeCreature(connection, robotIndexID);
             if (creature != null) {
                 creature = creature.updateState();
                 creature.genLeaflet();
@@ -192,38 +233,15 @@ public class WS3DProxy {
     public synchronized World getWorld() {
         double xDS = 0.0, yDS = 0.0; //delivery spot
         try {
-            StringTokenizer st;
-
-            st = CommandUtility.sendGetSimulationParameters();
-
-
-            if (!st.hasMoreTokens()) {
-                Logger.logErr( "Width missed!");
-            }
-            String command = st.nextToken();
-            //System.out.println("Command: "+command);
-            world.setEnvironmentWidth(Integer.parseInt(command));
-            if (!st.hasMoreTokens()) {
-                Logger.logErr( "Height missed!");
-            }
-            command = st.nextToken();
-            world.setEnvironmentHeight(Integer.parseInt(command));
+            ReportSchema.Record p = CommandUtility.sendGetSimulationParameters(connection, ReportFormats.recordDecoder(ReportFormats.SIMULATION_PARAMETERS));
+            world.setEnvironmentWidth(p.get(ReportFormats.SIMULATION_WIDTH));
+            world.setEnvironmentHeight(p.get(ReportFormats.SIMULATION_HEIGHT));
             /*
              * Set current Delivery Spot:
              */
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - missing delivery spot coord X!");
-            } else {
-                command = st.nextToken();
-                xDS = Double.parseDouble(command);
-            }
+            xDS = p.get(ReportFormats.SIMULATION_DELIVERY_X);
             Logger.logErr("xDeliverySpot= " + xDS);
-            if (!st.hasMoreTokens()) {
-                Logger.logErr( "Error - missing delivery spot coord Y!");
-            } else {
-                command = st.nextToken();
-                yDS = Double.parseDouble(command);
-            }
+            yDS = p.get(ReportFormats.SIMULATION_DELIVERY_Y);
             Logger.logErr("yDeliverySpot= " + yDS);
             world.setDeliverySpot(xDS, yDS);
         } catch (CommandExecException ex) {
@@ -43,6 +43,11 @@ public abstract class Attributes {
     protected Material3D material;
     
     protected Rectangle2D.Double shape;
+    /**
+     * Whether update() moves the center of mass and the shape in place
+     * instead of replacing them (see setUpdatedInPlace()).
+     */
+    private volatile boolean updatedInPlace = false;
 
     
     public Attributes(String name, int category, String colorName, double x1, double y1, double x2, double y2, double comX, double comY, double pitch) {
@@ -81,12 +86,29 @@ public abstract class Attributes {
         this.x2 = x2;
         this.y2 = y2;
 
-        this.centerOfMassLocation = new WorldPoint(comX, comY);
-
-        this.shape = new Rectangle2D.Double((int) this.x1, (int) this.y1, (int) this.x2
+        if (updatedInPlace) {
+            this.centerOfMassLocation.setX(comX);
+            this.centerOfMassLocation.setY(comY);
+            this.shape.setRect((int) this.x1, (int) this.y1, (int) this.x2
                     - (int) this.x1, (int) this.y2 - (int) this.y1);
-        
+        } else {
+            this.centerOfMassLocation = new WorldPoint(comX, comY);
+            this.shape = new Rectangle2D.Double((int) this.x1, (int) this.y1, (int) this.x2
+                    - (int) this.x1, (int) this.y2 - (int) this.y1);
+        }
+
+    }
 
+    /**
+     * Sets whether update() moves the center of mass (see getCOM()) and the
+     * shape in place, so that a frame allocates nothing; a caller that kept
+     * them then sees them move. By default they are replaced by new objects.
+     * Used for the objects reused by a {@link ws3dproxy.CreatureStateDecoder}.
+     *
+     * @param inPlace true to update the center of mass and the shape in place
+     */
+    public void setUpdatedInPlace(boolean inPlace) {
+        this.updatedInPlace = inPlace;
     }
     public void update(String colorName, double x1, double y1, double x2, double y2, double comX, double comY) {
         this.update(x1, y1, x2, y2, comX, comY);
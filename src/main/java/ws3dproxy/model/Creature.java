@@ -27,14 +27,24 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Observer;
-import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.logging.Level;
 import org.json.JSONException;
 import org.json.JSONObject;
+import ws3dproxy.AsyncCommandUtility;
 import ws3dproxy.CommandExecException;
+import ws3dproxy.CommandPipeline;
 import ws3dproxy.CommandUtility;
+import ws3dproxy.Connection;
+import ws3dproxy.CreatureStateDecoder;
+import ws3dproxy.SocketUtility;
 import ws3dproxy.WS3DProxy;
+import ws3dproxy.protocol.CommandBuilder;
+import ws3dproxy.protocol.ReportFormats;
+import ws3dproxy.protocol.ReportSchema;
 import ws3dproxy.util.Constants;
 import ws3dproxy.util.Logger;
 import ws3dproxy.viewer.MindWindow;
@@ -65,7 +75,24 @@ public class Creature {
 
     private JSONObject infoThingActedUpon = null;
 
-    private Creature(CreatureState cs) {
+    /**
+     * Connection through which the commands of this creature are sent.
+     */
+    private volatile Connection connection;
+    private volatile MotorMailbox motorMailbox = null;
+    /**
+     * Decoder of the state of this creature that reuses its objects, or null
+     * (see setStateReuse()).
+     */
+    private volatile CreatureStateDecoder stateDecoder = null;
+    /**
+     * Order of the calls of updateState() and of the last one applied.
+     */
+    private long stateTicket = 0;
+    private long appliedTicket = 0;
+
+    private Creature(CreatureState cs, Connection connection) {
+        this.connection = connection;
 
         a = new Actuator();
         s = new MySensors();
@@ -105,15 +132,82 @@ public class Creature {
     }
 
     public static Creature getInstance(CreatureState cs) {
+        return getInstance(cs, SocketUtility.getDefaultConnection());
+    }
+
+    /**
+     * Returns the creature described by the given state. The commands of the
+     * creature are sent through the given connection (an already known
+     * creature is bound to it).
+     *
+     * @param cs creature state received from the server
+     * @param connection connection to the server
+     * @return the creature
+     */
+    public static synchronized Creature getInstance(CreatureState cs, Connection connection) {
         for(Creature c : instances) {
-            if (c.attributes.robotIndexID.equalsIgnoreCase(cs.getIndex()))
+            if (c.attributes.robotIndexID.equalsIgnoreCase(cs.getIndex())) {
+                c.connection = connection;
                 return(c);
+            }
         }
-        Creature c = new Creature(cs);
+        Creature c = new Creature(cs, connection);
         instances.add(c);
         return(c);
     }
 
+    /**
+     * @param connection connection to the server
+     * @return the known creatures whose commands are sent through the given
+     * connection
+     */
+    public static synchronized List<Creature> getInstances(Connection connection) {
+        List<Creature> list = new ArrayList<Creature>();
+        for (Creature c : instances) {
+            if (c.connection == connection) {
+                list.add(c);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @return the connection through which the commands of this creature are
+     * sent
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Makes {@link #move(double, double, double)},
+     * {@link #moveto(double, double, double)}, {@link #rotate(double)} and
+     * {@link #stop()} post their commands to a latest-wins mailbox instead of
+     * sending them: only the newest command is sent at each interval, and not
+     * at all if identical to the last one sent (see {@link MotorMailbox}).
+     * Those methods then return at once, and the server's errors are only
+     * logged.
+     *
+     * @param interval interval between flushes, or 0 to send every command
+     * again
+     * @param unit unit of the interval
+     */
+    public synchronized void setMotorMailbox(long interval, TimeUnit unit) {
+        MotorMailbox old = motorMailbox;
+        if (old != null) {
+            old.flush();
+        }
+        motorMailbox = (interval > 0) ? new MotorMailbox(this, interval, unit) : null;
+    }
+
+    /**
+     * @return the mailbox of the motor commands, or null if they are sent at
+     * once
+     */
+    public MotorMailbox getMotorMailbox() {
+        return motorMailbox;
+    }
+
     public synchronized SensoryBuffer getSensoryBuffer() {
         return state.getBuffer();
     }
@@ -254,18 +348,25 @@ public class Creature {
      *
      * @return Creature object
      */
-    public synchronized Creature updateState() {
+    public Creature updateState() {
 
+        long ticket;
+        String nameId;
+        synchronized (this) {
+            ticket = ++stateTicket;
+            nameId = this.attributes.name;
+        }
         try {
-            String nameId = this.attributes.name;
-            CreatureState cs = CommandUtility.getCreatureState(nameId);
-            update(cs.getIndex(), cs.getColorName(), cs.getSpeed(), cs.getWheel(), cs.getPitch(), cs.getFuel(), cs.getSerotonin(), cs.getEndorphine(), cs.getScore(), cs.getPosition(), cs.getX1(), cs.getY1(), cs.getX2(), cs.getY2(), cs.getLeaflets(), cs.hasCollided());
-            this.setThingsInVision(cs.getThingsInVision());
-            this.setThingsInCameraFrustrum(cs.getThingsInCameraFrustrum());
-            this.setInfoThingActedUpon(cs.getInfoThingActedUpon());
-
-            
-            
+            //not holding the lock: concurrent callers share the query in flight
+            CreatureStateDecoder decoder = stateDecoder;
+            CreatureState cs = (decoder == null) ? CommandUtility.getCreatureState(connection, nameId) : CommandUtility.getCreatureState(connection, nameId, decoder);
+            synchronized (this) {
+                //a state fetched earlier must not overwrite a newer one
+                if (ticket > appliedTicket) {
+                    appliedTicket = ticket;
+                    applyState(cs);
+                }
+            }
         } catch (CommandExecException ex) {
             Logger.logException(WS3DProxy.class.getName(), ex);
         }
@@ -273,6 +374,124 @@ public class Creature {
         return this;
     }
 
+    /**
+     * Sets whether updateState() decodes the state of this creature in place:
+     * the things seen, the leaflets and all the objects of the decoding are
+     * then reused from frame to frame (see {@link CreatureStateDecoder}), so
+     * that a perception loop produces next to no garbage. The things of the
+     * previous frame are updated, rather than replaced by new ones, and so
+     * are the center of mass and the shape of this creature (see
+     * {@link Attributes#setUpdatedInPlace(boolean)}).
+     *
+     * @param reuse true to reuse the objects of the state
+     */
+    public void setStateReuse(boolean reuse) {
+        stateDecoder = reuse ? new CreatureStateDecoder() : null;
+        attributes.setUpdatedInPlace(reuse);
+    }
+
+    /**
+     * @return true if the state of this creature is decoded in place (see
+     * setStateReuse())
+     */
+    public boolean isStateReuse() {
+        return stateDecoder != null;
+    }
+
+    /**
+     * Binds this creature again to its counterpart in the server, e.g. after
+     * its connection was re-established: the creature is looked up by its
+     * index and, if not found, at its last known position (it may have been
+     * recreated with another index and name). Its state is then updated.
+     *
+     * @return true if the creature was found in the server
+     * @throws CommandExecException An exception is thrown in case of missing or
+     * invalid parameter
+     */
+    public synchronized boolean rebind() throws CommandExecException {
+        if (!CommandUtility.ifCreatureExists(connection, this.attributes.robotIndexID)) {
+            String cIndex = CommandUtility.checkCreature(connection, this.s.comX, this.s.comY, Math.toDegrees(this.s.pitch));
+            if (cIndex.equals("")) {
+                return false;
+            }
+            String[] split = cIndex.split(" ");
+            this.attributes.robotIndexID = split[0];
+            this.attributes.name = split[1];
+        }
+        MotorMailbox mailbox = motorMailbox;
+        if (mailbox != null) {
+            mailbox.reset();
+        }
+        updateState();
+        return true;
+    }
+
+    /**
+     * Same as {@link #updateState()}, without waiting for the server: the
+     * state is applied by the I/O thread of the connection when it arrives,
+     * unless the state requested by a later call of updateState() or
+     * updateStateAsync() has already been applied.
+     *
+     * @return future completed with this Creature once its state is updated
+     */
+    public CompletableFuture<Creature> updateStateAsync() {
+        final long ticket;
+        String nameId;
+        synchronized (this) {
+            //ordered by the request, as updateState(): not by the report
+            ticket = ++stateTicket;
+            nameId = this.attributes.name;
+        }
+        return AsyncCommandUtility.getCreatureStateAsync(connection, nameId).thenApply(new Function<CreatureState, Creature>() {
+            @Override
+            public Creature apply(CreatureState cs) {
+                synchronized (Creature.this) {
+                    //a state fetched earlier must not overwrite a newer one
+                    if (ticket > appliedTicket) {
+                        appliedTicket = ticket;
+                        applyState(cs);
+                    }
+                }
+                return Creature.this;
+            }
+        });
+    }
+
+    /**
+     * Sets the rotation of the creature (see {@link #move}) and updates its
+     * state in a single round trip to the server: both commands are pipelined.
+     *
+     * @param vr linear velocity of the right wheel
+     * @param vl linear velocity of the left wheel
+     * @param w the new pitch of the creature in rad
+     * @return Creature object
+     * @throws CommandExecException An exception is thrown in case of missing or
+     * invalid parameter
+     */
+    public synchronized Creature moveAndUpdateState(double vr, double vl, double w) throws CommandExecException {
+        MotorMailbox mailbox = motorMailbox;
+        if (mailbox != null) {
+            //superseded by this command, which is sent at once
+            mailbox.cancel();
+            mailbox.reset();
+        }
+        CommandPipeline p = new CommandPipeline(connection);
+        int move = p.setAngle(this.attributes.robotIndexID, vr, vl, w);
+        int state = p.getCreatureState(this.attributes.name);
+        p.execute();
+        p.getReport(move);
+        appliedTicket = ++stateTicket;
+        applyState(p.getCreatureStateReport(state));
+        return this;
+    }
+
+    private void applyState(CreatureState cs) {
+        update(cs.getIndex(), cs.getColorName(), cs.getSpeed(), cs.getWheel(), cs.getPitch(), cs.getFuel(), cs.getSerotonin(), cs.getEndorphine(), cs.getScore(), cs.getPosition(), cs.getX1(), cs.getY1(), cs.getX2(), cs.getY2(), cs.getLeaflets(), cs.hasCollided());
+        this.setThingsInVision(cs.getThingsInVision());
+        this.setThingsInCameraFrustrum(cs.getThingsInCameraFrustrum());
+        this.setInfoThingActedUpon(cs.getInfoThingActedUpon());
+    }
+
     /**
      * Send command to get creature's bag content and update it.
      *
@@ -280,76 +499,17 @@ public class Creature {
      */
     public synchronized Bag updateBag() {
 
-        String command = "";
-        int totalFood = 0;
-        int totalCrystals = 0;
-        int perishableFood = 0;
-        int nonPerishableFood = 0;
-        List<Integer> crystals = new ArrayList<Integer>();
         try {
-            StringTokenizer st = CommandUtility.sendGetCreatureBagContent(this.attributes.robotIndexID);
+            ReportSchema.Record b = CommandUtility.sendGetCreatureBagContent(connection, this.attributes.robotIndexID, ReportFormats.recordDecoder(ReportFormats.BAG));
 
             ///////////////////Bag data:
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - Total number of food is missing!");
-            } else {
-                command = st.nextToken();
-                totalFood = Integer.parseInt(command);
-            }
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - Total number of crystals is missing!");
-            } else {
-                command = st.nextToken();
-                totalCrystals = Integer.parseInt(command);
-            }
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - Number of perishable food is missing!");
-            } else {
-                command = st.nextToken();
-                perishableFood = Integer.parseInt(command);
-            }
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - Number of non-perishable food is missing!");
-            } else {
-                command = st.nextToken();
-                nonPerishableFood = Integer.parseInt(command);
-            }
-//                                RED, GREEN, BLUE, YELLOW, MAGENTA, WHITE
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - Number of RED crystals is missing!");
-            } else {
-                command = st.nextToken();
-                crystals.add(Integer.parseInt(command));
-            }
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - Number of GREEN crystals is missing!");
-            } else {
-                command = st.nextToken();
-                crystals.add(Integer.parseInt(command));
-            }
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - Number of BLUE crystals is missing!");
-            } else {
-                command = st.nextToken();
-                crystals.add(Integer.parseInt(command));
-            }
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - Number of YELLOW crystals is missing!");
-            } else {
-                command = st.nextToken();
-                crystals.add(Integer.parseInt(command));
-            }
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - Number of MAGENTA crystals is missing!");
-            } else {
-                command = st.nextToken();
-                crystals.add(Integer.parseInt(command));
-            }
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - Number of WHITE crystals is missing!");
-            } else {
-                command = st.nextToken();
-                crystals.add(Integer.parseInt(command));
+            int totalFood = b.get(ReportFormats.BAG_FOOD);
+            int totalCrystals = b.get(ReportFormats.BAG_CRYSTALS);
+            int perishableFood = b.get(ReportFormats.BAG_PERISHABLE_FOOD);
+            int nonPerishableFood = b.get(ReportFormats.BAG_NON_PERISHABLE_FOOD);
+            List<Integer> crystals = new ArrayList<Integer>();
+            for (ReportSchema.IntField color : ReportFormats.BAG_CRYSTALS_BY_COLOR) {
+                crystals.add(b.get(color));
             }
 
             if (bag == null) {
@@ -559,7 +719,13 @@ public class Creature {
      * invalid parameter
      */
     public synchronized void start() throws CommandExecException {
-        CommandUtility.sendStartCreature(this.attributes.robotIndexID);
+        MotorMailbox mailbox = motorMailbox;
+        if (mailbox != null) {
+            mailbox.flush();
+            //the motion resumes: a repeated command must be sent again
+            mailbox.reset();
+        }
+        CommandUtility.sendStartCreature(connection, this.attributes.robotIndexID);
     }
 
     /**
@@ -569,7 +735,12 @@ public class Creature {
      * invalid parameter
      */
     public synchronized void stop() throws CommandExecException {
-        CommandUtility.sendStopCreature(this.attributes.robotIndexID);
+        MotorMailbox mailbox = motorMailbox;
+        if (mailbox != null) {
+            mailbox.post(CommandBuilder.command("stop").arg(this.attributes.robotIndexID).build());
+            return;
+        }
+        CommandUtility.sendStopCreature(connection, this.attributes.robotIndexID);
     }
 
     /**
@@ -585,12 +756,22 @@ public class Creature {
      * invalid parameter
      */
     public synchronized void move(double vr, double vl, double w) throws CommandExecException {
-        CommandUtility.sendSetAngle(this.attributes.robotIndexID, vr, vl, w);
+        MotorMailbox mailbox = motorMailbox;
+        if (mailbox != null) {
+            mailbox.post(CommandBuilder.command("setAngle").arg(this.attributes.robotIndexID).arg(vr).arg(vl).arg(w).build());
+            return;
+        }
+        CommandUtility.sendSetAngle(connection, this.attributes.robotIndexID, vr, vl, w);
     }
 
     public synchronized void moveto(double v, double x, double y) throws CommandExecException {
         //CommandUtility.sendSetAngle(this.attributes.robotIndexID, vr, vl, w);
-        CommandUtility.sendGoTo(this.attributes.robotIndexID, v, v, x, y);
+        MotorMailbox mailbox = motorMailbox;
+        if (mailbox != null) {
+            mailbox.post(CommandBuilder.command("setGoTo").arg(this.attributes.robotIndexID).arg(v).arg(v).arg(x).arg(y).build());
+            return;
+        }
+        CommandUtility.sendGoTo(connection, this.attributes.robotIndexID, v, v, x, y);
     }
 
     /**
@@ -603,7 +784,7 @@ public class Creature {
      * invalid parameter
      */
     public synchronized void putInSack(String thingName) throws CommandExecException {
-        CommandUtility.sendPutInSack(this.attributes.robotIndexID, thingName);
+        CommandUtility.sendPutInSack(connection, this.attributes.robotIndexID, thingName);
     }
 
     /**
@@ -615,7 +796,7 @@ public class Creature {
      * invalid parameter
      */
     public synchronized void eatIt(String thingName) throws CommandExecException {
-        CommandUtility.sendEatIt(this.attributes.robotIndexID, thingName);
+        CommandUtility.sendEatIt(connection, this.attributes.robotIndexID, thingName);
     }
 
     /**
@@ -627,7 +808,7 @@ public class Creature {
      * invalid parameter
      */
     public synchronized void hideIt(String thingName) throws CommandExecException {
-        CommandUtility.sendHideIt(this.attributes.robotIndexID, thingName);
+        CommandUtility.sendHideIt(connection, this.attributes.robotIndexID, thingName);
     }
 
     /**
@@ -641,7 +822,7 @@ public class Creature {
      * invalid parameter
      */
     public synchronized void unhideIt(String thingName) throws CommandExecException {
-        CommandUtility.sendUnhideIt(this.attributes.robotIndexID, thingName);
+        CommandUtility.sendUnhideIt(connection, this.attributes.robotIndexID, thingName);
     }
 
     /**
@@ -657,7 +838,7 @@ public class Creature {
      * invalid parameter
      */
     public synchronized void startCamera(String robotID) throws CommandExecException {
-        CommandUtility.sendStartCamera(robotID);
+        CommandUtility.sendStartCamera(connection, robotID);
     }
 
     /**
@@ -677,7 +858,7 @@ public class Creature {
      * invalid parameter
      */
     public synchronized void genLeaflet() throws CommandExecException {
-        CommandUtility.sendGenLeaflet();
+        CommandUtility.sendGenLeaflet(connection);
     }
 
     /**
@@ -689,7 +870,7 @@ public class Creature {
      * invalid parameter
      */
     public synchronized void deliverLeaflet(String leafletID) throws CommandExecException {
-        CommandUtility.sendDeliverLeaflet(this.attributes.robotIndexID, leafletID);
+        CommandUtility.sendDeliverLeaflet(connection, this.attributes.robotIndexID, leafletID);
     }
 
     /**
@@ -731,7 +912,12 @@ public class Creature {
     }
 
     public synchronized void rotate(double vel) throws CommandExecException {
-        CommandUtility.sendSetAngle(this.attributes.robotIndexID, vel, -vel, vel);
+        MotorMailbox mailbox = motorMailbox;
+        if (mailbox != null) {
+            mailbox.post(CommandBuilder.command("setAngle").arg(this.attributes.robotIndexID).arg(vel).arg(-vel).arg(vel).build());
+            return;
+        }
+        CommandUtility.sendSetAngle(connection, this.attributes.robotIndexID, vel, -vel, vel);
     }
     
     private static WorldPoint getIntersections(double a_x1, double a_y1, double a_x2, double a_y2, double b_x1, double b_y1, double b_x2, double b_y2) {
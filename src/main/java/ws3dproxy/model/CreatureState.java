@@ -63,8 +63,7 @@ public class CreatureState extends Observable{
     private double Y2;
     private int hasLeaflet = 0;
     private int hasCollided = 0;
-   // private static Map<Long, Leaflet> myLeaflets = Collections.synchronizedMap(new HashMap<Long, Leaflet>());
-    private static Map<Long, Leaflet> myLeaflets;
+    private final Map<Long, Leaflet> myLeaflets = Collections.synchronizedMap(new HashMap<Long, Leaflet>());
     
 
     private JSONObject infoThingActedUpon = null;
@@ -96,7 +95,7 @@ public class CreatureState extends Observable{
      * @param leafletList
      * @return 
      */
-    public static CreatureState getInstance(String indexID, String myName, String colorName, double speed, double wheel, double pitch, int motorSys, double fuel, double serotonin, double endorphine, double score, WorldPoint position, double x1, double y1, double x2, double y2, int hasCollided, int hasLeaflet, List<Leaflet> leafletList) {
+    public static synchronized CreatureState getInstance(String indexID, String myName, String colorName, double speed, double wheel, double pitch, int motorSys, double fuel, double serotonin, double endorphine, double score, WorldPoint position, double x1, double y1, double x2, double y2, int hasCollided, int hasLeaflet, List<Leaflet> leafletList) {
         for (CreatureState cs : instances) {
             if (cs.name.equals(myName)) {
                 cs.updateMe(indexID, myName, colorName, speed, wheel, pitch, motorSys, fuel, serotonin, endorphine, score, position, x1, y1, x2, y2, hasCollided, hasLeaflet, leafletList);
@@ -135,13 +134,13 @@ public class CreatureState extends Observable{
         this.hasCollided = hasCollided;
         name = myName;
         
-        if (hasLeaflet == 1) {
-            myLeaflets = Collections.synchronizedMap(new HashMap<Long, Leaflet>());
-            for (Leaflet l : leafletList) {
-               myLeaflets.put(l.getID(), l);
+        synchronized (myLeaflets) {
+            myLeaflets.clear();
+            if (hasLeaflet == 1) {
+                for (Leaflet l : leafletList) {
+                    myLeaflets.put(l.getID(), l);
+                }
             }
-        } else {
-            myLeaflets = Collections.synchronizedMap(new HashMap<Long, Leaflet>());
         }
     }
 
@@ -195,6 +194,44 @@ public class CreatureState extends Observable{
         }
     }
 
+    /**
+     * Same as setThingsInVision(), in place (see
+     * {@link SensoryBuffer#replaceVision(List)}).
+     *
+     * @param list the things now seen
+     */
+    public synchronized void replaceThingsInVision(List<Thing> list) {
+        sensoryBuffer.replaceVision(list);
+    }
+
+    /**
+     * Same as setThingsInVision() and setThingsInCameraFrustrum(), as a single
+     * change of the sensory buffer: the things of a report decoded meanwhile
+     * for another creature are not mixed with these.
+     *
+     * @param vision the things now seen
+     * @param frustrum the things now in the camera frustrum
+     */
+    public synchronized void setThings(List<Thing> vision, List<Thing> frustrum) {
+        synchronized (sensoryBuffer) {
+            setThingsInVision(vision);
+            setThingsInCameraFrustrum(frustrum);
+        }
+    }
+
+    /**
+     * Same as setThings(), in place (see {@link SensoryBuffer#replaceVision(List)}).
+     *
+     * @param vision the things now seen
+     * @param frustrum the things now in the camera frustrum
+     */
+    public synchronized void replaceThings(List<Thing> vision, List<Thing> frustrum) {
+        synchronized (sensoryBuffer) {
+            sensoryBuffer.replaceVision(vision);
+            sensoryBuffer.replaceFrustrum(frustrum);
+        }
+    }
+
     public synchronized List<Thing> getThingsInVision() {
         return sensoryBuffer.getThingsInVision();
     }
@@ -207,6 +244,16 @@ public class CreatureState extends Observable{
         }
     }
 
+    /**
+     * Same as setThingsInCameraFrustrum(), in place (see
+     * {@link SensoryBuffer#replaceFrustrum(List)}).
+     *
+     * @param list the things now in the camera frustrum
+     */
+    public synchronized void replaceThingsInCameraFrustrum(List<Thing> list) {
+        sensoryBuffer.replaceFrustrum(list);
+    }
+
     public synchronized List<Thing> getThingsInCameraFrustrum() {
         return sensoryBuffer.getThingsInFrustrum();
     }
@@ -279,9 +326,11 @@ public class CreatureState extends Observable{
 
     public List<Leaflet> getLeaflets() {
         List v = new ArrayList<Leaflet>();
-        for (Iterator iter = myLeaflets.values().iterator(); iter.hasNext();) {
-            Leaflet l = (Leaflet) iter.next();
-            v.add(l);
+        synchronized (myLeaflets) {
+            for (Iterator iter = myLeaflets.values().iterator(); iter.hasNext();) {
+                Leaflet l = (Leaflet) iter.next();
+                v.add(l);
+            }
         }
         return v;
 
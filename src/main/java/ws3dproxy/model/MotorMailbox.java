@@ -0,0 +1,188 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.model;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import ws3dproxy.Connection;
+import ws3dproxy.protocol.ResponseFramer;
+import ws3dproxy.util.Logger;
+import ws3dproxy.util.TimerWheel;
+
+/**
+ * Latest-wins mailbox of the motor commands of a creature ("setAngle",
+ * "setGoTo", "stop"). A command posted while another one is waiting replaces
+ * it; at each flush interval only the newest command is sent, and it is not
+ * sent at all if it is identical to the last one sent.
+ *
+ * The commands are sent asynchronously (see
+ * {@link Connection#exchangeAsync(String)}): an error report is logged, and
+ * the next command is sent even if identical to the failed one. A command
+ * flushed by the timer is rejected, rather than waited for, if the queue of
+ * the connection is full (see {@link ws3dproxy.QueueLimit}).
+ */
+public final class MotorMailbox {
+
+    private final Creature creature;
+    private final long intervalNanos;
+    private String pending = null;
+    private String lastSent = null;
+    private TimerWheel.Timeout flushTimer = null;
+    private long posted = 0;
+    private long sent = 0;
+    private long conflated = 0;
+    private long duplicates = 0;
+
+    /**
+     * @param creature creature whose connection carries the commands
+     * @param interval interval between flushes
+     * @param unit unit of the interval
+     */
+    MotorMailbox(Creature creature, long interval, TimeUnit unit) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Invalid flush interval: " + interval);
+        }
+        this.creature = creature;
+        this.intervalNanos = unit.toNanos(interval);
+    }
+
+    /**
+     * Posts a motor command; it replaces the command waiting, if any.
+     *
+     * @param command command in text format
+     */
+    public synchronized void post(String command) {
+        posted++;
+        if (pending != null) {
+            conflated++;
+        }
+        pending = command;
+        if (flushTimer == null) {
+            flushTimer = TimerWheel.getShared().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    //on the timer thread, which must not wait for room in the queue
+                    flush(false);
+                }
+            }, intervalNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Sends the command waiting, if any, without waiting for the interval.
+     */
+    public void flush() {
+        flush(true);
+    }
+
+    /**
+     * @param mayWait false to reject the command at once, rather than wait,
+     * if the queue of the connection is full (see
+     * {@link Connection#tryExchangeAsync(String)})
+     */
+    private void flush(boolean mayWait) {
+        synchronized (this) {
+            if (flushTimer != null) {
+                flushTimer.cancel();
+                flushTimer = null;
+            }
+            String command = pending;
+            pending = null;
+            if (command == null) {
+                return;
+            }
+            if (command.equals(lastSent)) {
+                duplicates++;
+                return;
+            }
+            lastSent = command;
+            sent++;
+            //still holding the lock, so that the commands are queued in order
+            final String c = command;
+            Connection conn = creature.getConnection();
+            CompletableFuture<String> future = mayWait ? conn.exchangeAsync(command) : conn.tryExchangeAsync(command);
+            future.whenComplete(new BiConsumer<String, Throwable>() {
+                @Override
+                public void accept(String report, Throwable ex) {
+                    if (ex == null && (report == null || !report.startsWith(ResponseFramer.ERROR_CODE))) {
+                        return;
+                    }
+                    forget(c);
+                    Logger.logErr("MotorMailbox: \"" + c + "\" failed: " + ((ex != null) ? ex : report));
+                }
+            });
+        }
+    }
+
+    /**
+     * Forgets the last command sent, so that the next one is sent even if
+     * identical (e.g. after a command sent directly, or a failure).
+     */
+    synchronized void reset() {
+        lastSent = null;
+    }
+
+    private synchronized void forget(String command) {
+        if (command.equals(lastSent)) {
+            lastSent = null;
+        }
+    }
+
+    /**
+     * Discards the command waiting, if any.
+     */
+    synchronized void cancel() {
+        if (flushTimer != null) {
+            flushTimer.cancel();
+            flushTimer = null;
+        }
+        pending = null;
+    }
+
+    /**
+     * @return number of commands posted
+     */
+    public synchronized long getPostedCount() {
+        return posted;
+    }
+
+    /**
+     * @return number of commands sent to the server
+     */
+    public synchronized long getSentCount() {
+        return sent;
+    }
+
+    /**
+     * @return number of commands replaced by a newer one before being sent
+     */
+    public synchronized long getConflatedCount() {
+        return conflated;
+    }
+
+    /**
+     * @return number of commands dropped as identical to the last one sent
+     */
+    public synchronized long getDuplicateCount() {
+        return duplicates;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "posted " + posted + ", sent " + sent + ", conflated " + conflated + ", duplicates " + duplicates;
+    }
+}
@@ -49,6 +49,14 @@ public class SelfAttributes extends Attributes {
     protected int hasCollided = 0; //false
     
     private HashMap<String, String> infoMap = new HashMap<String, String>();
+    /**
+     * Sources of the map, which is only filled in when asked for (see
+     * getMap()): the creature is updated at every frame.
+     */
+    private Actuator mapActuator;
+    private MySensors mapSensors;
+    private List<Leaflet> mapLeaflets;
+    private boolean mapStale = true;
 
     public SelfAttributes(String indexID, String name, String  colorName, Actuator actuator, MySensors s, int hasLeaflet, int hasCollided, List<Leaflet> myLeaflets) {
         super(name, Constants.categoryCREATURE, colorName, s.x1, s.y1, s.x2, s.y2, s.comX, s.comY, s.pitch);
@@ -62,7 +70,7 @@ public class SelfAttributes extends Attributes {
         this.endorphine = s.endorphine;
         this.hasLeaflet = hasLeaflet;
         this.hasCollided = hasCollided;
-        this.updateMap(indexID, name, colorName, actuator, s, hasLeaflet, hasCollided, myLeaflets);
+        this.staleMap(actuator, s, myLeaflets);
     }
 
     public void update(String index, Actuator actuator, MySensors s, int hasLeaflet, int hasCollided, List<Leaflet> myLeaflets) {
@@ -81,7 +89,14 @@ public class SelfAttributes extends Attributes {
         this.hasLeaflet = hasLeaflet;
         this.hasCollided = hasCollided;
         super.update(x1, y1, x2, y2, centerOfMass_X, centerOfMass_Y);
-        this.updateMap(index, name, colorName, actuator, s, hasLeaflet, hasCollided, myLeaflets);
+        this.staleMap(actuator, s, myLeaflets);
+    }
+
+    private synchronized void staleMap(Actuator act, MySensors s, List<Leaflet> myLeaflets) {
+        mapActuator = act;
+        mapSensors = s;
+        mapLeaflets = myLeaflets;
+        mapStale = true;
     }
     
     private void updateMap(String indexID, String name, String  colorName, Actuator act, MySensors s, int hasLeaflet, int hasCollided, List<Leaflet> myLeaflets){
@@ -181,7 +196,11 @@ public class SelfAttributes extends Attributes {
     }
 
     @Override
-    public Map getMap() {
+    public synchronized Map getMap() {
+        if (mapStale) {
+            this.updateMap(robotIndexID, name, colorName, mapActuator, mapSensors, hasLeaflet, hasCollided, mapLeaflets);
+            mapStale = false;
+        }
         return this.infoMap;
     }
     
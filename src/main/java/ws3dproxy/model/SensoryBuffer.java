@@ -21,6 +21,7 @@ package ws3dproxy.model;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Observable;
@@ -110,6 +111,58 @@ public final class SensoryBuffer extends Observable {
         this.thingsInFrustrumMap.clear();
     }
 
+    /**
+     * Same as resetVision() and then capturedInVision() of each thing, in
+     * place: the things still seen keep their entries, and the observers are
+     * notified once.
+     *
+     * @param things the things now seen
+     */
+    public synchronized void replaceVision(List<Thing> things) {
+        replace(thingsInVision, thingsInVisionMap, things);
+        if (!things.isEmpty()) {
+            changed();
+        }
+    }
+
+    /**
+     * Same as resetFrustrum() and then capturedInFrustrum() of each thing, in
+     * place.
+     *
+     * @param things the things now in the camera frustrum
+     */
+    public synchronized void replaceFrustrum(List<Thing> things) {
+        replace(thingsInFrustrum, thingsInFrustrumMap, things);
+    }
+
+    private static void replace(List<Thing> list, Map<String, Thing> map, List<Thing> things) {
+        list.clear();
+        for (int i = 0; i < things.size(); i++) {
+            Thing th = things.get(i);
+            list.add(th);
+            map.put(th.getName(), th);
+        }
+        if (map.size() != list.size()) {
+            //things no longer seen
+            synchronized (map) {
+                for (Iterator<Thing> it = map.values().iterator(); it.hasNext();) {
+                    if (!containsSame(list, it.next())) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean containsSame(List<Thing> list, Thing th) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == th) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void setTime(int time) {
         retentionTime = time;
     }
@@ -32,19 +32,22 @@ public class ThingAttributes extends Attributes {
 
     protected int isOccluded = 0; //0-false; 1-true;
     private HashMap<String, String> infoMap = new HashMap<String, String>();
+    /**
+     * The map is only filled in when asked for (see getMap()): the things seen
+     * are updated at every frame.
+     */
+    private boolean mapStale = true;
     
     public ThingAttributes(String name, int category, String c, double x1, double y1, double x2, double y2, double comX, double comY, double pitch, double shininess, double energy, int isOccluded) {
         super(name, category, c, x1, y1, x2, y2, comX, comY, pitch, shininess, energy);
         this.isOccluded = isOccluded;
-        this.updateMap(name, category, c, x1, y1, x2, y2, comX, comY, pitch, shininess, energy, isOccluded);
     }
 
     public void update(String colorName, double x1, double y1, double x2, double y2, double comX, double comY, double pitch, double energy, int isOccluded, double shininess) {
         super.update(colorName, x1, y1, x2, y2, comX, comY, pitch, energy);
         this.isOccluded = isOccluded;
         this.material.setShininess(shininess);
-        //String name, int category, String c, double x1, double y1, double x2, double y2, double comX, double comY, double pitch, double shininess, double energy, int isOccluded
-        this.updateMap(name, category, colorName, x1, y1, x2, y2, comX, comY, pitch, shininess, energy, isOccluded);
+        mapStale = true;
     }
     
     private void updateMap(String name, int category, String c, double x1, double y1, double x2, double y2, double comX, double comY) {
@@ -92,7 +95,12 @@ public class ThingAttributes extends Attributes {
     }
 
     @Override
-    public Map getMap() {
+    public synchronized Map getMap() {
+        if (mapStale) {
+            //String name, int category, String c, double x1, double y1, double x2, double y2, double comX, double comY, double pitch, double shininess, double energy, int isOccluded
+            this.updateMap(name, category, colorName, x1, y1, x2, y2, centerOfMassLocation.getX(), centerOfMassLocation.getY(), pitch, material.getShininess(), material.getEnergy(), isOccluded);
+            mapStale = false;
+        }
         return this.infoMap;
     }
    
@@ -21,11 +21,20 @@ package ws3dproxy.model;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Queue;
 import java.util.Random;
-import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Level;
 import ws3dproxy.CommandExecException;
 import ws3dproxy.CommandUtility;
+import ws3dproxy.Connection;
+import ws3dproxy.SingleFlight;
+import ws3dproxy.SocketUtility;
+import ws3dproxy.protocol.ReportBuffer;
+import ws3dproxy.protocol.ReportDecoder;
+import ws3dproxy.protocol.ReportFormatException;
+import ws3dproxy.protocol.ReportFormats;
+import ws3dproxy.protocol.ReportSchema;
 import ws3dproxy.resourcesgenerator.ResourcesGenerator;
 import ws3dproxy.util.Constants;
 import ws3dproxy.util.Logger;
@@ -41,27 +50,111 @@ public class World {
     private static int environmentHeight;
     private static World instance = null;
     private static WorldPoint deliverySpot;
+    private static final SingleFlight<Connection, List<Thing>> WORLD_ENTITIES_FLIGHTS = new SingleFlight<Connection, List<Thing>>();
+    /**
+     * Buffers into which forEachEntity() copies the "getall" reports, reused
+     * from call to call.
+     */
+    private static final Queue<ReportBuffer> ENTITY_REPORTS = new ConcurrentLinkedQueue<ReportBuffer>();
+
+    /**
+     * Visits the entities of the world one at a time, as they are decoded
+     * (see {@link World#forEachEntity(Connection, EntityVisitor)}).
+     */
+    public interface EntityVisitor {
+
+        /**
+         * Called once the connection is released: it may send commands.
+         *
+         * @param entity the fields of the entity (see
+         * {@link ReportFormats#THING}); the record is reused for the next
+         * entity, and its text fields must be read before returning
+         * @return true to visit the next entity, false to stop
+         */
+        boolean visit(ReportSchema.Record entity);
+    }
 
     //All Things except myself
     private HashMap<String, Thing> allThings = new HashMap();
 
-    private World() {
+    /**
+     * Connection through which the World commands are sent. If not set, the
+     * default connection is used.
+     */
+    private volatile Connection connection;
+
+    private World(Connection connection) {
         //System.out.println("Creating new World");
+        this.connection = connection;
         try {
-            getDimensionAndDeliverySpot();
+            getDimensionAndDeliverySpot(connection());
         } catch (Exception e) {
 
         }
     }
 
-    public static World getInstance() {
+    public static synchronized World getInstance() {
         if (instance == null) {
-            instance = new World();
+            instance = new World(null);
         }
 
         return instance;
     }
 
+    /**
+     * Returns a World whose commands are sent through the given connection,
+     * e.g. the World of a {@link ws3dproxy.WS3DProxy}. The World of
+     * {@link #getInstance()} is returned if it is bound to this connection,
+     * or bound to it if it is not bound to any yet; otherwise a new World is
+     * returned. An existing binding is never changed, so the World (and the
+     * static methods) of the first proxy keep its connection when other
+     * proxies are created.
+     *
+     * @param connection connection to the server
+     * @return a World bound to the connection
+     */
+    public static synchronized World getInstance(Connection connection) {
+        if (instance == null) {
+            instance = new World(connection);
+            return instance;
+        }
+        if (instance.connection == null) {
+            instance.connection = connection;
+        }
+        if (instance.connection == connection) {
+            return instance;
+        }
+        return new World(connection);
+    }
+
+    /**
+     * Sets the connection through which the World commands are sent.
+     *
+     * @param connection connection to the server
+     */
+    public void setConnection(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * @return the connection through which the commands of this World are
+     * sent
+     */
+    private Connection connection() {
+        Connection c = connection;
+        return (c == null) ? getConnection() : c;
+    }
+
+    /**
+     * @return the connection through which the static World commands are
+     * sent: that of {@link #getInstance()}, or the default connection if it
+     * is not bound to any
+     */
+    public static Connection getConnection() {
+        Connection c = (instance == null) ? null : instance.connection;
+        return (c == null) ? SocketUtility.getDefaultConnection() : c;
+    }
+
     public synchronized int getEnvironmentWidth() {
         return environmentWidth;
     }
@@ -114,35 +207,22 @@ public class World {
      * invalid parameter
      */
     public static synchronized void getDimensionAndDeliverySpot() throws CommandExecException {
-        StringTokenizer st = CommandUtility.sendGetSimulationParameters();
-        double xds, yds;
-
-        if (st.hasMoreTokens()) {
-            World.environmentWidth = Integer.parseInt(st.nextToken());
-        } else {
-            Logger.logErr("Error: missing World width");
-            return;
-        }
-        if (st.hasMoreTokens()) {
-            World.environmentHeight = Integer.parseInt(st.nextToken());
-        } else {
-            Logger.logErr("Error: missing World height");
-            return;
-        }
-        if (st.hasMoreTokens()) {
-            xds = Double.parseDouble(st.nextToken());
-        } else {
-            Logger.logErr("Error: missing x of DeliverySpot");
-            return;
-        }
-        if (st.hasMoreTokens()) {
-            yds = Double.parseDouble(st.nextToken());
-            World.deliverySpot = new WorldPoint(xds, yds);
-        } else {
-            Logger.logErr("Error: missing y of DeliverySpot");
-            return;
-        }
+        getDimensionAndDeliverySpot(getConnection());
+    }
 
+    /**
+     * Same as {@link #getDimensionAndDeliverySpot()}, through the given
+     * connection.
+     *
+     * @param conn connection to the server
+     * @throws CommandExecException An exception is thrown in case of missing or
+     * invalid parameter
+     */
+    public static synchronized void getDimensionAndDeliverySpot(Connection conn) throws CommandExecException {
+        ReportSchema.Record p = CommandUtility.sendGetSimulationParameters(conn, ReportFormats.recordDecoder(ReportFormats.SIMULATION_PARAMETERS));
+        World.environmentWidth = p.get(ReportFormats.SIMULATION_WIDTH);
+        World.environmentHeight = p.get(ReportFormats.SIMULATION_HEIGHT);
+        World.deliverySpot = new WorldPoint(p.get(ReportFormats.SIMULATION_DELIVERY_X), p.get(ReportFormats.SIMULATION_DELIVERY_Y));
     }
 
     /**
@@ -157,13 +237,13 @@ public class World {
      * invalid parameter
      */
     public synchronized void createWaypoint(double x, double y) throws CommandExecException {
-        CommandUtility.sendNewWaypoint(x, y);
+        CommandUtility.sendNewWaypoint(connection(), x, y);
 
     }
     
     
     public static synchronized void createDeliverySpot(double x, double y) throws CommandExecException{
-        CommandUtility.sendNewDeliverySpot(4, x, y);
+        CommandUtility.sendNewDeliverySpot(getConnection(), 4, x, y);
         setDeliverySpot(x,y);
     }
 
@@ -177,7 +257,7 @@ public class World {
      * invalid parameter
      */
     public synchronized void setEnvironmentDimension(int width, int height) throws CommandExecException {
-        CommandUtility.sendEnvironmentDimension(width, height);
+        CommandUtility.sendEnvironmentDimension(connection(), width, height);
     }
 
     /**
@@ -190,7 +270,7 @@ public class World {
      * invalid parameter
      */
     public synchronized void deleteWaypoint(double x, double y) throws CommandExecException {
-        CommandUtility.sendDelWaypoint(x, y);
+        CommandUtility.sendDelWaypoint(connection(), x, y);
     }
 
     /**
@@ -201,7 +281,7 @@ public class World {
      * invalid parameter
      */
     public boolean requestGameStatus() throws CommandExecException {
-        return CommandUtility.requestGameStatus();
+        return CommandUtility.requestGameStatus(connection());
     }
 
     public static void setDeliverySpot(double x, double y) {
@@ -220,7 +300,7 @@ public class World {
      * invalid parameter
      */
     public static synchronized void getNumberOfEntities() throws CommandExecException {
-        CommandUtility.sendGetNumberOfEntities();
+        CommandUtility.sendGetNumberOfEntities(getConnection());
     }
 
     /**
@@ -233,130 +313,140 @@ public class World {
      * @throws CommandExecException An exception is thrown in case of missing or
      * invalid parameter
      */
-    public static synchronized List<Thing> getWorldEntities() throws CommandExecException {
-
-        List<Thing> all = new ArrayList<Thing>();
-
-        StringTokenizer st;
-        String ret = "";
-        String command = "";
-
-        double x1 = 0.0, x2 = 0.0, y1 = 0.0, y2 = 0.0, thingPitch = 0.0, hardness = 0.0, energy = 0.0, shininess = 0.0, x = 0.0, y = 0.0;
-        String thingName = "none";
-        int category = 0;
-        int isOccluded = 0;
-        int number = 0; //number of Thing
-        String thingColor = "No color yet";
-
-        st = CommandUtility.sendGetWorldEntities();
-
-        if (!st.hasMoreTokens()) {
-            Logger.logErr("Error - missing number of things!");
-        } else {
-            command = st.nextToken();
-            try {
-               number = Integer.parseInt(command);
-            } catch (NumberFormatException e) {
-                System.out.println("Error in World:getWorldEntities> "+command);
-            }   
-        }
-
-        for (int i = 0; i <= number - 1; i++) { //loop to create Things
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - missing name!");
-            } else {
-                command = st.nextToken();
-                if (command.equals("||")) {
-                    command = st.nextToken();
-                }
-                thingName = command;
-
-            }
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - missing category!");
-            } else {
-                command = st.nextToken();
-                category = Integer.parseInt(command);
+    public static List<Thing> getWorldEntities() throws CommandExecException {
+        return getWorldEntities(getConnection());
+    }
 
+    /**
+     * Same as {@link #getWorldEntities()}, through the given connection.
+     *
+     * @param conn connection to the server
+     * @return list of all entities (creatures, food, jewel and bricks) that
+     * exist in the world
+     * @throws CommandExecException An exception is thrown in case of missing or
+     * invalid parameter
+     */
+    public static List<Thing> getWorldEntities(final Connection conn) throws CommandExecException {
+        //a caller arriving while "getall" is in flight shares its result
+        List<Thing> all = WORLD_ENTITIES_FLIGHTS.execute(conn, new SingleFlight.Query<List<Thing>>() {
+            @Override
+            public List<Thing> execute() throws CommandExecException {
+                //decoded from the bytes of the report: no String per token
+                return conn.exchange("getall ", new ReportDecoder<List<Thing>>() {
+                    @Override
+                    public List<Thing> decode(ReportBuffer report) {
+                        return decodeWorldEntities(report);
+                    }
+                });
             }
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - missing if occluded!");
-            } else {
-                command = st.nextToken();
-                isOccluded = Integer.parseInt(command);
+        });
+        //each caller gets its own list (the things are shared)
+        return new ArrayList<Thing>(all);
+    }
 
-            }
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - missing X1!");
-            } else {
-                command = st.nextToken();
-                x1 = Double.parseDouble(command);
-            }
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - missing X2!");
-            } else {
-                command = st.nextToken();
-                x2 = Double.parseDouble(command);
-            }
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - missing Y1!");
-            } else {
-                command = st.nextToken();
-                y1 = Double.parseDouble(command);
-            }
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - missing Y2!");
-            } else {
-                command = st.nextToken();
-                y2 = Double.parseDouble(command);
-            }
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - missing pitch !");
-            } else {
-                command = st.nextToken();
-                thingPitch = Double.parseDouble(command);
-                thingPitch = Math.toRadians(thingPitch);//Math.toRadians(thingPitch) + Constants.M_PI_2;
+    /**
+     * @return the single-flight of "getall", e.g. to know how many queries
+     * were shared
+     */
+    public static SingleFlight<Connection, List<Thing>> getWorldEntitiesFlights() {
+        return WORLD_ENTITIES_FLIGHTS;
+    }
 
-            }
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - missing hardness!");
-            } else {
-                command = st.nextToken();
-                hardness = Double.parseDouble(command);
-            }
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - missing energy!");
-            } else {
-                command = st.nextToken();
-                energy = Double.parseDouble(command);
-            }
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - missing shininess!");
-            } else {
-                command = st.nextToken();
-                shininess = Double.parseDouble(command);
-            }
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - missing color of thing!");
-            } else {
-                command = st.nextToken();
-                thingColor = command;
-            }
+    /**
+     * Streams the creatures and other Things currently at the simulation
+     * environment to a visitor, entity by entity, straight from the bytes of
+     * the "getall" report: no object is created per entity unless the
+     * visitor asks for it (e.g. a text field, or
+     * {@link #toThing(ReportSchema.Record)}).
+     *
+     * The whole report is read and split into tokens first: it has to be
+     * read off the connection anyway, for the next report to be framed. It
+     * is then copied into a buffer reused from call to call, and the
+     * connection released before the first visit, so the visitor does not hold up the
+     * other commands of the connection. Stopping the visit early saves the
+     * decoding of the entities that follow (their numbers and text fields)
+     * and whatever the visitor does with them, e.g. creating their Things;
+     * it does not save the read of the report nor its tokenizing.
+     *
+     * @param visitor visitor of the entities
+     * @return number of entities visited
+     * @throws CommandExecException An exception is thrown in case of missing or
+     * invalid parameter
+     */
+    public static int forEachEntity(EntityVisitor visitor) throws CommandExecException {
+        return forEachEntity(getConnection(), visitor);
+    }
 
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - missing center of mass X!");
-            } else {
-                command = st.nextToken();
-                x = Double.parseDouble(command);
-            }
-            if (!st.hasMoreTokens()) {
-                Logger.logErr("Error - missing center of mass Y!");
-            } else {
-                command = st.nextToken();
-                y = Double.parseDouble(command);
+    /**
+     * Same as {@link #forEachEntity(EntityVisitor)}, through the given
+     * connection. Unlike {@link #getWorldEntities(Connection)}, each call
+     * sends its own "getall".
+     *
+     * @param conn connection to the server
+     * @param visitor visitor of the entities
+     * @return number of entities visited
+     * @throws CommandExecException An exception is thrown in case of missing or
+     * invalid parameter
+     */
+    public static int forEachEntity(Connection conn, EntityVisitor visitor) throws CommandExecException {
+        String command = "getall ";
+        ReportBuffer r = ENTITY_REPORTS.poll();
+        if (r == null) {
+            r = new ReportBuffer();
+        }
+        final ReportBuffer copy = r;
+        try {
+            conn.exchange(command, new ReportDecoder<Void>() {
+                @Override
+                public Void decode(ReportBuffer report) {
+                    report.copyTo(copy);
+                    return null;
+                }
+            });
+            ReportSchema.Mode mode = ReportFormats.getMode();
+            ReportSchema.Record count = ReportFormats.COUNT.newRecord();
+            ReportSchema.Record t = ReportFormats.THING.newRecord();
+            int i = ReportFormats.COUNT.decode(r, 0, count, mode);
+            int number = count.get(ReportFormats.COUNT_VALUE);
+            for (int k = 0; k < number; k++) {
+                i = ReportFormats.THING.decode(r, i, t, mode);
+                if (!visitor.visit(t)) {
+                    return k + 1;
+                }
             }
+            return number;
+        } catch (ReportFormatException ex) {
+            throw new CommandExecException("Bad report of \"" + command + "\": " + ex.getMessage());
+        } finally {
+            ENTITY_REPORTS.offer(r);
+        }
+    }
 
-            all.add(createThing(thingName, category, isOccluded, thingColor, x1, y1, x2, y2, x, y, thingPitch, hardness, energy, shininess));
+    /**
+     * Creates the Thing of an entity visited by
+     * {@link #forEachEntity(EntityVisitor)}.
+     *
+     * @param t the fields of the entity
+     * @return a new Thing
+     */
+    public static Thing toThing(ReportSchema.Record t) {
+        return createThing(t.get(ReportFormats.THING_NAME), t.get(ReportFormats.THING_CATEGORY), t.get(ReportFormats.THING_OCCLUDED), t.get(ReportFormats.THING_COLOR),
+                t.get(ReportFormats.THING_X1), t.get(ReportFormats.THING_Y1), t.get(ReportFormats.THING_X2), t.get(ReportFormats.THING_Y2),
+                t.get(ReportFormats.THING_X), t.get(ReportFormats.THING_Y), Math.toRadians(t.get(ReportFormats.THING_PITCH)),
+                t.get(ReportFormats.THING_HARDNESS), t.get(ReportFormats.THING_ENERGY), t.get(ReportFormats.THING_SHININESS));
+    }
+
+    private static List<Thing> decodeWorldEntities(ReportBuffer r) {
+        ReportSchema.Mode mode = ReportFormats.getMode();
+        ReportSchema.Record count = ReportFormats.COUNT.newRecord();
+        ReportSchema.Record t = ReportFormats.THING.newRecord();
+
+        int i = ReportFormats.COUNT.decode(r, 0, count, mode);
+        int number = count.get(ReportFormats.COUNT_VALUE); //number of Thing
+        List<Thing> all = new ArrayList<Thing>(number);
+        for (int k = 0; k < number; k++) { //loop to create Things
+            i = ReportFormats.THING.decode(r, i, t, mode);
+            all.add(toThing(t));
         }
         return all;
     }
@@ -377,7 +467,7 @@ public class World {
      * invalid parameter
      */
     public static synchronized void createBrick(int type, double X1, double Y1, double X2, double Y2) throws CommandExecException {
-        CommandUtility.sendNewBrick(type, X1, Y1, X2, Y2);
+        CommandUtility.sendNewBrick(getConnection(), type, X1, Y1, X2, Y2);
     }
 
     /**
@@ -389,7 +479,7 @@ public class World {
      * invalid parameter
      */
     public static synchronized void createCage(double X, double Y) throws CommandExecException {
-        CommandUtility.sendNewCage(X, Y);
+        CommandUtility.sendNewCage(getConnection(), X, Y);
     }
 
     /**
@@ -398,7 +488,7 @@ public class World {
      * @throws CommandExecException
      */
     public synchronized void reset() throws CommandExecException {
-        CommandUtility.sendResetWorld();
+        CommandUtility.sendResetWorld(connection());
     }
 
     /**
@@ -411,7 +501,7 @@ public class World {
      * invalid parameter
      */
     public static synchronized void createFood(int type, double X, double Y) throws CommandExecException {
-        CommandUtility.sendNewFood(type, X, Y);
+        CommandUtility.sendNewFood(getConnection(), type, X, Y);
     }
 
     public static synchronized void grow() {
@@ -442,7 +532,7 @@ public class World {
      * invalid parameter
      */
     public static synchronized void createFoodInBatch(int type, int number, String X_Y) throws CommandExecException {
-        CommandUtility.sendNewFoodInBatch(type, number, X_Y);
+        CommandUtility.sendNewFoodInBatch(getConnection(), type, number, X_Y);
     }
 
     /**
@@ -455,7 +545,7 @@ public class World {
      * invalid parameter
      */
     public static synchronized void createJewel(int type, double X, double Y) throws CommandExecException {
-        CommandUtility.sendNewJewel(type, X, Y);
+        CommandUtility.sendNewJewel(getConnection(), type, X, Y);
     }
 
     /**
@@ -469,7 +559,7 @@ public class World {
      * invalid parameter
      */
     public static synchronized void createJewelsInBatch(int type, int number, String X_Y) throws CommandExecException {
-        CommandUtility.sendNewJewelsInBatch(type, number, X_Y);
+        CommandUtility.sendNewJewelsInBatch(getConnection(), type, number, X_Y);
     }
 
     public static synchronized WorldPoint getRandomTarget() {
@@ -486,24 +576,37 @@ public class World {
         return wp;
     }
 
-    private static boolean checkAvailability(double cX, double cY) {
+    private static boolean checkAvailability(final double cX, final double cY) {
 
-        List<Thing> allThings;
-        boolean ret = true;
+        final boolean[] available = {true};
         try {
-            allThings = getWorldEntities();
-
-            for (Thing each : allThings) {
-                if (each.secAreaContain(cX, cY)) {
-                    return false;
+            //stops at the first entity too close, without creating Things
+            forEachEntity(new EntityVisitor() {
+                @Override
+                public boolean visit(ReportSchema.Record t) {
+                    if (secAreaContains(t, cX, cY)) {
+                        available[0] = false;
+                    }
+                    return available[0];
                 }
-
-            }
+            });
         } catch (CommandExecException ex) {
             java.util.logging.Logger.getLogger(World.class.getName()).log(Level.SEVERE, null, ex);
         }
 
-        return ret;
+        return available[0];
+    }
+
+    /**
+     * Same test as {@link Thing#secAreaContain(double, double)}, on the fields
+     * of an entity.
+     */
+    private static boolean secAreaContains(ReportSchema.Record t, double x, double y) {
+        double left = t.get(ReportFormats.THING_X1) - Constants.SEC;
+        double top = t.get(ReportFormats.THING_Y1) - Constants.SEC;
+        double width = Math.abs(t.get(ReportFormats.THING_X2) + Constants.SEC - left);
+        double height = Math.abs(t.get(ReportFormats.THING_Y2) + Constants.SEC - top);
+        return x >= left && y >= top && x < left + width && y < top + height;
     }
 
 }
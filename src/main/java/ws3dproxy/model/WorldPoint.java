@@ -35,8 +35,6 @@ public class WorldPoint {
     private double angle;
     private double eval;
 
-    private Random generator = new Random();
-
     public WorldPoint(double x, double y, double ang,
             double eval) {
         super();
@@ -48,6 +46,7 @@ public class WorldPoint {
 
     public WorldPoint() {
         super();
+        Random generator = new Random();
         double width = 750.0;
         double heigth = 550.0;
 
@@ -0,0 +1,261 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds a command in text format ("setAngle 0 2.0 2.0 1.5708") into a byte
+ * buffer that is reused from one command to the next. Numbers are written
+ * straight into the buffer: a double takes no {@link Double#toString(double)}
+ * and no intermediate String, and the only object per command is the String
+ * returned by {@link #build()}.
+ *
+ * Doubles are written in plain decimal notation, rounded to the precision of
+ * the builder, with trailing zeros removed but at least one fraction digit:
+ * 2 is written "2.0" and 0.25 "0.25" as before, 1e-4 "0.0001" instead of
+ * "1.0E-4". NaN, the infinities and the numbers too large for the precision
+ * are written by {@link Double#toString(double)}.
+ *
+ * A builder is not thread safe. {@link #command(String)} hands out the
+ * builder of the calling thread: the command must be built before another
+ * one is begun on the same thread.
+ */
+public final class CommandBuilder {
+
+    /**
+     * Fraction digits of the doubles by default.
+     */
+    public static final int DEFAULT_PRECISION = 6;
+
+    private static final int MAX_PRECISION = 9;
+    /**
+     * Below this magnitude the scaled value of a double fits in a long.
+     */
+    private static final double MAX_PLAIN = 1e12;
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L};
+
+    private static final ThreadLocal<CommandBuilder> PER_THREAD = new ThreadLocal<CommandBuilder>() {
+        @Override
+        protected CommandBuilder initialValue() {
+            return new CommandBuilder();
+        }
+    };
+
+    private final int precision;
+    private final long scale;
+    private byte[] buf = new byte[64];
+    private int length = 0;
+    /**
+     * True while the buffer holds only ASCII; otherwise it holds UTF-8.
+     */
+    private boolean ascii = true;
+
+    /**
+     * Creates a builder that writes doubles with
+     * {@link #DEFAULT_PRECISION} fraction digits.
+     */
+    public CommandBuilder() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision maximum number of fraction digits of the doubles (1 to
+     * 9)
+     */
+    public CommandBuilder(int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Invalid precision: " + precision);
+        }
+        this.precision = precision;
+        this.scale = POWERS_OF_TEN[precision];
+    }
+
+    /**
+     * Begins a command on the builder of the calling thread.
+     *
+     * @param verb first token of the command (e.g. "setAngle")
+     * @return the builder of the calling thread, holding the verb
+     */
+    public static CommandBuilder command(String verb) {
+        return PER_THREAD.get().begin(verb);
+    }
+
+    /**
+     * Discards the content and begins a new command.
+     *
+     * @param verb first token of the command
+     * @return this builder
+     */
+    public CommandBuilder begin(String verb) {
+        clear();
+        append(verb);
+        return this;
+    }
+
+    /**
+     * Discards the content; the next argument is preceded by a space, as
+     * always (e.g. to build a list of points to be passed as one argument).
+     *
+     * @return this builder
+     */
+    public CommandBuilder clear() {
+        length = 0;
+        ascii = true;
+        return this;
+    }
+
+    /**
+     * @param token argument to be appended, after a space
+     * @return this builder
+     */
+    public CommandBuilder arg(String token) {
+        space();
+        append(String.valueOf(token));
+        return this;
+    }
+
+    /**
+     * @param value argument to be appended, after a space
+     * @return this builder
+     */
+    public CommandBuilder arg(int value) {
+        return arg((long) value);
+    }
+
+    /**
+     * @param value argument to be appended, after a space
+     * @return this builder
+     */
+    public CommandBuilder arg(long value) {
+        space();
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                append(Long.toString(value));
+                return this;
+            }
+            put((byte) '-');
+            value = -value;
+        }
+        appendDigits(value, 1);
+        return this;
+    }
+
+    /**
+     * @param value argument to be appended, after a space, rounded to the
+     * precision of the builder
+     * @return this builder
+     */
+    public CommandBuilder arg(double value) {
+        space();
+        double magnitude = Math.abs(value);
+        if (!(magnitude < MAX_PLAIN)) {
+            //NaN, infinite or too large for a long once scaled
+            append(Double.toString(value));
+            return this;
+        }
+        long scaled = Math.round(magnitude * scale);
+        if (value < 0 && scaled != 0) {
+            put((byte) '-');
+        }
+        appendDigits(scaled / scale, 1);
+        long fraction = scaled % scale;
+        int digits = precision;
+        while (digits > 1 && fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        put((byte) '.');
+        appendDigits(fraction, digits);
+        return this;
+    }
+
+    /**
+     * @return number of bytes of the command so far
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return the command
+     */
+    public String build() {
+        return new String(buf, 0, length, ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return build();
+    }
+
+    private void space() {
+        put((byte) ' ');
+    }
+
+    private void append(String s) {
+        int n = s.length();
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                appendUtf8(s.substring(i));
+                return;
+            }
+            buf[length++] = (byte) c;
+        }
+    }
+
+    private void appendUtf8(String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        ensure(b.length);
+        System.arraycopy(b, 0, buf, length, b.length);
+        length += b.length;
+        ascii = false;
+    }
+
+    /**
+     * Writes a non-negative number with at least the given number of digits
+     * (zeros to the left).
+     */
+    private void appendDigits(long value, int minDigits) {
+        int digits = 1;
+        for (long v = value / 10; v != 0; v /= 10) {
+            digits++;
+        }
+        digits = Math.max(digits, minDigits);
+        ensure(digits);
+        int p = length + digits;
+        length = p;
+        for (int i = 0; i < digits; i++) {
+            buf[--p] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private void put(byte b) {
+        ensure(1);
+        buf[length++] = b;
+    }
+
+    private void ensure(int more) {
+        if (length + more > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, length + more));
+        }
+    }
+}
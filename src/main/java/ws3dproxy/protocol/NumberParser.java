@@ -0,0 +1,301 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.protocol;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses the numbers of the reports straight from their bytes, without a
+ * {@link String} per number. The results are exactly those of
+ * {@link Long#parseLong(String)} and {@link Double#parseDouble(String)}.
+ *
+ * A double of up to 19 significant digits ("401.9960653492687", "1.0E-4",
+ * the way the server writes them) is converted with the Eisel-Lemire
+ * algorithm: the digits, as a 64-bit integer, are multiplied by a 128-bit
+ * approximation of the power of ten, which almost always determines the
+ * correctly rounded double. The rare inputs it can not decide (and any other
+ * token: more digits, "NaN", out of range...) are handed to the JDK.
+ */
+public final class NumberParser {
+
+    /**
+     * Exact powers of ten as doubles (10^22 is the largest one).
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * Largest integer below which every integer is exactly a double (2^53).
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private static final int SMALLEST_POWER = -342;
+    private static final int LARGEST_POWER = 308;
+    /**
+     * 128-bit significands of the powers of five from 5^-342 to 5^308 (high
+     * and low 64 bits, in turn), normalized so that the top bit is set:
+     * truncated for the positive powers, rounded up for the negative ones.
+     */
+    private static final long[] POWERS_OF_FIVE = powersOfFive();
+
+    private NumberParser() {
+    }
+
+    /**
+     * @param b the bytes
+     * @param from first byte of the number
+     * @param to end (excluded) of the number
+     * @return the number parsed as a long
+     * @throws NumberFormatException if the bytes are not a long
+     */
+    public static long parseLong(byte[] b, int from, int to) {
+        int p = from;
+        boolean negative = false;
+        if (p < to && (b[p] == '-' || b[p] == '+')) {
+            negative = b[p] == '-';
+            p++;
+        }
+        //up to 18 digits can not overflow
+        if (p == to || to - p > 18) {
+            return Long.parseLong(toString(b, from, to));
+        }
+        long v = 0;
+        for (; p < to; p++) {
+            int d = b[p] - '0';
+            if (d < 0 || d > 9) {
+                throw new NumberFormatException("For input string: \"" + toString(b, from, to) + "\"");
+            }
+            v = v * 10 + d;
+        }
+        return negative ? -v : v;
+    }
+
+    /**
+     * @param b the bytes
+     * @param from first byte of the number
+     * @param to end (excluded) of the number
+     * @return the number parsed as an int
+     * @throws NumberFormatException if the bytes are not an int
+     */
+    public static int parseInt(byte[] b, int from, int to) {
+        long v = parseLong(b, from, to);
+        if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) {
+            throw new NumberFormatException("For input string: \"" + toString(b, from, to) + "\"");
+        }
+        return (int) v;
+    }
+
+    /**
+     * Parses a decimal number ("-12.345", "1.5E3").
+     *
+     * @param b the bytes
+     * @param from first byte of the number
+     * @param to end (excluded) of the number
+     * @return the number parsed as a double, the same as
+     * {@link Double#parseDouble(String)}
+     * @throws NumberFormatException if the bytes are not a number
+     */
+    public static double parseDouble(byte[] b, int from, int to) {
+        int p = from;
+        boolean negative = false;
+        if (p < to && (b[p] == '-' || b[p] == '+')) {
+            negative = b[p] == '-';
+            p++;
+        }
+        //the significant digits, as an unsigned integer
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; p < to; p++) {
+            byte c = b[p];
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (mantissa == 0 && c == '0') {
+                    //leading zeros do not count
+                } else {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits++;
+                }
+                if (seenPoint) {
+                    scale++;
+                }
+                if (digits > 19) {
+                    return fallback(b, from, to);
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (!seenDigit) {
+            return fallback(b, from, to);
+        }
+        int exponent = 0;
+        if (p < to) {
+            if (b[p] != 'e' && b[p] != 'E') {
+                return fallback(b, from, to);
+            }
+            p++;
+            boolean negativeExponent = false;
+            if (p < to && (b[p] == '-' || b[p] == '+')) {
+                negativeExponent = b[p] == '-';
+                p++;
+            }
+            if (p == to || to - p > 3) {
+                return fallback(b, from, to);
+            }
+            for (; p < to; p++) {
+                int d = b[p] - '0';
+                if (d < 0 || d > 9) {
+                    return fallback(b, from, to);
+                }
+                exponent = exponent * 10 + d;
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+        exponent -= scale;
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        //the digits and the power of ten are exact doubles: one rounding
+        if (mantissa >= 0 && mantissa <= MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+            double v = (exponent >= 0) ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+            return negative ? -v : v;
+        }
+        long bits = eiselLemire(mantissa, exponent);
+        if (bits < 0) {
+            return fallback(b, from, to);
+        }
+        return Double.longBitsToDouble(negative ? bits | Long.MIN_VALUE : bits);
+    }
+
+    /**
+     * @param w the significant digits, unsigned and not 0
+     * @param q the power of ten
+     * @return the bits of the correctly rounded positive double w * 10^q, or
+     * -1 if it can not be decided this way
+     */
+    private static long eiselLemire(long w, int q) {
+        if (q < SMALLEST_POWER || q > LARGEST_POWER) {
+            return -1;
+        }
+        int index = 2 * (q - SMALLEST_POWER);
+        long factorHigh = POWERS_OF_FIVE[index];
+        //binary exponent of 10^q, biased, for a significand in [2^63, 2^64)
+        long exponent = (((152170 + 65536) * q) >> 16) + 1024 + 63;
+        int lz = Long.numberOfLeadingZeros(w);
+        w <<= lz;
+        long upper = multiplyHigh(w, factorHigh);
+        long lower = w * factorHigh;
+        if ((upper & 0x1FF) == 0x1FF && Long.compareUnsigned(lower + w, lower) < 0) {
+            //the truncated product may be off: take the low half of the power
+            long factorLow = POWERS_OF_FIVE[index + 1];
+            long productLow = w * factorLow;
+            long productMiddle2 = multiplyHigh(w, factorLow);
+            long productMiddle = lower + productMiddle2;
+            long productHigh = upper;
+            if (Long.compareUnsigned(productMiddle, lower) < 0) {
+                productHigh++;
+            }
+            if (productMiddle + 1 == 0 && (productHigh & 0x1FF) == 0x1FF && Long.compareUnsigned(productLow + w, productLow) < 0) {
+                return -1;
+            }
+            upper = productHigh;
+            lower = productMiddle;
+        }
+        long upperBit = upper >>> 63;
+        long mantissa = upper >>> (upperBit + 9);
+        lz += (int) (1 ^ upperBit);
+        if (lower == 0 && (upper & 0x1FF) == 0 && (mantissa & 3) == 1) {
+            //exactly halfway between two doubles, maybe
+            return -1;
+        }
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if (mantissa >= (1L << 53)) {
+            mantissa = 1L << 52;
+            lz--;
+        }
+        mantissa &= ~(1L << 52);
+        long realExponent = exponent - lz;
+        if (realExponent < 1 || realExponent > 2046) {
+            //subnormal or infinite
+            return -1;
+        }
+        return mantissa | (realExponent << 52);
+    }
+
+    /**
+     * @return the high 64 bits of the unsigned 128-bit product
+     */
+    private static long multiplyHigh(long a, long b) {
+        long a0 = a & 0xFFFFFFFFL;
+        long a1 = a >>> 32;
+        long b0 = b & 0xFFFFFFFFL;
+        long b1 = b >>> 32;
+        long p01 = a0 * b1;
+        long p10 = a1 * b0;
+        long middle = ((a0 * b0) >>> 32) + (p01 & 0xFFFFFFFFL) + (p10 & 0xFFFFFFFFL);
+        return a1 * b1 + (p01 >>> 32) + (p10 >>> 32) + (middle >>> 32);
+    }
+
+    private static double fallback(byte[] b, int from, int to) {
+        return Double.parseDouble(toString(b, from, to));
+    }
+
+    private static String toString(byte[] b, int from, int to) {
+        return new String(b, from, to - from, StandardCharsets.ISO_8859_1);
+    }
+
+    private static long[] powersOfFive() {
+        BigInteger two128 = BigInteger.ONE.shiftLeft(128);
+        BigInteger two127 = BigInteger.ONE.shiftLeft(127);
+        BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        long[] table = new long[2 * (LARGEST_POWER - SMALLEST_POWER + 1)];
+        for (int q = SMALLEST_POWER; q <= LARGEST_POWER; q++) {
+            BigInteger c;
+            if (q < 0) {
+                BigInteger power5 = BigInteger.valueOf(5).pow(-q);
+                //2^(z-1) < 5^-q <= 2^z
+                int z = power5.subtract(BigInteger.ONE).bitLength();
+                int shift = (q >= -27) ? z + 127 : 2 * z + 128;
+                c = BigInteger.ONE.shiftLeft(shift).divide(power5).add(BigInteger.ONE);
+                while (c.compareTo(two128) >= 0) {
+                    c = c.shiftRight(1);
+                }
+            } else {
+                c = BigInteger.valueOf(5).pow(q);
+                while (c.compareTo(two127) < 0) {
+                    c = c.shiftLeft(1);
+                }
+                while (c.compareTo(two128) >= 0) {
+                    c = c.shiftRight(1);
+                }
+            }
+            int index = 2 * (q - SMALLEST_POWER);
+            table[index] = c.shiftRight(64).longValue();
+            table[index + 1] = c.and(mask).longValue();
+        }
+        return table;
+    }
+}
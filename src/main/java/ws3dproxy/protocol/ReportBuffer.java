@@ -0,0 +1,315 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * The bytes of a server report, as received, and the positions of its tokens
+ * (separated by white space; a token never spans two lines). The tokens are
+ * compared and parsed in place, so a report can be decoded without a
+ * {@link String} per token, nor even for the whole report.
+ *
+ * A buffer is reused from report to report (see {@link #clear()}): whatever
+ * is read from it must be read before the next report.
+ */
+public final class ReportBuffer {
+
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private byte[] bytes = new byte[4096];
+    private int length = 0;
+    /**
+     * Start (included) and end (excluded) of each token.
+     */
+    private int[] starts = new int[256];
+    private int[] ends = new int[256];
+    private int tokenCount = 0;
+    private int lineCount = 0;
+    private int lastLineStart = 0;
+
+    /**
+     * Empties the buffer for the next report.
+     */
+    public void clear() {
+        length = 0;
+        tokenCount = 0;
+        lineCount = 0;
+        lastLineStart = 0;
+    }
+
+    /**
+     * Appends a line. A line break separates tokens, so the line is joined to
+     * the previous one with a space unless there is white space already:
+     * {@link #toString()} then has the same tokens as the buffer.
+     *
+     * @param b bytes of the line, without the line terminator
+     * @param off start of the line
+     * @param len length of the line
+     */
+    public void append(byte[] b, int off, int len) {
+        if (len > 0) {
+            separate(isSpace(b[off]));
+        }
+        lineCount++;
+        lastLineStart = length;
+        ensureCapacity(length + len);
+        System.arraycopy(b, off, bytes, length, len);
+        tokenize(length, length + len);
+        length += len;
+    }
+
+    /**
+     * Appends a line received as text.
+     *
+     * @param line the line, without the line terminator
+     */
+    public void append(String line) {
+        int n = line.length();
+        if (n > 0) {
+            char first = line.charAt(0);
+            separate(first < 0x80 && isSpace((byte) first));
+        }
+        lineCount++;
+        lastLineStart = length;
+        ensureCapacity(length + n);
+        int start = length;
+        for (int i = 0; i < n; i++) {
+            char c = line.charAt(i);
+            if (c >= 0x80) {
+                //not ASCII: let the charset encode it
+                byte[] b = line.getBytes(CHARSET);
+                length = start;
+                ensureCapacity(length + b.length);
+                System.arraycopy(b, 0, bytes, length, b.length);
+                length += b.length;
+                tokenize(start, length);
+                return;
+            }
+            bytes[length++] = (byte) c;
+        }
+        tokenize(start, length);
+    }
+
+    /**
+     * Copies the report into another buffer, emptied first, so that it can
+     * still be read once this one is reused for the next report.
+     *
+     * @param target the buffer receiving the copy
+     */
+    public void copyTo(ReportBuffer target) {
+        target.clear();
+        target.ensureCapacity(length);
+        System.arraycopy(bytes, 0, target.bytes, 0, length);
+        if (target.starts.length < tokenCount) {
+            target.starts = new int[tokenCount];
+            target.ends = new int[tokenCount];
+        }
+        System.arraycopy(starts, 0, target.starts, 0, tokenCount);
+        System.arraycopy(ends, 0, target.ends, 0, tokenCount);
+        target.length = length;
+        target.tokenCount = tokenCount;
+        target.lineCount = lineCount;
+        target.lastLineStart = lastLineStart;
+    }
+
+    /**
+     * @return number of lines appended since the buffer was cleared
+     */
+    public int lineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return the last line appended, as text (allocates)
+     */
+    public String lastLine() {
+        return new String(bytes, lastLineStart, length - lastLineStart, CHARSET);
+    }
+
+    /**
+     * @return number of bytes of the report
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return read-only view of the bytes of the report (not a copy)
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(bytes, 0, length).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return number of tokens of the report
+     */
+    public int tokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * @param i index of the token
+     * @return length of the token, in bytes
+     */
+    public int tokenLength(int i) {
+        check(i);
+        return ends[i] - starts[i];
+    }
+
+    /**
+     * @param i index of the token
+     * @param k index of the byte in the token
+     * @return the byte of the token
+     */
+    public byte tokenByte(int i, int k) {
+        check(i);
+        if (k < 0 || k >= ends[i] - starts[i]) {
+            throw new IndexOutOfBoundsException("Byte " + k + " of token " + i);
+        }
+        return bytes[starts[i] + k];
+    }
+
+    /**
+     * @param i index of the token
+     * @param s ASCII text
+     * @return true if the token is the given text
+     */
+    public boolean tokenEquals(int i, String s) {
+        check(i);
+        int start = starts[i];
+        int n = ends[i] - start;
+        if (n != s.length()) {
+            return false;
+        }
+        for (int k = 0; k < n; k++) {
+            if (bytes[start + k] != s.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param i index of the token
+     * @return the token as text (allocates)
+     */
+    public String tokenString(int i) {
+        check(i);
+        return new String(bytes, starts[i], ends[i] - starts[i], CHARSET);
+    }
+
+    /**
+     * @param i index of the token
+     * @return the token parsed as an int
+     * @throws NumberFormatException if the token is not an int
+     */
+    public int parseInt(int i) {
+        check(i);
+        return NumberParser.parseInt(bytes, starts[i], ends[i]);
+    }
+
+    /**
+     * @param i index of the token
+     * @return the token parsed as a long
+     * @throws NumberFormatException if the token is not a long
+     */
+    public long parseLong(int i) {
+        check(i);
+        return NumberParser.parseLong(bytes, starts[i], ends[i]);
+    }
+
+    /**
+     * Parses a decimal number ("-12.345", "1.5E3") from the bytes, with the
+     * same result as {@link Double#parseDouble(String)} (see
+     * {@link NumberParser}).
+     *
+     * @param i index of the token
+     * @return the token parsed as a double
+     * @throws NumberFormatException if the token is not a number
+     */
+    public double parseDouble(int i) {
+        check(i);
+        return NumberParser.parseDouble(bytes, starts[i], ends[i]);
+    }
+
+    /**
+     * @return the report as text (allocates)
+     */
+    @Override
+    public String toString() {
+        return new String(bytes, 0, length, CHARSET);
+    }
+
+    /**
+     * Puts a space between the report so far and a line about to be
+     * appended, unless either has white space there.
+     */
+    private void separate(boolean lineStartsWithSpace) {
+        if (length > 0 && !lineStartsWithSpace && !isSpace(bytes[length - 1])) {
+            ensureCapacity(length + 1);
+            bytes[length++] = ' ';
+        }
+    }
+
+    private void tokenize(int from, int to) {
+        int p = from;
+        while (true) {
+            while (p < to && isSpace(bytes[p])) {
+                p++;
+            }
+            if (p == to) {
+                return;
+            }
+            int start = p;
+            while (p < to && !isSpace(bytes[p])) {
+                p++;
+            }
+            if (tokenCount == starts.length) {
+                int[] s = new int[tokenCount * 2];
+                System.arraycopy(starts, 0, s, 0, tokenCount);
+                starts = s;
+                int[] e = new int[tokenCount * 2];
+                System.arraycopy(ends, 0, e, 0, tokenCount);
+                ends = e;
+            }
+            starts[tokenCount] = start;
+            ends[tokenCount] = p;
+            tokenCount++;
+        }
+    }
+
+    /**
+     * Same delimiters as {@link java.util.StringTokenizer}.
+     */
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > bytes.length) {
+            byte[] bigger = new byte[Math.max(bytes.length * 2, capacity)];
+            System.arraycopy(bytes, 0, bigger, 0, length);
+            bytes = bigger;
+        }
+    }
+
+    private void check(int i) {
+        if (i < 0 || i >= tokenCount) {
+            throw new IndexOutOfBoundsException("Token " + i + " of " + tokenCount);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.protocol;
+
+/**
+ * Decodes a server report straight from its bytes (see
+ * {@link ws3dproxy.Connection#exchange(String, ReportDecoder)}).
+ *
+ * @param <T> type of the decoded report
+ */
+public interface ReportDecoder<T> {
+
+    /**
+     * Called while the connection is held: the buffer is reused for the next
+     * report, so nothing read from it may be kept except decoded values.
+     *
+     * @param report bytes and tokens of a report that is not an error report
+     * @return the decoded report
+     */
+    T decode(ReportBuffer report);
+}
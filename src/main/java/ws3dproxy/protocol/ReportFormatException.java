@@ -0,0 +1,51 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.protocol;
+
+/**
+ * This exception is thrown when a field of a server report is missing or can
+ * not be parsed (see {@link ReportSchema}).
+ */
+public class ReportFormatException extends IllegalArgumentException {
+
+    private final String field;
+    private final int token;
+
+    /**
+     * @param message what is wrong
+     * @param field schema and name of the field (e.g. "thing.energy")
+     * @param token index of the token where the field was expected
+     */
+    public ReportFormatException(String message, String field, int token) {
+        super(message);
+        this.field = field;
+        this.token = token;
+    }
+
+    /**
+     * @return schema and name of the field (e.g. "thing.energy")
+     */
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * @return index of the token where the field was expected
+     */
+    public int getToken() {
+        return token;
+    }
+}
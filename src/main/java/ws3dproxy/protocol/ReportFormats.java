@@ -0,0 +1,160 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.protocol;
+
+/**
+ * The formats of the server reports, as {@link ReportSchema}s, and the
+ * handles of their fields.
+ *
+ * "getcreaturestate": a CREATURE record; if it has leaflets, a COUNT of
+ * leaflets, each one a LEAFLET record, LEAFLET_ITEM records and a LEAFLET_END
+ * record, otherwise a COUNT that is always 0; then a COUNT of things, each one
+ * a THING record (with the camera frustrum of the creature).
+ *
+ * "getall": a COUNT of things, each one a THING record.
+ *
+ * "getsack": a BAG record. "getsimulpars": a SIMULATION_PARAMETERS
+ * record.
+ *
+ * The reports are decoded in the mode set by {@link #setMode(ReportSchema.Mode)}
+ * (STRICT by default). In either mode a report with a missing or malformed
+ * field is rejected: the command fails with a
+ * {@link ws3dproxy.CommandExecException}, where the former token-by-token
+ * parsers logged a missing field and went on with 0 in its place.
+ */
+public final class ReportFormats {
+
+    private static volatile ReportSchema.Mode mode = ReportSchema.Mode.STRICT;
+
+    /**
+     * A number of records (leaflets, items, things) that follow.
+     */
+    public static final ReportSchema COUNT = new ReportSchema("count");
+    public static final ReportSchema.IntField COUNT_VALUE = COUNT.intField("count");
+
+    public static final ReportSchema CREATURE = new ReportSchema("creature");
+    public static final ReportSchema.TextField CREATURE_NAME = CREATURE.textField("name");
+    public static final ReportSchema.TextField CREATURE_INDEX = CREATURE.textField("index");
+    public static final ReportSchema.DoubleField CREATURE_X = CREATURE.doubleField("center of mass X");
+    public static final ReportSchema.DoubleField CREATURE_Y = CREATURE.doubleField("center of mass Y");
+    public static final ReportSchema.DoubleField CREATURE_SIZE = CREATURE.doubleField("size");
+    /**
+     * In degrees.
+     */
+    public static final ReportSchema.DoubleField CREATURE_PITCH = CREATURE.doubleField("pitch");
+    public static final ReportSchema.IntField CREATURE_MOTOR_SYSTEM = CREATURE.intField("motor system");
+    public static final ReportSchema.DoubleField CREATURE_WHEEL = CREATURE.doubleField("wheel");
+    public static final ReportSchema.DoubleField CREATURE_SPEED = CREATURE.doubleField("speed");
+    public static final ReportSchema.DoubleField CREATURE_FUEL = CREATURE.doubleField("fuel");
+    public static final ReportSchema.DoubleField CREATURE_SEROTONIN = CREATURE.doubleField("serotonin");
+    public static final ReportSchema.DoubleField CREATURE_ENDORPHINE = CREATURE.doubleField("endorphine");
+    public static final ReportSchema.DoubleField CREATURE_SCORE = CREATURE.doubleField("score");
+    public static final ReportSchema.DoubleField CREATURE_X1 = CREATURE.doubleField("X1");
+    public static final ReportSchema.DoubleField CREATURE_Y1 = CREATURE.doubleField("Y1");
+    public static final ReportSchema.DoubleField CREATURE_X2 = CREATURE.doubleField("X2");
+    public static final ReportSchema.DoubleField CREATURE_Y2 = CREATURE.doubleField("Y2");
+    public static final ReportSchema.TextField CREATURE_COLOR = CREATURE.textField("color");
+    /**
+     * The thing upon which the last action was performed, or "NONE".
+     */
+    public static final ReportSchema.TextField CREATURE_ACTED_UPON = CREATURE.textField("thing acted upon");
+    public static final ReportSchema.IntField CREATURE_HAS_COLLIDED = CREATURE.intField("has collided");
+    public static final ReportSchema.IntField CREATURE_HAS_LEAFLET = CREATURE.intField("has leaflet");
+
+    public static final ReportSchema LEAFLET = new ReportSchema("leaflet");
+    public static final ReportSchema.LongField LEAFLET_ID = LEAFLET.longField("ID");
+    public static final ReportSchema.IntField LEAFLET_ITEMS = LEAFLET.intField("number of types");
+
+    public static final ReportSchema LEAFLET_ITEM = new ReportSchema("leaflet item");
+    public static final ReportSchema.TextField LEAFLET_ITEM_TYPE = LEAFLET_ITEM.textField("type");
+    public static final ReportSchema.IntField LEAFLET_ITEM_TOTAL = LEAFLET_ITEM.intField("total number");
+    public static final ReportSchema.IntField LEAFLET_ITEM_COLLECTED = LEAFLET_ITEM.intField("collected");
+
+    public static final ReportSchema LEAFLET_END = new ReportSchema("leaflet end");
+    public static final ReportSchema.IntField LEAFLET_PAYMENT = LEAFLET_END.intField("payment");
+    public static final ReportSchema.FlagField LEAFLET_SITUATION = LEAFLET_END.flagField("situation");
+
+    public static final ReportSchema THING = new ReportSchema("thing").separatedBy("||");
+    public static final ReportSchema.TextField THING_NAME = THING.textField("name");
+    public static final ReportSchema.IntField THING_CATEGORY = THING.intField("category");
+    public static final ReportSchema.IntField THING_OCCLUDED = THING.intField("if occluded");
+    public static final ReportSchema.DoubleField THING_X1 = THING.doubleField("X1");
+    public static final ReportSchema.DoubleField THING_X2 = THING.doubleField("X2");
+    public static final ReportSchema.DoubleField THING_Y1 = THING.doubleField("Y1");
+    public static final ReportSchema.DoubleField THING_Y2 = THING.doubleField("Y2");
+    /**
+     * In degrees.
+     */
+    public static final ReportSchema.DoubleField THING_PITCH = THING.doubleField("pitch");
+    public static final ReportSchema.DoubleField THING_HARDNESS = THING.doubleField("hardness");
+    public static final ReportSchema.DoubleField THING_ENERGY = THING.doubleField("energy");
+    public static final ReportSchema.DoubleField THING_SHININESS = THING.doubleField("shininess");
+    public static final ReportSchema.TextField THING_COLOR = THING.textField("color");
+    public static final ReportSchema.DoubleField THING_X = THING.doubleField("center of mass X");
+    public static final ReportSchema.DoubleField THING_Y = THING.doubleField("center of mass Y");
+
+    public static final ReportSchema BAG = new ReportSchema("bag");
+    public static final ReportSchema.IntField BAG_FOOD = BAG.intField("total number of food");
+    public static final ReportSchema.IntField BAG_CRYSTALS = BAG.intField("total number of crystals");
+    public static final ReportSchema.IntField BAG_PERISHABLE_FOOD = BAG.intField("perishable food");
+    public static final ReportSchema.IntField BAG_NON_PERISHABLE_FOOD = BAG.intField("non-perishable food");
+    /**
+     * Crystals by color: RED, GREEN, BLUE, YELLOW, MAGENTA, WHITE.
+     */
+    public static final ReportSchema.IntField[] BAG_CRYSTALS_BY_COLOR = {
+        BAG.intField("RED crystals"), BAG.intField("GREEN crystals"), BAG.intField("BLUE crystals"),
+        BAG.intField("YELLOW crystals"), BAG.intField("MAGENTA crystals"), BAG.intField("WHITE crystals")};
+
+    public static final ReportSchema SIMULATION_PARAMETERS = new ReportSchema("simulation parameters");
+    public static final ReportSchema.IntField SIMULATION_WIDTH = SIMULATION_PARAMETERS.intField("width");
+    public static final ReportSchema.IntField SIMULATION_HEIGHT = SIMULATION_PARAMETERS.intField("height");
+    public static final ReportSchema.DoubleField SIMULATION_DELIVERY_X = SIMULATION_PARAMETERS.doubleField("delivery spot X");
+    public static final ReportSchema.DoubleField SIMULATION_DELIVERY_Y = SIMULATION_PARAMETERS.doubleField("delivery spot Y");
+
+    private ReportFormats() {
+    }
+
+    /**
+     * @param m mode in which the reports are decoded: STRICT names the first
+     * bad field of a report, FAST skips the checks of each field
+     */
+    public static void setMode(ReportSchema.Mode m) {
+        mode = m;
+    }
+
+    /**
+     * @return mode in which the reports are decoded
+     */
+    public static ReportSchema.Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @param schema format of the whole report
+     * @return decoder of a report made of a single record (e.g. BAG,
+     * SIMULATION_PARAMETERS), in the current mode
+     */
+    public static ReportDecoder<ReportSchema.Record> recordDecoder(final ReportSchema schema) {
+        return new ReportDecoder<ReportSchema.Record>() {
+            @Override
+            public ReportSchema.Record decode(ReportBuffer report) {
+                ReportSchema.Record r = schema.newRecord();
+                schema.decode(report, 0, r, mode);
+                return r;
+            }
+        };
+    }
+}
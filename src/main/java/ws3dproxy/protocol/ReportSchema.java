@@ -0,0 +1,348 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.protocol;
+
+import java.util.Arrays;
+
+/**
+ * Declarative description of a record of a server report: its fields, in the
+ * order in which the server sends them, each with its type. A schema decodes
+ * a record from a {@link ReportBuffer} in a single pass over its tokens, into
+ * a reusable {@link Record}; the fields are read back through their handles:
+ * <pre>
+ * ReportSchema bag = new ReportSchema("bag");
+ * ReportSchema.IntField food = bag.intField("total food");
+ * ...
+ * ReportSchema.Record r = bag.newRecord();
+ * int next = bag.decode(report, 0, r, ReportSchema.Mode.STRICT);
+ * int n = r.get(food);
+ * </pre>
+ * Repeated records (e.g. the things of a "getall" report) are decoded one
+ * after the other, each one from the token following the previous one.
+ *
+ * Two modes:
+ * <ul>
+ * <li>STRICT: each field is checked as it is decoded, and the first one
+ * missing or malformed is reported (a {@link ReportFormatException} naming
+ * it);</li>
+ * <li>FAST: the only check is that the report holds enough tokens for the
+ * whole record; a malformed number is still reported as a
+ * {@link ReportFormatException}, found once the record has failed.</li>
+ * </ul>
+ *
+ * The fields are declared once (e.g. in static initializers, see
+ * {@link ReportFormats}); a schema is then only read, and can be shared by
+ * any number of threads.
+ */
+public final class ReportSchema {
+
+    public enum Mode {
+
+        STRICT, FAST
+    }
+
+    private static final int TEXT = 0;
+    private static final int INT = 1;
+    private static final int LONG = 2;
+    private static final int DOUBLE = 3;
+    private static final int FLAG = 4;
+
+    /**
+     * A field of a schema; its value is read from a record.
+     */
+    public abstract static class Field {
+
+        private final ReportSchema schema;
+        private final String name;
+        private final int slot;
+
+        private Field(ReportSchema schema, String name, int slot) {
+            this.schema = schema;
+            this.name = name;
+            this.slot = slot;
+        }
+
+        /**
+         * @return name of the field, for the error reports
+         */
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return schema.name + "." + name;
+        }
+    }
+
+    /**
+     * A token kept as text (read as a String or compared in place).
+     */
+    public static final class TextField extends Field {
+
+        private TextField(ReportSchema schema, String name, int slot) {
+            super(schema, name, slot);
+        }
+    }
+
+    public static final class IntField extends Field {
+
+        private IntField(ReportSchema schema, String name, int slot) {
+            super(schema, name, slot);
+        }
+    }
+
+    public static final class LongField extends Field {
+
+        private LongField(ReportSchema schema, String name, int slot) {
+            super(schema, name, slot);
+        }
+    }
+
+    public static final class DoubleField extends Field {
+
+        private DoubleField(ReportSchema schema, String name, int slot) {
+            super(schema, name, slot);
+        }
+    }
+
+    /**
+     * A token that is true if it is "true" (any other token is false).
+     */
+    public static final class FlagField extends Field {
+
+        private FlagField(ReportSchema schema, String name, int slot) {
+            super(schema, name, slot);
+        }
+    }
+
+    /**
+     * The values of the fields of a record, as last decoded. The text fields
+     * refer to the tokens of the report: read them before the buffer is
+     * reused for the next report.
+     */
+    public static final class Record {
+
+        private final ReportSchema schema;
+        private ReportBuffer report;
+        private int[] texts;
+        private int[] ints;
+        private long[] longs;
+        private double[] doubles;
+        private boolean[] flags;
+
+        private Record(ReportSchema schema) {
+            this.schema = schema;
+            this.texts = new int[schema.counts[TEXT]];
+            this.ints = new int[schema.counts[INT]];
+            this.longs = new long[schema.counts[LONG]];
+            this.doubles = new double[schema.counts[DOUBLE]];
+            this.flags = new boolean[schema.counts[FLAG]];
+        }
+
+        public String get(TextField f) {
+            return report.tokenString(texts[slotOf(f)]);
+        }
+
+        /**
+         * @param previous the text last read from this field, or null
+         * @return the previous text if the field is the same text (then it
+         * does not allocate), otherwise a new one
+         */
+        public String get(TextField f, String previous) {
+            int i = texts[slotOf(f)];
+            return (previous != null && report.tokenEquals(i, previous)) ? previous : report.tokenString(i);
+        }
+
+        /**
+         * @return true if the text field is the given text (does not
+         * allocate)
+         */
+        public boolean equals(TextField f, String s) {
+            return report.tokenEquals(texts[slotOf(f)], s);
+        }
+
+        public int get(IntField f) {
+            return ints[slotOf(f)];
+        }
+
+        public long get(LongField f) {
+            return longs[slotOf(f)];
+        }
+
+        public double get(DoubleField f) {
+            return doubles[slotOf(f)];
+        }
+
+        public boolean get(FlagField f) {
+            return flags[slotOf(f)];
+        }
+
+        private int slotOf(Field f) {
+            if (f.schema != schema) {
+                throw new IllegalArgumentException(f + " is not a field of " + schema);
+            }
+            return f.slot;
+        }
+    }
+
+    private final String name;
+    /**
+     * Token that may precede the record (e.g. "||" between two things), or
+     * null.
+     */
+    private String separator = null;
+    private Field[] fields = new Field[0];
+    private int[] kinds = new int[0];
+    private final int[] counts = new int[5];
+
+    /**
+     * @param name name of the schema, for the error reports
+     */
+    public ReportSchema(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Declares a token that may precede the record, and is then skipped.
+     *
+     * @param token the separator (e.g. "||")
+     * @return this schema
+     */
+    public ReportSchema separatedBy(String token) {
+        this.separator = token;
+        return this;
+    }
+
+    public TextField textField(String name) {
+        return add(new TextField(this, name, counts[TEXT]), TEXT);
+    }
+
+    public IntField intField(String name) {
+        return add(new IntField(this, name, counts[INT]), INT);
+    }
+
+    public LongField longField(String name) {
+        return add(new LongField(this, name, counts[LONG]), LONG);
+    }
+
+    public DoubleField doubleField(String name) {
+        return add(new DoubleField(this, name, counts[DOUBLE]), DOUBLE);
+    }
+
+    public FlagField flagField(String name) {
+        return add(new FlagField(this, name, counts[FLAG]), FLAG);
+    }
+
+    /**
+     * @return number of fields (tokens) of a record, separator excluded
+     */
+    public int size() {
+        return fields.length;
+    }
+
+    /**
+     * @return a record to decode into, reusable from report to report
+     */
+    public Record newRecord() {
+        return new Record(this);
+    }
+
+    /**
+     * Decodes a record.
+     *
+     * @param report the report
+     * @param from index of the first token of the record (or of its
+     * separator)
+     * @param out where the values are stored
+     * @param mode whether each field is checked
+     * @return index of the token following the record
+     * @throws ReportFormatException if a field is missing or malformed
+     */
+    public int decode(ReportBuffer report, int from, Record out, Mode mode) {
+        int i = from;
+        int n = report.tokenCount();
+        if (separator != null && i < n && report.tokenEquals(i, separator)) {
+            i++;
+        }
+        out.report = report;
+        if (mode == Mode.FAST) {
+            if (i + kinds.length > n) {
+                Field missing = fields[Math.max(0, n - i)];
+                throw new ReportFormatException("Missing " + missing + ": the report has " + n + " tokens", missing.toString(), Math.max(i, n));
+            }
+            int f = 0;
+            try {
+                for (; f < kinds.length; f++) {
+                    decodeField(report, i + f, f, out);
+                }
+            } catch (NumberFormatException ex) {
+                //only the error path pays for naming the field
+                throw badField(report, i + f, f);
+            }
+            return i + kinds.length;
+        }
+        for (int f = 0; f < kinds.length; f++, i++) {
+            if (i >= n) {
+                throw new ReportFormatException("Missing " + fields[f] + ": the report has " + n + " tokens", fields[f].toString(), i);
+            }
+            try {
+                decodeField(report, i, f, out);
+            } catch (NumberFormatException ex) {
+                throw badField(report, i, f);
+            }
+        }
+        return i;
+    }
+
+    private ReportFormatException badField(ReportBuffer report, int i, int f) {
+        return new ReportFormatException("Bad " + fields[f] + " at token " + i + ": \"" + report.tokenString(i) + "\"", fields[f].toString(), i);
+    }
+
+    private void decodeField(ReportBuffer report, int i, int f, Record out) {
+        int slot = fields[f].slot;
+        switch (kinds[f]) {
+            case TEXT:
+                out.texts[slot] = i;
+                break;
+            case INT:
+                out.ints[slot] = report.parseInt(i);
+                break;
+            case LONG:
+                out.longs[slot] = report.parseLong(i);
+                break;
+            case DOUBLE:
+                out.doubles[slot] = report.parseDouble(i);
+                break;
+            default:
+                out.flags[slot] = report.tokenEquals(i, "true");
+        }
+    }
+
+    private <F extends Field> F add(F field, int kind) {
+        fields = Arrays.copyOf(fields, fields.length + 1);
+        fields[fields.length - 1] = field;
+        kinds = Arrays.copyOf(kinds, kinds.length + 1);
+        kinds[kinds.length - 1] = kind;
+        counts[kind]++;
+        return field;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
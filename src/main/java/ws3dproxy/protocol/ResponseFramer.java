@@ -0,0 +1,243 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.protocol;
+
+import java.util.StringTokenizer;
+
+/**
+ * Finds where the server report of a command ends. The report is fed line by
+ * line and its end is decided by the protocol itself, never by the timing of
+ * the bytes on the socket:
+ * <ul>
+ * <li>an error report ("@@@ ...") ends with its line;</li>
+ * <li>"getcreaturestate" ends once the creature attributes, the leaflets and
+ * the announced number of things have been received;</li>
+ * <li>"getall" ends once the announced number of things has been
+ * received;</li>
+ * <li>any other report ends with its first line, which may be empty (e.g.
+ * "checkXY" when there is no creature at the given position).</li>
+ * </ul>
+ * Lines of a report are joined the same way the former reader did (no
+ * separator). The lines are kept as bytes in a {@link ReportBuffer}, and the
+ * structure is walked on the tokens of the buffer, so framing a report does
+ * not create a String per token. A framer is reused from report to report
+ * (see {@link #reset(String)}).
+ */
+public final class ResponseFramer {
+
+    /**
+     * First token of an error report.
+     */
+    public static final String ERROR_CODE = "@@@";
+    /**
+     * Optional token placed before the name of a thing.
+     */
+    private static final String THING_SEPARATOR = "||";
+    /**
+     * Tokens of a thing: name, category, occlusion, X1, X2, Y1, Y2, pitch,
+     * hardness, energy, shininess, color, center of mass X and Y.
+     */
+    private static final int THING_TOKENS = 14;
+    /**
+     * Tokens of a creature in "getcreaturestate", up to hasLeaflet (included).
+     */
+    private static final int CREATURE_TOKENS = 21;
+    /**
+     * Tokens of a leaflet item: type, total number, collected.
+     */
+    private static final int LEAFLET_ITEM_TOKENS = 3;
+
+    private static final int LINE = 0;
+    private static final int CREATURE_STATE = 1;
+    private static final int ALL_THINGS = 2;
+
+    private int kind;
+    private final ReportBuffer report = new ReportBuffer();
+    private boolean complete = false;
+
+    /**
+     * @param command the command (in text format) whose report is expected,
+     * or null for a report of a single line (e.g. the greeting of the server)
+     */
+    public ResponseFramer(String command) {
+        this.kind = kindOf(verbOf(command));
+    }
+
+    /**
+     * Prepares the framer for the report of another command.
+     *
+     * @param command the command (in text format) whose report is expected,
+     * or null for a report of a single line
+     */
+    public void reset(String command) {
+        kind = kindOf(verbOf(command));
+        report.clear();
+        complete = false;
+    }
+
+    /**
+     * Feeds the next line received from the server.
+     *
+     * @param line line without the line terminator
+     * @return true if the report is complete
+     * @throws IllegalStateException if the report was already complete
+     */
+    public boolean offer(String line) {
+        if (complete) {
+            throw new IllegalStateException("Report already complete");
+        }
+        if (kind == LINE || !line.isEmpty()) {
+            report.append(line);
+            complete = isFramed();
+        }
+        return complete;
+    }
+
+    /**
+     * Feeds the next line received from the server, as bytes.
+     *
+     * @param b bytes of the line, without the line terminator
+     * @param off start of the line
+     * @param len length of the line
+     * @return true if the report is complete
+     * @throws IllegalStateException if the report was already complete
+     */
+    public boolean offer(byte[] b, int off, int len) {
+        if (complete) {
+            throw new IllegalStateException("Report already complete");
+        }
+        if (kind == LINE || len > 0) {
+            report.append(b, off, len);
+            complete = isFramed();
+        }
+        return complete;
+    }
+
+    private boolean isFramed() {
+        if (kind == LINE) {
+            return true;
+        }
+        if (report.tokenCount() == 0) {
+            return false;
+        }
+        return report.tokenEquals(0, ERROR_CODE) || isStructureComplete();
+    }
+
+    /**
+     * @return true if the report is complete
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return the report received so far (the whole report once complete)
+     */
+    public String getResponse() {
+        return report.toString();
+    }
+
+    /**
+     * @return the bytes and tokens of the report received so far, valid until
+     * the framer is reset
+     */
+    public ReportBuffer getReport() {
+        return report;
+    }
+
+    /**
+     * @return true if the report is an error report
+     */
+    public boolean isError() {
+        return report.tokenCount() > 0 && report.tokenEquals(0, ERROR_CODE);
+    }
+
+    /**
+     * @param command command in text format
+     * @return the verb of the command (its first token), or null
+     */
+    public static String verbOf(String command) {
+        if (command == null) {
+            return null;
+        }
+        StringTokenizer st = new StringTokenizer(command);
+        return st.hasMoreTokens() ? st.nextToken() : null;
+    }
+
+    private static int kindOf(String verb) {
+        if ("getcreaturestate".equals(verb)) {
+            return CREATURE_STATE;
+        }
+        if ("getall".equals(verb)) {
+            return ALL_THINGS;
+        }
+        return LINE;
+    }
+
+    /**
+     * Walks the tokens received so far along the layout of the report.
+     * Counts that can not be read end the report, so a malformed report is
+     * handed to the parser instead of blocking the reader forever.
+     */
+    private boolean isStructureComplete() {
+        int i = 0;
+        if (kind == CREATURE_STATE) {
+            i = CREATURE_TOKENS;
+            if (report.tokenCount() < i) {
+                return false;
+            }
+            if (report.tokenEquals(i - 1, "1")) {
+                //number of leaflets; each: ID, number of items, items, payment, situation
+                if (report.tokenCount() <= i) {
+                    return false;
+                }
+                int leaflets = count(i++);
+                for (int l = 0; l < leaflets; l++) {
+                    if (report.tokenCount() <= i + 1) {
+                        return false;
+                    }
+                    int items = count(i + 1);
+                    i += 2 + items * LEAFLET_ITEM_TOKENS + 2;
+                }
+            } else {
+                //spurious "0" of the empty leaflet list
+                i++;
+            }
+        }
+        if (report.tokenCount() <= i) {
+            return false;
+        }
+        int things = count(i++);
+        for (int t = 0; t < things; t++) {
+            if (report.tokenCount() <= i) {
+                return false;
+            }
+            if (report.tokenEquals(i, THING_SEPARATOR)) {
+                i++;
+            }
+            i += THING_TOKENS;
+        }
+        return report.tokenCount() >= i;
+    }
+
+    private int count(int index) {
+        try {
+            return report.parseInt(index);
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+}
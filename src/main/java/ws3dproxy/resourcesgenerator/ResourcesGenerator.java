@@ -26,14 +26,19 @@ import ws3dproxy.WS3DProxy;
 import ws3dproxy.model.Thing;
 import ws3dproxy.model.World;
 import ws3dproxy.model.WorldPoint;
+import ws3dproxy.protocol.CommandBuilder;
 import ws3dproxy.util.Constants;
 import ws3dproxy.util.Logger;
+import ws3dproxy.util.Threads;
 
 /**
+ * Loop that adds food and jewels to the world at regular intervals. It runs
+ * on a thread of {@link Threads} (a virtual thread on Java 21), see
+ * {@link #start()}.
  *
  * @author eccastro
  */
-public class ResourcesGenerator extends Thread {
+public class ResourcesGenerator implements Runnable {
 
     private int timeInMinutes;
     private List<Thing> allThings = new ArrayList<Thing>();
@@ -42,7 +47,6 @@ public class ResourcesGenerator extends Thread {
     private WorldPoint dsLocation;
 
     public ResourcesGenerator(int timeframe, double envWidth, double envHeight, double xDS, double yDS) {
-        super("ResourcesGenerator");
         if (timeframe == 0) timeInMinutes = Constants.TIMEFRAME;
         else timeInMinutes = timeframe;
         width = envWidth;
@@ -50,6 +54,16 @@ public class ResourcesGenerator extends Thread {
         dsLocation = new WorldPoint(xDS,yDS); //delivery spot
     }
 
+    /**
+     * Starts the loop of this generator on a thread of {@link Threads}.
+     *
+     * @return the thread of the loop
+     */
+    public Thread start() {
+        return Threads.start(this, "ResourcesGenerator");
+    }
+
+    @Override
     public void run() {
         while (true) {
             try {
@@ -68,6 +82,9 @@ public class ResourcesGenerator extends Thread {
                 //System.out.println("..............ResourcesGenerator SLEEPING........");
                 Thread.sleep(timeInMinutes * 60000);
 
+            } catch (InterruptedException ex) {
+                //the thread of the generator is stopped
+                return;
             } catch (Exception ex) {
                 ex.printStackTrace();
                 System.exit(-1);
@@ -116,7 +133,7 @@ public class ResourcesGenerator extends Thread {
             Random rdX = new Random();
             Random rdY = new Random();
             double cX, cY;
-            String pointListStr = "" ;
+            CommandBuilder points = new CommandBuilder();
 
             switch (type) {
                 //perishable
@@ -135,9 +152,9 @@ public class ResourcesGenerator extends Thread {
 
                 } while (!checkAvailability(cX, cY));
 
-                pointListStr = pointListStr+" "+cX+" "+cY;
+                points.arg(cX).arg(cY);
             }
-            World.createFoodInBatch(type, number, pointListStr);
+            World.createFoodInBatch(type, number, points.build());
         } catch (CommandExecException ex) {
             Logger.logException(ResourcesGenerator.class.getName(), ex);
         }
@@ -151,7 +168,7 @@ public class ResourcesGenerator extends Thread {
             Random rdX = new Random();
             Random rdY = new Random();
             double cX, cY;
-            String pointListStr = "" ;
+            CommandBuilder points = new CommandBuilder();
 
             switch (type) {
                 case 0:
@@ -180,9 +197,9 @@ public class ResourcesGenerator extends Thread {
 
                 } while (!checkAvailability(cX, cY));
 
-                    pointListStr = pointListStr+" "+cX+" "+cY;
+                    points.arg(cX).arg(cY);
                 }
-                World.createJewelsInBatch(type, number, pointListStr);
+                World.createJewelsInBatch(type, number, points.build());
         } catch (CommandExecException ex) {
             Logger.logException(ResourcesGenerator.class.getName(), ex);
         }
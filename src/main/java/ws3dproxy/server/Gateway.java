@@ -0,0 +1,375 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import ws3dproxy.Connection;
+import ws3dproxy.ReconnectPolicy;
+import ws3dproxy.protocol.ResponseFramer;
+import ws3dproxy.transport.Transport;
+import ws3dproxy.util.Constants;
+import ws3dproxy.util.Logger;
+import ws3dproxy.util.Threads;
+
+/**
+ * Multiplexes many clients onto a single connection to WorldServer3D. Agents
+ * connect to the gateway exactly as they would to the server (e.g. with
+ * {@link ws3dproxy.SocketUtility#createSocket(String, int)} on the port of the
+ * gateway); the commands of all the clients are merged into the pipelined
+ * batches of the upstream connection (see
+ * {@link Connection#exchangeAsync(String)}) and each client gets its reports
+ * back in the order of its commands.
+ *
+ * An identical read-only query ("getall", "getsimulpars", "getclock") sent
+ * by a client while the same query is already in flight upstream is not sent
+ * again: it gets the report of the query in flight.
+ *
+ * Command line:
+ * <pre>
+ * java ws3dproxy.server.Gateway [-port 4012] [-server localhost] [-serverport 4011]
+ * </pre>
+ */
+public class Gateway {
+
+    /**
+     * Verbs of the queries answered from a single upstream call.
+     */
+    public static final Set<String> SHARED_VERBS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList("getall", "getsimulpars", "getclock")));
+
+    /**
+     * Marks the end of the commands of a client. Compared by identity.
+     */
+    private static final CompletableFuture<String> END = new CompletableFuture<String>();
+
+    private final Connection upstream;
+    private final String greeting;
+    /**
+     * Shared queries in flight, by command.
+     */
+    private final ConcurrentMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<String, CompletableFuture<String>>();
+    private final AtomicLong commands = new AtomicLong();
+    private final AtomicLong upstreamCommands = new AtomicLong();
+    private final Set<Transport> clients = Collections.newSetFromMap(new ConcurrentHashMap<Transport, Boolean>());
+    private volatile ServerSocket serverSocket;
+
+    /**
+     * @param upstream opened connection to the server
+     */
+    public Gateway(Connection upstream) {
+        this.upstream = upstream;
+        this.greeting = "WS3D gateway to " + upstream;
+    }
+
+    /**
+     * @return number of commands received from the clients so far
+     */
+    public long getCommandCount() {
+        return commands.get();
+    }
+
+    /**
+     * @return number of commands sent to the server so far
+     */
+    public long getUpstreamCommandCount() {
+        return upstreamCommands.get();
+    }
+
+    /**
+     * @return number of clients connected
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * Starts accepting clients; each one is served by its own threads.
+     *
+     * @param port port to listen to, or 0 for any free port
+     * @return the port actually listened to
+     * @throws IOException if the port is not available
+     */
+    public synchronized int start(int port) throws IOException {
+        final ServerSocket ss = new ServerSocket(port);
+        serverSocket = ss;
+        Threads.start(new Runnable() {
+            @Override
+            public void run() {
+                while (!ss.isClosed()) {
+                    try {
+                        Socket s = ss.accept();
+                        s.setTcpNoDelay(true);
+                        serve(new SocketLines(s));
+                    } catch (IOException ex) {
+                        if (!ss.isClosed()) {
+                            Logger.logException(Gateway.class.getName(), ex);
+                        }
+                    }
+                }
+            }
+        }, "WS3D-gateway acceptor");
+        return ss.getLocalPort();
+    }
+
+    /**
+     * Serves a client connected through the given transport (e.g. the peer of
+     * a QueueTransport): one thread reads its commands and forwards them
+     * upstream, another one writes the reports back in order.
+     *
+     * @param transport the gateway end of the link
+     */
+    public void serve(final Transport transport) {
+        final BlockingQueue<CompletableFuture<String>> pending = new LinkedBlockingQueue<CompletableFuture<String>>();
+        clients.add(transport);
+        startThread("WS3D-gateway reader " + transport, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    transport.writeLine(greeting);
+                    String line;
+                    while ((line = transport.readLine()) != null) {
+                        pending.add(submit(line));
+                    }
+                } catch (IOException ex) {
+                    Logger.logException(Gateway.class.getName(), ex);
+                } finally {
+                    pending.add(END);
+                }
+            }
+        });
+        startThread("WS3D-gateway writer " + transport, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writeReports(transport, pending);
+                } catch (IOException ex) {
+                    Logger.logException(Gateway.class.getName(), ex);
+                } catch (InterruptedException ex) {
+                    Logger.logException(Gateway.class.getName(), ex);
+                } finally {
+                    clients.remove(transport);
+                    try {
+                        transport.close();
+                    } catch (IOException ex) {
+                        Logger.logException(Gateway.class.getName(), ex);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops accepting clients and disconnects the connected ones.
+     */
+    public synchronized void stop() {
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException ex) {
+                Logger.logException(Gateway.class.getName(), ex);
+            }
+        }
+        for (Transport t : clients) {
+            try {
+                t.close();
+            } catch (IOException ex) {
+                Logger.logException(Gateway.class.getName(), ex);
+            }
+        }
+    }
+
+    /**
+     * Forwards a command upstream, or joins the identical shared query in
+     * flight.
+     *
+     * @param command command of a client
+     * @return future completed with the report
+     */
+    CompletableFuture<String> submit(String command) {
+        commands.incrementAndGet();
+        String verb = ResponseFramer.verbOf(command);
+        if (verb == null || !SHARED_VERBS.contains(verb)) {
+            return forward(command);
+        }
+        final String key = command.trim();
+        final CompletableFuture<String> shared = new CompletableFuture<String>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, shared);
+        if (existing != null) {
+            return existing;
+        }
+        forward(command).whenComplete(new BiConsumer<String, Throwable>() {
+            @Override
+            public void accept(String report, Throwable ex) {
+                //later identical queries must see a fresh report
+                inFlight.remove(key, shared);
+                if (ex != null) {
+                    shared.completeExceptionally(ex);
+                } else {
+                    shared.complete(report);
+                }
+            }
+        });
+        return shared;
+    }
+
+    private CompletableFuture<String> forward(String command) {
+        upstreamCommands.incrementAndGet();
+        return upstream.exchangeAsync(command);
+    }
+
+    /**
+     * Writes the reports in the order of the commands; the reports already
+     * available are written together.
+     */
+    private static void writeReports(Transport transport, BlockingQueue<CompletableFuture<String>> pending) throws IOException, InterruptedException {
+        List<String> reports = new ArrayList<String>();
+        while (true) {
+            CompletableFuture<String> f = pending.take();
+            while (f != END) {
+                reports.add(reportOf(f));
+                f = pending.peek();
+                if (f == null || !f.isDone()) {
+                    break;
+                }
+                pending.remove();
+            }
+            if (!reports.isEmpty()) {
+                transport.writeLines(reports);
+                reports.clear();
+            }
+            if (f == END) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the report, or an error report if the upstream connection is
+     * broken
+     */
+    private static String reportOf(CompletableFuture<String> f) throws InterruptedException {
+        try {
+            return f.get();
+        } catch (ExecutionException ex) {
+            return ResponseFramer.ERROR_CODE + " Gateway: " + ex.getCause();
+        }
+    }
+
+    private static void startThread(String name, Runnable r) {
+        Threads.start(r, name);
+    }
+
+    /**
+     * The gateway end of a client socket.
+     */
+    private static final class SocketLines implements Transport {
+
+        private final Socket socket;
+        private final BufferedReader in;
+        private final BufferedWriter out;
+
+        SocketLines(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()), 65535);
+            this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()), 65535);
+        }
+
+        @Override
+        public void open() {
+        }
+
+        @Override
+        public void writeLine(String line) throws IOException {
+            writeLines(Collections.singletonList(line));
+        }
+
+        @Override
+        public void writeLines(List<String> lines) throws IOException {
+            for (String s : lines) {
+                out.write(s);
+                out.newLine();
+            }
+            out.flush();
+        }
+
+        @Override
+        public String readLine() throws IOException {
+            return in.readLine();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !socket.isClosed();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(socket.getRemoteSocketAddress());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = Constants.PORT + 1;
+        String server = Constants.HOST;
+        int serverPort = Constants.PORT;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String option = args[i];
+            String value = args[i + 1];
+            if (option.equals("-port")) {
+                port = Integer.parseInt(value);
+            } else if (option.equals("-server")) {
+                server = value;
+            } else if (option.equals("-serverport")) {
+                serverPort = Integer.parseInt(value);
+            } else {
+                System.err.println("Unknown option: " + option);
+                System.exit(1);
+            }
+        }
+        Connection upstream = new Connection(server, serverPort);
+        upstream.setReconnectPolicy(new ReconnectPolicy(10, 100, 5000, TimeUnit.MILLISECONDS));
+        upstream.open();
+        Gateway gateway = new Gateway(upstream);
+        int actualPort = gateway.start(port);
+        System.out.println("WS3D gateway listening on port " + actualPort + ", server " + upstream);
+        Thread.currentThread().join();
+    }
+}
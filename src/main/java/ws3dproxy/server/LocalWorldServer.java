@@ -0,0 +1,284 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import ws3dproxy.protocol.ResponseFramer;
+import ws3dproxy.transport.Transport;
+import ws3dproxy.util.Constants;
+import ws3dproxy.util.Logger;
+import ws3dproxy.util.Threads;
+
+/**
+ * Lightweight stand-in for WorldServer3D: speaks the same text protocol over
+ * TCP (or over any {@link Transport}, e.g. the peer of a
+ * {@link ws3dproxy.transport.QueueTransport}) and keeps a
+ * {@link SimulatedWorld}. An artificial latency can be added to every report,
+ * or to the reports of a given verb, to profile the proxy under a slow server.
+ *
+ * Command line:
+ * <pre>
+ * java ws3dproxy.server.LocalWorldServer [-port 4011] [-width 800] [-height 600]
+ *      [-entities 0] [-seed 0] [-latency us] [-latency:verb us]
+ * </pre>
+ */
+public class LocalWorldServer {
+
+    /**
+     * First line sent to every client.
+     */
+    public static final String GREETING = "WS3D local server ready";
+
+    private final SimulatedWorld world;
+    private volatile long latencyNanos = 0;
+    private final Map<String, Long> verbLatencyNanos = new ConcurrentHashMap<String, Long>();
+    private final AtomicLong commands = new AtomicLong();
+    private volatile ServerSocket serverSocket;
+    private final Set<Socket> clients = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+
+    /**
+     * @param world the world to be served
+     */
+    public LocalWorldServer(SimulatedWorld world) {
+        this.world = world;
+    }
+
+    /**
+     * @return the served world
+     */
+    public SimulatedWorld getWorld() {
+        return world;
+    }
+
+    /**
+     * Adds a delay before every report.
+     *
+     * @param latency the delay
+     * @param unit unit of the delay
+     */
+    public void setLatency(long latency, TimeUnit unit) {
+        this.latencyNanos = unit.toNanos(latency);
+    }
+
+    /**
+     * Adds a delay before the reports of the given verb, instead of the one
+     * set by {@link #setLatency(long, TimeUnit)}.
+     *
+     * @param verb first token of the command (e.g. "getcreaturestate")
+     * @param latency the delay
+     * @param unit unit of the delay
+     */
+    public void setLatency(String verb, long latency, TimeUnit unit) {
+        verbLatencyNanos.put(verb, unit.toNanos(latency));
+    }
+
+    /**
+     * @return number of commands executed so far
+     */
+    public long getCommandCount() {
+        return commands.get();
+    }
+
+    /**
+     * Starts accepting clients; each one is served by its own thread.
+     *
+     * @param port port to listen to, or 0 for any free port
+     * @return the port actually listened to
+     * @throws IOException if the port is not available
+     */
+    public synchronized int start(int port) throws IOException {
+        final ServerSocket ss = new ServerSocket(port);
+        serverSocket = ss;
+        Threads.start(new Runnable() {
+            @Override
+            public void run() {
+                while (!ss.isClosed()) {
+                    try {
+                        final Socket s = ss.accept();
+                        s.setTcpNoDelay(true);
+                        startSession("WS3D-local " + s.getRemoteSocketAddress(), new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(s);
+                            }
+                        });
+                    } catch (IOException ex) {
+                        if (!ss.isClosed()) {
+                            Logger.logException(LocalWorldServer.class.getName(), ex);
+                        }
+                    }
+                }
+            }
+        }, "WS3D-local acceptor");
+        return ss.getLocalPort();
+    }
+
+    /**
+     * Serves a client connected through the given transport (e.g. the peer of
+     * a QueueTransport) in a new thread.
+     *
+     * @param transport the server end of the link
+     */
+    public void serve(final Transport transport) {
+        startSession("WS3D-local " + transport, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    transport.writeLine(GREETING);
+                    String line;
+                    while ((line = transport.readLine()) != null) {
+                        transport.writeLine(execute(line));
+                    }
+                } catch (IOException ex) {
+                    Logger.logException(LocalWorldServer.class.getName(), ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Closes the sockets of the connected clients, as if the server had
+     * crashed, while still accepting new clients (e.g. to exercise the
+     * reconnection of the proxy).
+     */
+    public void dropClients() {
+        for (Socket s : clients) {
+            try {
+                s.close();
+            } catch (IOException ex) {
+                Logger.logException(LocalWorldServer.class.getName(), ex);
+            }
+        }
+    }
+
+    /**
+     * Stops accepting clients.
+     */
+    public synchronized void stop() {
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException ex) {
+                Logger.logException(LocalWorldServer.class.getName(), ex);
+            }
+        }
+    }
+
+    private void serve(Socket s) {
+        clients.add(s);
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream()), 65535);
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream()), 65535);
+            out.write(GREETING);
+            out.newLine();
+            out.flush();
+            String line;
+            while ((line = in.readLine()) != null) {
+                out.write(execute(line));
+                out.newLine();
+                //pipelined commands: a single flush for the whole batch
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException ex) {
+            if (!s.isClosed()) {
+                Logger.logException(LocalWorldServer.class.getName(), ex);
+            }
+        } finally {
+            clients.remove(s);
+            try {
+                s.close();
+            } catch (IOException ex) {
+                Logger.logException(LocalWorldServer.class.getName(), ex);
+            }
+        }
+    }
+
+    private String execute(String command) {
+        commands.incrementAndGet();
+        String report = world.execute(command);
+        Long verbLatency = verbLatencyNanos.get(String.valueOf(ResponseFramer.verbOf(command)));
+        long delay = (verbLatency != null) ? verbLatency : latencyNanos;
+        if (delay > 0) {
+            long deadline = System.nanoTime() + delay;
+            long left;
+            while ((left = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(left);
+            }
+        }
+        return report;
+    }
+
+    private static void startSession(String name, Runnable session) {
+        Threads.start(session, name);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = Constants.PORT;
+        int width = 800;
+        int height = 600;
+        int entities = 0;
+        long seed = 0;
+        long latency = 0;
+        Map<String, Long> verbLatency = new ConcurrentHashMap<String, Long>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String option = args[i];
+            String value = args[i + 1];
+            if (option.equals("-port")) {
+                port = Integer.parseInt(value);
+            } else if (option.equals("-width")) {
+                width = Integer.parseInt(value);
+            } else if (option.equals("-height")) {
+                height = Integer.parseInt(value);
+            } else if (option.equals("-entities")) {
+                entities = Integer.parseInt(value);
+            } else if (option.equals("-seed")) {
+                seed = Long.parseLong(value);
+            } else if (option.equals("-latency")) {
+                latency = Long.parseLong(value);
+            } else if (option.startsWith("-latency:")) {
+                verbLatency.put(option.substring("-latency:".length()), Long.parseLong(value));
+            } else {
+                System.err.println("Unknown option: " + option);
+                System.exit(1);
+            }
+        }
+        SimulatedWorld world = new SimulatedWorld(width, height, seed);
+        world.populate(entities);
+        LocalWorldServer server = new LocalWorldServer(world);
+        server.setLatency(latency, TimeUnit.MICROSECONDS);
+        for (Map.Entry<String, Long> e : verbLatency.entrySet()) {
+            server.setLatency(e.getKey(), e.getValue(), TimeUnit.MICROSECONDS);
+        }
+        int actualPort = server.start(port);
+        System.out.println("WS3D local server listening on port " + actualPort + " (" + width + "x" + height + ", " + world.size() + " entities)");
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,651 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.server;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.StringTokenizer;
+import ws3dproxy.protocol.ResponseFramer;
+import ws3dproxy.util.Constants;
+
+/**
+ * A simple two-dimensional world that answers the commands of the WS3D
+ * protocol with reports in the same format as WorldServer3D: creatures move
+ * with a kinematic model (no physics, no rendering), things can be eaten or
+ * put in the bag, leaflets can be generated and delivered.
+ *
+ * Time advances with the wall clock: the position of moving creatures is
+ * brought up to date each time a command is executed.
+ */
+public class SimulatedWorld {
+
+    /**
+     * Distance covered per second by a creature whose wheel speed is 1.
+     */
+    private static final double SPEED_SCALE = 30.0;
+    /**
+     * How far a creature sees.
+     */
+    private static final double VISION_RANGE = 350.0;
+    /**
+     * Half of the camera aperture.
+     */
+    private static final double HALF_FIELD_OF_VIEW = Math.toRadians(60);
+    /**
+     * Fuel spent per unit of distance.
+     */
+    private static final double FUEL_PER_UNIT = 0.05;
+    private static final String[] JEWEL_COLORS = {
+        Constants.colorRED, Constants.colorGREEN, Constants.colorBLUE,
+        Constants.colorYELLOW, Constants.colorMAGENTA, Constants.colorWHITE};
+
+    private static final class Item {
+
+        final String name;
+        final int category;
+        final String color;
+        double x, y;
+        final double size;
+        final double energy;
+        final double hardness;
+        final double shininess;
+
+        Item(String name, int category, String color, double x, double y, double size, double energy, double hardness, double shininess) {
+            this.name = name;
+            this.category = category;
+            this.color = color;
+            this.x = x;
+            this.y = y;
+            this.size = size;
+            this.energy = energy;
+            this.hardness = hardness;
+            this.shininess = shininess;
+        }
+    }
+
+    private static final class SimLeaflet {
+
+        final long id;
+        /**
+         * Color of jewel: total number and number collected.
+         */
+        final Map<String, int[]> items = new LinkedHashMap<String, int[]>();
+        int payment = 0;
+        boolean delivered = false;
+
+        SimLeaflet(long id) {
+            this.id = id;
+        }
+
+        boolean isComplete() {
+            for (int[] totalAndCollected : items.values()) {
+                if (totalAndCollected[1] < totalAndCollected[0]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class SimCreature {
+
+        final String index;
+        final String name;
+        final String color;
+        double x, y, pitch;
+        double vr, vl, w;
+        double targetX = Double.NaN, targetY = Double.NaN;
+        boolean running = true;
+        boolean collided = false;
+        double fuel = Constants.CREATURE_MAX_FUEL;
+        double score = 0;
+        String lastAction = "NONE";
+        int perishableFood = 0, nonPerishableFood = 0;
+        final int[] crystals = new int[JEWEL_COLORS.length];
+        final List<SimLeaflet> leaflets = new ArrayList<SimLeaflet>();
+
+        SimCreature(String index, String name, String color, double x, double y, double pitch) {
+            this.index = index;
+            this.name = name;
+            this.color = color;
+            this.x = x;
+            this.y = y;
+            this.pitch = pitch;
+        }
+
+        double speed() {
+            return (vr + vl) / 2;
+        }
+    }
+
+    private int width;
+    private int height;
+    private double deliveryX;
+    private double deliveryY;
+    private final Random random;
+    private final Map<String, SimCreature> creatures = new LinkedHashMap<String, SimCreature>();
+    private final Map<String, Item> things = new LinkedHashMap<String, Item>();
+    private long nextId = 1;
+    private long lastUpdate = System.nanoTime();
+
+    /**
+     * @param width width of the world
+     * @param height height of the world
+     * @param seed seed of the generation of things and leaflets
+     */
+    public SimulatedWorld(int width, int height, long seed) {
+        this.width = width;
+        this.height = height;
+        this.random = new Random(seed);
+        this.deliveryX = width - 50;
+        this.deliveryY = height - 50;
+        things.put("DeliverySPOT", new Item("DeliverySPOT", Constants.categoryDeliverySPOT, Constants.colorORANGE, deliveryX, deliveryY, 40, 0, 0, 0));
+    }
+
+    /**
+     * Scatters jewels and food of random types at random positions.
+     *
+     * @param number number of things to create
+     */
+    public synchronized void populate(int number) {
+        for (int i = 0; i < number; i++) {
+            double x = 20 + random.nextDouble() * (width - 40);
+            double y = 20 + random.nextDouble() * (height - 40);
+            if (random.nextInt(3) == 0) {
+                addFood(random.nextInt(2), x, y);
+            } else {
+                addJewel(random.nextInt(JEWEL_COLORS.length), x, y);
+            }
+        }
+    }
+
+    /**
+     * @return number of creatures and things (the delivery spot included)
+     */
+    public synchronized int size() {
+        return creatures.size() + things.size();
+    }
+
+    /**
+     * Executes a command.
+     *
+     * @param command command in text format
+     * @return report in text format (a single line)
+     */
+    public synchronized String execute(String command) {
+        StringTokenizer st = new StringTokenizer(command);
+        if (!st.hasMoreTokens()) {
+            return error("Empty command");
+        }
+        String verb = st.nextToken();
+        List<String> args = new ArrayList<String>();
+        while (st.hasMoreTokens()) {
+            args.add(st.nextToken());
+        }
+        advance();
+        try {
+            return dispatch(verb, args);
+        } catch (NumberFormatException ex) {
+            return error("Invalid parameter in " + command);
+        } catch (IndexOutOfBoundsException ex) {
+            return error("Missing parameter in " + command);
+        }
+    }
+
+    private String dispatch(String verb, List<String> a) {
+        if (verb.equals("getcreaturestate")) {
+            SimCreature c = creatureByName(a.get(0));
+            return c == null ? error("Creature not found: " + a.get(0)) : creatureState(c);
+        } else if (verb.equals("getall")) {
+            return allThings();
+        } else if (verb.equals("setAngle")) {
+            SimCreature c = creature(a.get(0));
+            if (c == null) {
+                return error("Creature not found: " + a.get(0));
+            }
+            c.vr = d(a, 1);
+            c.vl = d(a, 2);
+            c.w = d(a, 3);
+            c.targetX = Double.NaN;
+            return c.speed() + " " + c.pitch;
+        } else if (verb.equals("setGoTo")) {
+            SimCreature c = creature(a.get(0));
+            if (c == null) {
+                return error("Creature not found: " + a.get(0));
+            }
+            c.vr = d(a, 1);
+            c.vl = d(a, 2);
+            c.w = 0;
+            c.targetX = d(a, 3);
+            c.targetY = d(a, 4);
+            return c.speed() + " " + c.pitch;
+        } else if (verb.equals("setTurn")) {
+            SimCreature c = creature(a.get(0));
+            if (c == null) {
+                return error("Creature not found: " + a.get(0));
+            }
+            c.vr = d(a, 2);
+            c.vl = d(a, 3);
+            c.w = (c.vr - c.vl) / Constants.CREATURE_SIZE * SPEED_SCALE;
+            c.targetX = Double.NaN;
+            return c.speed() + " " + c.pitch + " " + Math.toDegrees(c.pitch);
+        } else if (verb.equals("start") || verb.equals("stop")) {
+            SimCreature c = creature(a.get(0));
+            if (c == null) {
+                return error("Creature not found: " + a.get(0));
+            }
+            c.running = verb.equals("start");
+            if (!c.running) {
+                c.vr = c.vl = c.w = 0;
+                c.targetX = Double.NaN;
+            }
+            return c.running ? "Run creature run..." : "Creature has stopped!!!";
+        } else if (verb.equals("sackit") || verb.equals("eatit")) {
+            return actOn(verb, a.get(0), a.get(1));
+        } else if (verb.equals("hideit") || verb.equals("unhideit")) {
+            SimCreature c = creature(a.get(0));
+            if (c == null || !things.containsKey(a.get(1))) {
+                return error("Thing not found: " + a.get(1));
+            }
+            return a.get(1);
+        } else if (verb.equals("leaflet")) {
+            return generateLeaflets();
+        } else if (verb.equals("deliver")) {
+            return deliver(a.get(0), Long.parseLong(a.get(1)));
+        } else if (verb.equals("getsack")) {
+            SimCreature c = creature(a.get(0));
+            if (c == null) {
+                return error("Creature not found: " + a.get(0));
+            }
+            int totalCrystals = 0;
+            StringBuilder sb = new StringBuilder();
+            for (int n : c.crystals) {
+                totalCrystals += n;
+                sb.append(' ').append(n);
+            }
+            return (c.perishableFood + c.nonPerishableFood) + " " + totalCrystals + " " + c.perishableFood + " " + c.nonPerishableFood + sb;
+        } else if (verb.equals("new")) {
+            return newCreature(d(a, 0), d(a, 1), d(a, 2), a.size() > 3 ? Integer.parseInt(a.get(3)) : 0);
+        } else if (verb.equals("checkXY")) {
+            for (SimCreature c : creatures.values()) {
+                if (Math.abs(c.x - d(a, 0)) < 1 && Math.abs(c.y - d(a, 1)) < 1) {
+                    c.pitch = Math.toRadians(d(a, 2));
+                    return c.index + " " + c.name;
+                }
+            }
+            return "";
+        } else if (verb.equals("check")) {
+            SimCreature c = creature(a.get(0));
+            return c == null ? "no" : "yes " + c.name;
+        } else if (verb.equals("food")) {
+            Item f = addFood(Integer.parseInt(a.get(0)), d(a, 1), d(a, 2));
+            return f.name + " " + f.x + " " + f.y;
+        } else if (verb.equals("jewel")) {
+            Item j = addJewel(Integer.parseInt(a.get(0)), d(a, 1), d(a, 2));
+            return j.name + " " + j.x + " " + j.y;
+        } else if (verb.equals("batchoffood") || verb.equals("batchofjewels")) {
+            int type = Integer.parseInt(a.get(0));
+            int number = Integer.parseInt(a.get(1));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < number; i++) {
+                Item t = verb.equals("batchoffood") ? addFood(type, d(a, 2 + 2 * i), d(a, 3 + 2 * i)) : addJewel(type, d(a, 2 + 2 * i), d(a, 3 + 2 * i));
+                sb.append(i == 0 ? "" : " ").append(t.name).append(' ').append(t.x).append(' ').append(t.y);
+            }
+            return sb.toString();
+        } else if (verb.equals("brick")) {
+            double x1 = d(a, 1), y1 = d(a, 2), x2 = d(a, 3), y2 = d(a, 4);
+            Item b = add("Brick", Constants.categoryBRICK, JEWEL_COLORS[Integer.parseInt(a.get(0)) % JEWEL_COLORS.length], (x1 + x2) / 2, (y1 + y2) / 2, Math.max(Math.abs(x2 - x1), Math.abs(y2 - y1)), 0, 1, 0);
+            return b.name + " " + b.x + " " + b.y;
+        } else if (verb.equals("cage")) {
+            Item c = add("Cage", Constants.categoryBRICK, Constants.colorWHITE, d(a, 0), d(a, 1), 40, 0, 1, 0);
+            return c.name + " " + c.x + " " + c.y;
+        } else if (verb.equals("newDeliverySpot")) {
+            deliveryX = d(a, 1);
+            deliveryY = d(a, 2);
+            Item ds = things.get("DeliverySPOT");
+            ds.x = deliveryX;
+            ds.y = deliveryY;
+            return "DeliverySPOT " + deliveryX + " " + deliveryY;
+        } else if (verb.equals("deleteth")) {
+            String id = a.get(1);
+            if (Integer.parseInt(a.get(0)) == 1) {
+                SimCreature c = creatures.remove(id);
+                return c == null ? error("Creature not found: " + id) : c.name;
+            }
+            Item t = things.remove(id);
+            return t == null ? error("Thing not found: " + id) : t.name;
+        } else if (verb.equals("refuel")) {
+            SimCreature c = creature(a.get(0));
+            if (c == null) {
+                return error("Creature not found: " + a.get(0));
+            }
+            c.fuel = Constants.CREATURE_MAX_FUEL;
+            return String.valueOf(c.fuel);
+        } else if (verb.equals("getcreatcoords")) {
+            SimCreature c = creature(a.get(0));
+            return c == null ? error("Creature not found: " + a.get(0)) : c.x + " " + c.y + " " + Math.toDegrees(c.pitch);
+        } else if (verb.equals("getcreatinfo")) {
+            SimCreature c = creature(a.get(0));
+            return c == null ? error("Creature not found: " + a.get(0)) : c.speed() + " " + c.fuel;
+        } else if (verb.equals("getsimulpars")) {
+            return width + " " + height + " " + deliveryX + " " + deliveryY;
+        } else if (verb.equals("getenvironmen")) {
+            return width + " " + height;
+        } else if (verb.equals("setenv")) {
+            width = Integer.parseInt(a.get(0));
+            height = Integer.parseInt(a.get(1));
+            return width + " " + height + " none";
+        } else if (verb.equals("getNumEntities")) {
+            return creatures.size() + " " + things.size();
+        } else if (verb.equals("worldReset")) {
+            creatures.clear();
+            Item ds = things.get("DeliverySPOT");
+            things.clear();
+            things.put(ds.name, ds);
+            return "done";
+        } else if (verb.equals("game")) {
+            return "yes";
+        } else if (verb.equals("camera")) {
+            return "camera " + a.get(0) + " " + a.get(0);
+        } else if (verb.equals("mindName")) {
+            return "RobotMind_" + a.get(0);
+        } else if (verb.equals("memory")) {
+            return String.valueOf(Runtime.getRuntime().freeMemory());
+        } else if (verb.equals("getclock")) {
+            return String.valueOf(System.currentTimeMillis());
+        } else if (verb.equals("newwp") || verb.equals("delwp")) {
+            return d(a, 0) + " " + d(a, 1);
+        } else if (verb.equals("drop")) {
+            SimCreature c = creature(a.get(0));
+            return c == null ? error("Creature not found: " + a.get(0)) : c.x + " " + c.y;
+        }
+        return error("Unknown command: " + verb);
+    }
+
+    /**
+     * Moves the creatures according to the time elapsed since the last
+     * command.
+     */
+    private void advance() {
+        long now = System.nanoTime();
+        double dt = (now - lastUpdate) / 1e9;
+        lastUpdate = now;
+        for (SimCreature c : creatures.values()) {
+            if (!c.running || c.fuel <= 0) {
+                continue;
+            }
+            double v = c.speed() * SPEED_SCALE;
+            if (!Double.isNaN(c.targetX)) {
+                double dx = c.targetX - c.x;
+                double dy = c.targetY - c.y;
+                double distance = Math.sqrt(dx * dx + dy * dy);
+                c.pitch = Math.atan2(dy, dx);
+                if (distance <= v * dt) {
+                    v = distance / Math.max(dt, 1e-9);
+                    c.targetX = Double.NaN;
+                    c.vr = c.vl = 0;
+                }
+            } else {
+                c.pitch += c.w * dt;
+            }
+            double step = v * dt;
+            double nx = c.x + step * Math.cos(c.pitch);
+            double ny = c.y + step * Math.sin(c.pitch);
+            double half = Constants.CREATURE_SIZE / 2;
+            c.collided = nx < half || ny < half || nx > width - half || ny > height - half;
+            c.x = Math.min(Math.max(nx, half), width - half);
+            c.y = Math.min(Math.max(ny, half), height - half);
+            c.fuel = Math.max(0, c.fuel - Math.abs(step) * FUEL_PER_UNIT);
+        }
+    }
+
+    private String newCreature(double x, double y, double pitch, int color) {
+        String index = String.valueOf(creatures.size());
+        while (creatures.containsKey(index)) {
+            index = String.valueOf(Integer.parseInt(index) + 1);
+        }
+        SimCreature c = new SimCreature(index, "Creature_" + nextId++, color == 1 ? Constants.colorRED : Constants.colorYELLOW, x, y, Math.toRadians(pitch));
+        creatures.put(index, c);
+        return c.index + " " + c.name + " " + x + " " + y + " " + pitch;
+    }
+
+    private Item addFood(int type, double x, double y) {
+        boolean perishable = type == 0;
+        return add(perishable ? "PFood" : "NPFood", perishable ? Constants.categoryPFOOD : Constants.categoryNPFOOD,
+                perishable ? Constants.colorRED : Constants.colorORANGE, x, y, Constants.FOOD_SIZE, perishable ? 300 : 200, 0, 0);
+    }
+
+    private Item addJewel(int type, double x, double y) {
+        return add("Jewel", Constants.categoryJEWEL, JEWEL_COLORS[type % JEWEL_COLORS.length], x, y, Constants.CRYSTAL_SIZE, 0, 1, 1);
+    }
+
+    private Item add(String prefix, int category, String color, double x, double y, double size, double energy, double hardness, double shininess) {
+        Item t = new Item(prefix + "_" + nextId++, category, color, x, y, size, energy, hardness, shininess);
+        things.put(t.name, t);
+        return t;
+    }
+
+    private String actOn(String verb, String robotID, String thingName) {
+        SimCreature c = creature(robotID);
+        if (c == null) {
+            return error("Creature not found: " + robotID);
+        }
+        Item t = things.get(thingName);
+        if (t == null || t.category == Constants.categoryDeliverySPOT || t.category == Constants.categoryBRICK) {
+            return error("Thing not found: " + thingName);
+        }
+        boolean food = t.category == Constants.categoryPFOOD || t.category == Constants.categoryNPFOOD;
+        if (verb.equals("eatit")) {
+            if (!food) {
+                return error(thingName + " is not food");
+            }
+            c.fuel = Math.min(Constants.CREATURE_MAX_FUEL, c.fuel + t.energy);
+            c.lastAction = actionData(Constants.ACTION_NAME_EAT, t);
+        } else {
+            if (food) {
+                if (t.category == Constants.categoryPFOOD) {
+                    c.perishableFood++;
+                } else {
+                    c.nonPerishableFood++;
+                }
+            } else {
+                for (int i = 0; i < JEWEL_COLORS.length; i++) {
+                    if (JEWEL_COLORS[i].equals(t.color)) {
+                        c.crystals[i]++;
+                    }
+                }
+                for (SimLeaflet l : c.leaflets) {
+                    int[] item = l.items.get(t.color);
+                    if (item != null && item[1] < item[0]) {
+                        item[1]++;
+                        break;
+                    }
+                }
+            }
+            c.lastAction = actionData(Constants.ACTION_NAME_PUTINTOBAG, t);
+        }
+        things.remove(thingName);
+        return thingName;
+    }
+
+    /**
+     * Thing upon which an action was performed, in the JSON format reported
+     * by the server (a single token: no blanks).
+     */
+    private static String actionData(String action, Item t) {
+        return "{\"" + Constants.TOKEN_ACTION + "\":\"" + action + "\",\"" + Constants.TOKEN_THING_DATA + "\":{"
+                + "\"" + Constants.TOKEN_NAME_ID + "\":\"" + t.name + "\","
+                + "\"" + Constants.TOKEN_CATEGORY + "\":" + t.category + ","
+                + "\"" + Constants.TOKEN_COLOR + "\":\"" + t.color + "\"}}";
+    }
+
+    private String generateLeaflets() {
+        StringBuilder sb = new StringBuilder();
+        for (SimCreature c : creatures.values()) {
+            c.leaflets.clear();
+            for (int l = 0; l < 3; l++) {
+                SimLeaflet leaflet = new SimLeaflet(nextId++);
+                int kinds = 1 + random.nextInt(3);
+                for (int k = 0; k < kinds; k++) {
+                    String color = JEWEL_COLORS[random.nextInt(JEWEL_COLORS.length)];
+                    if (!leaflet.items.containsKey(color)) {
+                        int total = 1 + random.nextInt(2);
+                        leaflet.items.put(color, new int[]{total, 0});
+                        leaflet.payment += 2 * total;
+                    }
+                }
+                c.leaflets.add(leaflet);
+                for (Map.Entry<String, int[]> e : leaflet.items.entrySet()) {
+                    sb.append(e.getKey()).append(' ').append(e.getValue()[0]).append(" 0 ");
+                }
+                sb.append(leaflet.payment).append(' ');
+            }
+        }
+        return sb.toString().trim();
+    }
+
+    private String deliver(String robotID, long leafletID) {
+        SimCreature c = creature(robotID);
+        if (c == null) {
+            return error("Creature not found: " + robotID);
+        }
+        for (Iterator<SimLeaflet> it = c.leaflets.iterator(); it.hasNext();) {
+            SimLeaflet l = it.next();
+            if (l.id == leafletID) {
+                if (!l.isComplete()) {
+                    return error("Leaflet " + leafletID + " is not complete");
+                }
+                for (Map.Entry<String, int[]> e : l.items.entrySet()) {
+                    for (int i = 0; i < JEWEL_COLORS.length; i++) {
+                        if (JEWEL_COLORS[i].equals(e.getKey())) {
+                            c.crystals[i] = Math.max(0, c.crystals[i] - e.getValue()[0]);
+                        }
+                    }
+                }
+                c.score += l.payment;
+                l.delivered = true;
+                it.remove();
+                return "Leaflet delivered!";
+            }
+        }
+        return error("Leaflet not found: " + leafletID);
+    }
+
+    private String creatureState(SimCreature c) {
+        double half = Constants.CREATURE_SIZE / 2;
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append(c.name).append(' ').append(c.index).append(' ')
+                .append(c.x).append(' ').append(c.y).append(' ')
+                .append(Constants.CREATURE_SIZE).append(' ')
+                .append(Math.toDegrees(c.pitch)).append(' ')
+                .append(Constants.MUST_STAY_ON_PLAYINGFIELD).append(' ')
+                .append(c.w).append(' ').append(c.speed()).append(' ')
+                .append(c.fuel).append(' ')
+                .append(0.0).append(' ').append(0.0).append(' ')
+                .append(c.score).append(' ')
+                .append(c.x - half).append(' ').append(c.y - half).append(' ')
+                .append(c.x + half).append(' ').append(c.y + half).append(' ')
+                .append(c.color).append(' ')
+                .append(c.lastAction).append(' ')
+                .append(c.collided ? 1 : 0).append(' ');
+        if (c.leaflets.isEmpty()) {
+            sb.append("0 0 ");
+        } else {
+            sb.append("1 ").append(c.leaflets.size()).append(' ');
+            for (SimLeaflet l : c.leaflets) {
+                sb.append(l.id).append(' ').append(l.items.size()).append(' ');
+                for (Map.Entry<String, int[]> e : l.items.entrySet()) {
+                    sb.append(e.getKey()).append(' ').append(e.getValue()[0]).append(' ').append(e.getValue()[1]).append(' ');
+                }
+                sb.append(l.payment).append(' ').append(l.delivered).append(' ');
+            }
+        }
+        List<Item> seen = new ArrayList<Item>();
+        for (Item t : things.values()) {
+            if (isVisible(c, t.x, t.y)) {
+                seen.add(t);
+            }
+        }
+        sb.append(seen.size());
+        for (Item t : seen) {
+            appendThing(sb, t);
+        }
+        return sb.toString();
+    }
+
+    private String allThings() {
+        StringBuilder sb = new StringBuilder(64 + 96 * size());
+        sb.append(creatures.size() + things.size());
+        double half = Constants.CREATURE_SIZE / 2;
+        for (SimCreature c : creatures.values()) {
+            sb.append(" || ").append(c.name).append(' ').append(Constants.categoryCREATURE).append(" 0 ")
+                    .append(c.x - half).append(' ').append(c.x + half).append(' ')
+                    .append(c.y - half).append(' ').append(c.y + half).append(' ')
+                    .append(Math.toDegrees(c.pitch)).append(" 1.0 ").append(c.fuel).append(" 0.0 ")
+                    .append(c.color).append(' ').append(c.x).append(' ').append(c.y);
+        }
+        for (Item t : things.values()) {
+            appendThing(sb, t);
+        }
+        return sb.toString();
+    }
+
+    private static void appendThing(StringBuilder sb, Item t) {
+        double half = t.size / 2;
+        sb.append(" || ").append(t.name).append(' ').append(t.category).append(" 0 ")
+                .append(t.x - half).append(' ').append(t.x + half).append(' ')
+                .append(t.y - half).append(' ').append(t.y + half).append(' ')
+                .append(0.0).append(' ').append(t.hardness).append(' ')
+                .append(t.energy).append(' ').append(t.shininess).append(' ')
+                .append(t.color).append(' ').append(t.x).append(' ').append(t.y);
+    }
+
+    private static boolean isVisible(SimCreature c, double x, double y) {
+        double dx = x - c.x;
+        double dy = y - c.y;
+        if (dx * dx + dy * dy > VISION_RANGE * VISION_RANGE) {
+            return false;
+        }
+        double angle = Math.atan2(dy, dx) - c.pitch;
+        angle = Math.atan2(Math.sin(angle), Math.cos(angle));
+        return Math.abs(angle) <= HALF_FIELD_OF_VIEW;
+    }
+
+    private SimCreature creature(String index) {
+        return creatures.get(index);
+    }
+
+    private SimCreature creatureByName(String name) {
+        for (SimCreature c : creatures.values()) {
+            if (c.name.equals(name)) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    private static double d(List<String> args, int i) {
+        return Double.parseDouble(args.get(i));
+    }
+
+    private static String error(String message) {
+        return ResponseFramer.ERROR_CODE + " " + message;
+    }
+}
@@ -0,0 +1,143 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.transport;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Options of the network socket of a connection, and of how its writes are
+ * batched.
+ *
+ * By default Nagle's algorithm is disabled (TCP_NODELAY): the commands are
+ * small and every one of them waits for its report, so holding them back
+ * only adds latency. Before these options existed the sockets kept the
+ * system default, Nagle's algorithm on; {@code setTcpNoDelay(false)} restores
+ * it. The buffer sizes are left to the system and keep-alive is off.
+ *
+ * The write batch delay is how long the I/O thread of the connection (see
+ * {@link ws3dproxy.Connection#exchangeAsync(String)}) waits for more commands
+ * once a command is queued, so that the commands submitted within that delay
+ * go out with a single write. It is 0 by default: whatever is queued when the
+ * thread wakes up is sent at once. It only applies to the async commands:
+ * {@link ws3dproxy.Connection#exchange(String)} (and so every command of
+ * {@link ws3dproxy.CommandUtility}) writes its command at once, one write per
+ * command, since it waits for the report anyway, and
+ * {@link ws3dproxy.Connection#exchangeAll(java.util.List)} writes all its
+ * commands with a single write, without delay.
+ */
+public final class ConnectionOptions {
+
+    private boolean tcpNoDelay = true;
+    private boolean keepAlive = false;
+    private int sendBufferSize = 0;
+    private int receiveBufferSize = 0;
+    private long writeBatchDelayNanos = 0;
+
+    /**
+     * Default options.
+     */
+    public ConnectionOptions() {
+    }
+
+    /**
+     * @param other options to be copied
+     */
+    public ConnectionOptions(ConnectionOptions other) {
+        this.tcpNoDelay = other.tcpNoDelay;
+        this.keepAlive = other.keepAlive;
+        this.sendBufferSize = other.sendBufferSize;
+        this.receiveBufferSize = other.receiveBufferSize;
+        this.writeBatchDelayNanos = other.writeBatchDelayNanos;
+    }
+
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    /**
+     * @param tcpNoDelay true (default) to disable Nagle's algorithm
+     */
+    public void setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * @param keepAlive true to probe an idle link (SO_KEEPALIVE)
+     */
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public int getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    /**
+     * @param size size of the socket send buffer (SO_SNDBUF) in bytes, or 0
+     * (default) for the size chosen by the system
+     */
+    public void setSendBufferSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Invalid buffer size: " + size);
+        }
+        this.sendBufferSize = size;
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    /**
+     * @param size size of the socket receive buffer (SO_RCVBUF) in bytes, or 0
+     * (default) for the size chosen by the system
+     */
+    public void setReceiveBufferSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Invalid buffer size: " + size);
+        }
+        this.receiveBufferSize = size;
+    }
+
+    /**
+     * @param unit unit of the result
+     * @return how long the I/O thread waits for more commands before writing
+     */
+    public long getWriteBatchDelay(TimeUnit unit) {
+        return unit.convert(writeBatchDelayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param delay how long the I/O thread waits for more commands before
+     * writing, or 0 (default) not to wait
+     * @param unit unit of the delay
+     */
+    public void setWriteBatchDelay(long delay, TimeUnit unit) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("Invalid write batch delay: " + delay);
+        }
+        this.writeBatchDelayNanos = unit.toNanos(delay);
+    }
+
+    @Override
+    public String toString() {
+        return "nodelay " + tcpNoDelay + ", keepalive " + keepAlive + ", sndbuf " + sendBufferSize + ", rcvbuf " + receiveBufferSize
+                + ", batch delay " + writeBatchDelayNanos / 1000 + " us";
+    }
+}
@@ -0,0 +1,76 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.transport;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the system calls made on a socket and of the bytes carried,
+ * e.g. to measure the effect of batching the writes.
+ */
+public final class IoCounters {
+
+    private final AtomicLong writeCalls = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong readCalls = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    void wrote(int bytes) {
+        writeCalls.incrementAndGet();
+        bytesWritten.addAndGet(bytes);
+    }
+
+    void read(int bytes) {
+        readCalls.incrementAndGet();
+        if (bytes > 0) {
+            bytesRead.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * @return number of write system calls
+     */
+    public long getWriteCalls() {
+        return writeCalls.get();
+    }
+
+    /**
+     * @return number of bytes written
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * @return number of read system calls, including those that found no
+     * bytes
+     */
+    public long getReadCalls() {
+        return readCalls.get();
+    }
+
+    /**
+     * @return number of bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    @Override
+    public String toString() {
+        return "writes " + getWriteCalls() + " (" + getBytesWritten() + " bytes), reads " + getReadCalls() + " (" + getBytesRead() + " bytes)";
+    }
+}
@@ -0,0 +1,413 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.transport;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import ws3dproxy.protocol.ResponseFramer;
+
+/**
+ * Non-blocking network channel to the server. Reads are parked on a
+ * {@link Selector} until bytes arrive, so a thread waiting for a server report
+ * does not consume CPU.
+ */
+final class NioChannel {
+
+    private static final int BUFFER_SIZE = 65535;
+
+    private final SocketChannel channel;
+    private final IoCounters counters;
+    private final Selector selector;
+    private final Selector writeSelector;
+    private final SelectionKey writeKey;
+    private final Object readLock = new Object();
+    private final Object writeLock = new Object();
+    private final Charset charset = Charset.defaultCharset();
+    /**
+     * True if the charset writes ASCII as ASCII, so that an ASCII line can be
+     * copied byte by byte into the output buffer.
+     */
+    private final boolean asciiCompatible = charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII) || charset.equals(StandardCharsets.ISO_8859_1);
+    private final byte[] lineSeparator = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    /**
+     * The lines written are encoded into this buffer, reused from one write
+     * to the next (guarded by writeLock).
+     */
+    private final byte[] output = new byte[BUFFER_SIZE];
+    private final ByteBuffer outputBuffer = ByteBuffer.wrap(output);
+    /**
+     * Bytes received, of which those from pendingStart to pendingEnd are not
+     * consumed yet; those up to scanned hold no line terminator.
+     */
+    private byte[] pending = new byte[BUFFER_SIZE];
+    /**
+     * The socket reads straight into pending, through this buffer.
+     */
+    private ByteBuffer readBuffer = ByteBuffer.wrap(pending);
+    private int pendingStart = 0;
+    private int pendingEnd = 0;
+    private int scanned = 0;
+
+    private NioChannel(SocketChannel channel, IoCounters counters) throws IOException {
+        this.channel = channel;
+        this.counters = counters;
+        channel.configureBlocking(false);
+        selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+        writeSelector = Selector.open();
+        writeKey = channel.register(writeSelector, 0);
+    }
+
+    /**
+     * Opens a channel to the server. The connection itself is established in
+     * blocking mode; afterwards the channel is switched to non-blocking mode.
+     *
+     * @param host IP address or name of remote host (or localhost)
+     * @param port port number to connect to server
+     * @param options options of the socket
+     * @param counters counters of the system calls of the channel
+     * @return the opened channel
+     * @throws IOException if the server is unreachable
+     */
+    static NioChannel open(String host, int port, ConnectionOptions options, IoCounters counters) throws IOException {
+        SocketChannel sc = SocketChannel.open();
+        try {
+            TcpTransport.configure(sc.socket(), options);
+            sc.connect(new InetSocketAddress(host, port));
+        } catch (IOException ex) {
+            sc.close();
+            throw ex;
+        }
+        return new NioChannel(sc, counters);
+    }
+
+    /**
+     * Writes a text line (the line separator is appended).
+     *
+     * @param s text to be sent
+     * @throws IOException if the channel is broken
+     */
+    void writeLine(String s) throws IOException {
+        writeLines(Collections.singletonList(s));
+    }
+
+    /**
+     * Writes several text lines at once (a line separator is appended to each
+     * of them). ASCII lines that fit are encoded into the output buffer of the
+     * channel; the others go through {@link String#getBytes(Charset)}.
+     *
+     * @param lines texts to be sent
+     * @throws IOException if the channel is broken
+     */
+    void writeLines(List<String> lines) throws IOException {
+        synchronized (writeLock) {
+            int n = encode(lines);
+            if (n >= 0) {
+                outputBuffer.clear();
+                outputBuffer.limit(n);
+                write(outputBuffer);
+                return;
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String s : lines) {
+            sb.append(s).append(System.lineSeparator());
+        }
+        write(ByteBuffer.wrap(sb.toString().getBytes(charset)));
+    }
+
+    /**
+     * @return number of bytes encoded into the output buffer, or -1 if the
+     * lines are not ASCII or do not fit
+     */
+    private int encode(List<String> lines) {
+        if (!asciiCompatible) {
+            return -1;
+        }
+        int p = 0;
+        for (String s : lines) {
+            int length = s.length();
+            if (p + length + lineSeparator.length > output.length) {
+                return -1;
+            }
+            for (int i = 0; i < length; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x80) {
+                    return -1;
+                }
+                output[p++] = (byte) c;
+            }
+            for (byte b : lineSeparator) {
+                output[p++] = b;
+            }
+        }
+        return p;
+    }
+
+    private void write(ByteBuffer buf) throws IOException {
+        synchronized (writeLock) {
+            while (buf.hasRemaining()) {
+                int n = channel.write(buf);
+                counters.wrote(n);
+                if (n == 0) {
+                    //socket send buffer is full: wait until it drains
+                    try {
+                        writeKey.interestOps(SelectionKey.OP_WRITE);
+                        writeSelector.select();
+                        writeSelector.selectedKeys().clear();
+                        writeKey.interestOps(0);
+                        checkInterrupt();
+                    } catch (ClosedSelectorException ex) {
+                        throw new ClosedChannelException();
+                    } catch (CancelledKeyException ex) {
+                        throw new ClosedChannelException();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a text line, parking the caller until a complete line is
+     * available.
+     *
+     * @return the line without the line terminator
+     * @throws IOException if the channel is broken or closed by the server
+     */
+    String readLine() throws IOException {
+        synchronized (readLock) {
+            int eol = nextLine();
+            String line = new String(pending, pendingStart, lineEnd(eol) - pendingStart, charset);
+            consume(eol);
+            return line;
+        }
+    }
+
+    /**
+     * Reads a text line and hands its bytes to a framer, straight from the
+     * receive buffer (no String is created).
+     *
+     * @param framer framer of the report being read
+     * @return true if the report is complete
+     * @throws IOException if the channel is broken or closed by the server
+     */
+    boolean readLine(ResponseFramer framer) throws IOException {
+        synchronized (readLock) {
+            int eol = nextLine();
+            boolean complete = framer.offer(pending, pendingStart, lineEnd(eol) - pendingStart);
+            consume(eol);
+            return complete;
+        }
+    }
+
+    /**
+     * Parks the caller until a complete line is available.
+     *
+     * @return position of the line terminator
+     */
+    private int nextLine() throws IOException {
+        int eol;
+        while ((eol = indexOfNewLine()) < 0) {
+            if (fill() == 0) {
+                park();
+            }
+        }
+        return eol;
+    }
+
+    private int lineEnd(int eol) {
+        return (eol > pendingStart && pending[eol - 1] == '\r') ? eol - 1 : eol;
+    }
+
+    private void consume(int eol) {
+        pendingStart = eol + 1;
+        scanned = pendingStart;
+        if (pendingStart == pendingEnd) {
+            pendingStart = 0;
+            pendingEnd = 0;
+            scanned = 0;
+        }
+    }
+
+    /**
+     * Waits until the socket is readable.
+     */
+    private void park() throws IOException {
+        try {
+            selector.select();
+            selector.selectedKeys().clear();
+        } catch (ClosedSelectorException ex) {
+            //the channel was closed while waiting
+            throw new ClosedChannelException();
+        }
+        checkInterrupt();
+    }
+
+    /**
+     * A selector returns at once while the thread is interrupted, so an
+     * interrupted caller would spin: as a blocking channel does, the channel
+     * is closed (a report may be half read) and the interrupt status is kept.
+     *
+     * @throws ClosedByInterruptException if the thread is interrupted
+     */
+    private void checkInterrupt() throws IOException {
+        if (Thread.currentThread().isInterrupted()) {
+            close();
+            throw new ClosedByInterruptException();
+        }
+    }
+
+    /**
+     * @return the charset of the lines
+     */
+    Charset charset() {
+        return charset;
+    }
+
+    /**
+     * @return a stream whose bytes are written to the channel as they are
+     * given
+     */
+    OutputStream outputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                NioChannel.this.write(ByteBuffer.wrap(b, off, len));
+            }
+        };
+    }
+
+    /**
+     * @return a reader that takes the lines of the channel one at a time, so
+     * that it never holds bytes of a line it has not been asked for
+     */
+    Reader reader() {
+        return new Reader() {
+            private String line = "";
+            private int next = 0;
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                if (next == line.length()) {
+                    try {
+                        line = readLine() + "\n";
+                    } catch (EOFException ex) {
+                        return -1;
+                    }
+                    next = 0;
+                }
+                int n = Math.min(len, line.length() - next);
+                line.getChars(next, next + n, cbuf, off);
+                next += n;
+                return n;
+            }
+
+            /**
+             * @return true if a line is already received (does not wait)
+             */
+            @Override
+            public boolean ready() throws IOException {
+                if (next < line.length()) {
+                    return true;
+                }
+                synchronized (readLock) {
+                    if (indexOfNewLine() < 0) {
+                        fill();
+                    }
+                    return indexOfNewLine() >= 0;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                NioChannel.this.close();
+            }
+        };
+    }
+
+    boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    void close() throws IOException {
+        selector.close();
+        writeSelector.close();
+        channel.close();
+    }
+
+    private int indexOfNewLine() {
+        for (int i = scanned; i < pendingEnd; i++) {
+            if (pending[i] == '\n') {
+                return i;
+            }
+        }
+        scanned = pendingEnd;
+        return -1;
+    }
+
+    /**
+     * Non-blocking read of whatever is available on the socket, appended to
+     * the pending bytes.
+     *
+     * @return number of bytes read (possibly 0)
+     */
+    private int fill() throws IOException {
+        if (pending.length - pendingEnd < BUFFER_SIZE / 4) {
+            //move the unconsumed bytes to the front, growing if needed
+            int unconsumed = pendingEnd - pendingStart;
+            byte[] target = (pending.length - unconsumed < BUFFER_SIZE / 4) ? new byte[pending.length * 2] : pending;
+            System.arraycopy(pending, pendingStart, target, 0, unconsumed);
+            if (target != pending) {
+                pending = target;
+                readBuffer = ByteBuffer.wrap(pending);
+            }
+            scanned -= pendingStart;
+            pendingStart = 0;
+            pendingEnd = unconsumed;
+        }
+        readBuffer.limit(pending.length).position(pendingEnd);
+        int n = channel.read(readBuffer);
+        counters.read(n);
+        if (n < 0) {
+            throw new EOFException("Connection closed by server");
+        }
+        pendingEnd += n;
+        return n;
+    }
+}
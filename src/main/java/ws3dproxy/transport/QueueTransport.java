@@ -0,0 +1,128 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.transport;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * In-memory loopback: one end of a pair of line queues. Lines written to this
+ * end are read from its {@link #getPeer() peer} and vice versa, so a server
+ * stand-in running in another thread of the same JVM can serve the peer end.
+ * No socket is involved.
+ *
+ * Closing either end is seen as end of stream by the other one.
+ */
+public class QueueTransport implements Transport {
+
+    /**
+     * Queued after the last line when an end is closed. Compared by identity.
+     */
+    private static final String EOF = new String("EOF");
+
+    private final BlockingQueue<String> incoming;
+    private final BlockingQueue<String> outgoing;
+    private final QueueTransport peer;
+    private volatile boolean open = true;
+
+    /**
+     * Creates both ends of the loopback; the other one is returned by
+     * {@link #getPeer()}.
+     */
+    public QueueTransport() {
+        this.incoming = new LinkedBlockingQueue<String>();
+        this.outgoing = new LinkedBlockingQueue<String>();
+        this.peer = new QueueTransport(this);
+    }
+
+    private QueueTransport(QueueTransport peer) {
+        this.incoming = peer.outgoing;
+        this.outgoing = peer.incoming;
+        this.peer = peer;
+    }
+
+    /**
+     * @return the other end of the loopback
+     */
+    public QueueTransport getPeer() {
+        return peer;
+    }
+
+    /**
+     * Nothing to establish: both ends are usable as soon as they are created.
+     */
+    @Override
+    public void open() {
+    }
+
+    @Override
+    public void writeLine(String line) throws IOException {
+        if (!open) {
+            throw new IOException("Transport closed");
+        }
+        outgoing.add(line);
+    }
+
+    @Override
+    public void writeLines(List<String> lines) throws IOException {
+        if (!open) {
+            throw new IOException("Transport closed");
+        }
+        outgoing.addAll(lines);
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        if (!open) {
+            return null;
+        }
+        String line;
+        try {
+            line = incoming.take();
+        } catch (InterruptedException ex) {
+            throw new InterruptedIOException();
+        }
+        if (line == EOF) {
+            //keep the end of stream visible to further reads
+            incoming.add(EOF);
+            return null;
+        }
+        return line;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        if (open) {
+            open = false;
+            outgoing.add(EOF);
+            //wakes up a reader of this end
+            incoming.add(EOF);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "queue@" + Integer.toHexString(System.identityHashCode(incoming));
+    }
+}
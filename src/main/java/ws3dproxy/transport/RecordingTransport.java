@@ -0,0 +1,180 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.transport;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import ws3dproxy.protocol.ReportBuffer;
+import ws3dproxy.protocol.ResponseFramer;
+
+/**
+ * Records a session: every line written to and read from the wrapped
+ * transport is appended to a binary log, which can be replayed later by a
+ * {@link ReplayTransport}.
+ *
+ * Log format (big-endian):
+ * <pre>
+ * header: "WS3DLOG" version(byte) startMillis(long)
+ * record: direction(byte: 'C' command, 'R' report line) nanos(long) length(int) UTF-8 bytes
+ * </pre>
+ * where nanos is the time elapsed since the log was created. If the transport
+ * is reopened (e.g. on reconnection), the records are appended to the same
+ * log.
+ */
+public class RecordingTransport implements Transport {
+
+    static final byte[] MAGIC = {'W', 'S', '3', 'D', 'L', 'O', 'G'};
+    static final byte VERSION = 1;
+    static final byte COMMAND = 'C';
+    static final byte REPORT = 'R';
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Transport transport;
+    private final File file;
+    private final Object lock = new Object();
+    private DataOutputStream log;
+    private boolean logClosed = false;
+    private final long start;
+
+    /**
+     * @param transport the transport to be recorded
+     * @param file the log (overwritten if it exists)
+     * @throws IOException if the log can not be created
+     */
+    public RecordingTransport(Transport transport, File file) throws IOException {
+        this.transport = transport;
+        this.file = file;
+        this.log = open(file, false);
+        this.start = System.nanoTime();
+        log.write(MAGIC);
+        log.writeByte(VERSION);
+        log.writeLong(System.currentTimeMillis());
+    }
+
+    private static DataOutputStream open(File file, boolean append) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, append), 65536));
+    }
+
+    @Override
+    public void open() throws IOException {
+        synchronized (lock) {
+            if (logClosed) {
+                log = open(file, true);
+                logClosed = false;
+            }
+        }
+        transport.open();
+    }
+
+    @Override
+    public void writeLine(String line) throws IOException {
+        append(COMMAND, line);
+        transport.writeLine(line);
+    }
+
+    @Override
+    public void writeLines(List<String> lines) throws IOException {
+        for (String s : lines) {
+            append(COMMAND, s);
+        }
+        transport.writeLines(lines);
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        String line = transport.readLine();
+        if (line != null) {
+            append(REPORT, line);
+        }
+        return line;
+    }
+
+    /**
+     * Reads a line into the framer through the wrapped transport (straight
+     * from the socket for a {@link TcpTransport}) and records it. The empty
+     * lines the framer skips are not recorded.
+     */
+    @Override
+    public boolean readLine(ResponseFramer framer) throws IOException {
+        ReportBuffer report = framer.getReport();
+        int lines = report.lineCount();
+        boolean complete = transport.readLine(framer);
+        if (report.lineCount() > lines) {
+            append(REPORT, report.lastLine());
+        }
+        return complete;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return transport.isOpen();
+    }
+
+    /**
+     * @return the transport recorded, unwrapped
+     */
+    @Override
+    public Transport unwrap() {
+        return transport.unwrap();
+    }
+
+    /**
+     * Closes the wrapped transport and the log.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            transport.close();
+        } finally {
+            synchronized (lock) {
+                log.close();
+                logClosed = true;
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered records to the log file.
+     *
+     * @throws IOException if the log can not be written
+     */
+    public void flush() throws IOException {
+        synchronized (lock) {
+            log.flush();
+        }
+    }
+
+    private void append(byte direction, String line) throws IOException {
+        byte[] bytes = line.getBytes(UTF8);
+        long nanos = System.nanoTime() - start;
+        synchronized (lock) {
+            log.writeByte(direction);
+            log.writeLong(nanos);
+            log.writeInt(bytes.length);
+            log.write(bytes);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return transport.toString();
+    }
+}
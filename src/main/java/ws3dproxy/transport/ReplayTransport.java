@@ -0,0 +1,201 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.transport;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Plays back a session recorded by a {@link RecordingTransport}: the log is
+ * memory-mapped and the recorded report lines are returned by
+ * {@link #readLine()} as fast as they are asked for, without any server or
+ * network wait. Commands written are discarded, or compared with the recorded
+ * ones if {@link #setVerifyCommands(boolean)} is set.
+ *
+ * The end of the log is seen as end of stream; {@link #rewind()} starts over,
+ * e.g. to repeat a session in a benchmark.
+ */
+public class ReplayTransport implements Transport {
+
+    private static final int HEADER_SIZE = RecordingTransport.MAGIC.length + 1 + 8;
+    /**
+     * Direction (1 byte), nanos (8 bytes), length (4 bytes).
+     */
+    private static final int RECORD_HEADER_SIZE = 13;
+    private static final int LENGTH_OFFSET = 9;
+
+    private final File file;
+    private final MappedByteBuffer log;
+    private final long startMillis;
+    /**
+     * Position of the next report line.
+     */
+    private int reportPosition;
+    /**
+     * Position of the next command (when verifying).
+     */
+    private int commandPosition;
+    private volatile boolean verifyCommands = false;
+    private volatile boolean open = false;
+
+    /**
+     * @param file a log created by {@link RecordingTransport}
+     * @throws IOException if the file can not be read or is not a session log
+     */
+    public ReplayTransport(File file) throws IOException {
+        this.file = file;
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel fc = raf.getChannel();
+            if (fc.size() > Integer.MAX_VALUE) {
+                throw new IOException("Session log too large to be mapped: " + file);
+            }
+            log = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+        } finally {
+            //the mapping stays valid after the file is closed
+            raf.close();
+        }
+        for (byte b : RecordingTransport.MAGIC) {
+            if (log.remaining() == 0 || log.get() != b) {
+                throw new IOException("Not a session log: " + file);
+            }
+        }
+        byte version = log.get();
+        if (version != RecordingTransport.VERSION) {
+            throw new IOException("Unsupported session log version " + version + ": " + file);
+        }
+        startMillis = log.getLong();
+        rewind();
+    }
+
+    /**
+     * If set, every command written must be the next recorded command;
+     * otherwise an IOException is thrown.
+     *
+     * @param verify true to compare the commands with the recorded ones
+     */
+    public void setVerifyCommands(boolean verify) {
+        this.verifyCommands = verify;
+    }
+
+    /**
+     * Restarts the playback from the beginning of the log.
+     */
+    public synchronized void rewind() {
+        reportPosition = HEADER_SIZE;
+        commandPosition = HEADER_SIZE;
+    }
+
+    /**
+     * @return time when the session was recorded, in milliseconds since
+     * January 1, 1970 UTC
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    @Override
+    public void open() {
+        open = true;
+    }
+
+    @Override
+    public void writeLine(String line) throws IOException {
+        if (!open) {
+            throw new IOException("Transport closed");
+        }
+        if (verifyCommands) {
+            verify(line);
+        }
+    }
+
+    @Override
+    public void writeLines(List<String> lines) throws IOException {
+        for (String s : lines) {
+            writeLine(s);
+        }
+    }
+
+    @Override
+    public synchronized String readLine() {
+        if (!open) {
+            return null;
+        }
+        int p = next(reportPosition, RecordingTransport.REPORT);
+        if (p < 0) {
+            reportPosition = log.limit();
+            return null;
+        }
+        int length = log.getInt(p + LENGTH_OFFSET);
+        reportPosition = p + RECORD_HEADER_SIZE + length;
+        return decode(p + RECORD_HEADER_SIZE, length);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    private synchronized void verify(String line) throws IOException {
+        int p = next(commandPosition, RecordingTransport.COMMAND);
+        if (p < 0) {
+            throw new IOException("Command not in the session log: " + line);
+        }
+        int length = log.getInt(p + LENGTH_OFFSET);
+        commandPosition = p + RECORD_HEADER_SIZE + length;
+        String recorded = decode(p + RECORD_HEADER_SIZE, length);
+        if (!recorded.equals(line)) {
+            throw new IOException("Command differs from the session log: \"" + line + "\" instead of \"" + recorded + "\"");
+        }
+    }
+
+    /**
+     * @return position of the next record of the given direction, starting
+     * at p, or -1 if there is none
+     */
+    private int next(int p, byte direction) {
+        while (p + RECORD_HEADER_SIZE <= log.limit()) {
+            int length = log.getInt(p + LENGTH_OFFSET);
+            if (log.get(p) == direction) {
+                return (p + RECORD_HEADER_SIZE + length <= log.limit()) ? p : -1;
+            }
+            p += RECORD_HEADER_SIZE + length;
+        }
+        return -1;
+    }
+
+    private String decode(int position, int length) {
+        ByteBuffer b = log.duplicate();
+        b.position(position);
+        b.limit(position + length);
+        return RecordingTransport.UTF8.decode(b).toString();
+    }
+
+    @Override
+    public String toString() {
+        return "replay:" + file.getName();
+    }
+}
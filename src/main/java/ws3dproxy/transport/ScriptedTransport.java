@@ -0,0 +1,138 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.transport;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import ws3dproxy.protocol.ResponseFramer;
+
+/**
+ * Answers every command with a canned report chosen by the verb of the
+ * command (e.g. "getcreaturestate"). Reports are produced in the writing
+ * thread, so there is neither a server nor a second thread involved: parsing
+ * and model updates can be measured on their own.
+ *
+ * A report may contain line separators ("\n") to simulate a report split in
+ * several lines. Reading when no report is pending returns null (end of
+ * stream) instead of blocking.
+ *
+ * Usage:
+ * <pre>
+ * ScriptedTransport t = new ScriptedTransport("Server ready");
+ * t.respond("getcreaturestate", "Creature_1 0 100 100 ...");
+ * Connection conn = new Connection(t);
+ * </pre>
+ */
+public class ScriptedTransport implements Transport {
+
+    private final String greeting;
+    private final Map<String, String> responses = new ConcurrentHashMap<String, String>();
+    private volatile String defaultResponse = ResponseFramer.ERROR_CODE + " Unknown command";
+    private final Queue<String> pending = new ArrayDeque<String>();
+    private volatile boolean open = false;
+    private long commands = 0;
+
+    /**
+     * @param greeting first line sent after opening, as the server does
+     */
+    public ScriptedTransport(String greeting) {
+        this.greeting = greeting;
+    }
+
+    /**
+     * Sets the report of the commands with the given verb.
+     *
+     * @param verb first token of the command
+     * @param response the report
+     * @return this transport
+     */
+    public ScriptedTransport respond(String verb, String response) {
+        responses.put(verb, response);
+        return this;
+    }
+
+    /**
+     * Sets the report of the commands without a report of their own (by
+     * default an error report).
+     *
+     * @param response the report
+     * @return this transport
+     */
+    public ScriptedTransport setDefaultResponse(String response) {
+        this.defaultResponse = response;
+        return this;
+    }
+
+    @Override
+    public synchronized void open() {
+        open = true;
+        pending.add(greeting);
+    }
+
+    @Override
+    public synchronized void writeLine(String line) throws IOException {
+        if (!open) {
+            throw new IOException("Transport closed");
+        }
+        commands++;
+        String response = responses.get(String.valueOf(ResponseFramer.verbOf(line)));
+        if (response == null) {
+            response = defaultResponse;
+        }
+        for (String s : response.split("\n", -1)) {
+            pending.add(s);
+        }
+    }
+
+    @Override
+    public synchronized void writeLines(List<String> lines) throws IOException {
+        for (String s : lines) {
+            writeLine(s);
+        }
+    }
+
+    @Override
+    public synchronized String readLine() {
+        return open ? pending.poll() : null;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+        pending.clear();
+    }
+
+    /**
+     * @return number of commands written so far
+     */
+    public synchronized long getCommandCount() {
+        return commands;
+    }
+
+    @Override
+    public String toString() {
+        return "scripted";
+    }
+}
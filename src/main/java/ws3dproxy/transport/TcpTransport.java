@@ -0,0 +1,304 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.transport;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.List;
+import ws3dproxy.protocol.ResponseFramer;
+
+/**
+ * Network socket to the WorldServer3D server, either through the blocking
+ * socket streams or through a non-blocking channel (the caller is parked on
+ * a selector while waiting for a report).
+ *
+ * The socket is configured by {@link ConnectionOptions}; the system calls
+ * made on it are counted (see {@link #getCounters()}).
+ */
+public class TcpTransport implements Transport {
+
+    /**
+     * IP address or name of remote host (or localhost)
+     */
+    private final String host;
+    /**
+     * Port number to connect to server
+     */
+    private final int port;
+    /**
+     * If true, the blocking socket streams are used instead of the
+     * non-blocking channel.
+     */
+    private final boolean useBlockingStreams;
+    private final ConnectionOptions options;
+    private final IoCounters counters = new IoCounters();
+
+    private volatile Socket sock;
+    private PrintWriter out;
+    private BufferedReader in;
+    private volatile NioChannel channel;
+
+    /**
+     * @param host IP address or name of remote host (or localhost)
+     * @param port port number to connect to server
+     * @param useBlockingStreams true to use the blocking socket streams; false
+     * to use the non-blocking channel
+     */
+    public TcpTransport(String host, int port, boolean useBlockingStreams) {
+        this(host, port, useBlockingStreams, new ConnectionOptions());
+    }
+
+    /**
+     * @param host IP address or name of remote host (or localhost)
+     * @param port port number to connect to server
+     * @param useBlockingStreams true to use the blocking socket streams; false
+     * to use the non-blocking channel
+     * @param options options of the socket (copied)
+     */
+    public TcpTransport(String host, int port, boolean useBlockingStreams, ConnectionOptions options) {
+        this.host = host;
+        this.port = port;
+        this.useBlockingStreams = useBlockingStreams;
+        this.options = new ConnectionOptions(options);
+    }
+
+    @Override
+    public synchronized void open() throws IOException {
+        if (useBlockingStreams) {
+            Socket s = new Socket();
+            try {
+                configure(s, options);
+                s.connect(new InetSocketAddress(host, port));
+            } catch (IOException ex) {
+                s.close();
+                throw ex;
+            }
+            sock = s;
+            out = new PrintWriter(new CountingOutputStream(sock.getOutputStream(), counters), true);
+            in = new BufferedReader(new InputStreamReader(new CountingInputStream(sock.getInputStream(), counters)), 65535);
+        } else {
+            NioChannel c = NioChannel.open(host, port, options, counters);
+            //views of the channel for the callers of getWriter/getReader
+            out = new PrintWriter(new OutputStreamWriter(c.outputStream(), c.charset()), true);
+            in = new BufferedReader(c.reader());
+            channel = c;
+        }
+    }
+
+    /**
+     * Applies the options to a socket not connected yet (the buffer sizes
+     * must be set before connecting).
+     */
+    static void configure(Socket s, ConnectionOptions options) throws SocketException {
+        s.setTcpNoDelay(options.isTcpNoDelay());
+        s.setKeepAlive(options.isKeepAlive());
+        if (options.getSendBufferSize() > 0) {
+            s.setSendBufferSize(options.getSendBufferSize());
+        }
+        if (options.getReceiveBufferSize() > 0) {
+            s.setReceiveBufferSize(options.getReceiveBufferSize());
+        }
+    }
+
+    @Override
+    public void writeLine(String line) throws IOException {
+        if (channel != null) {
+            channel.writeLine(line);
+        } else {
+            out.println(line);
+            checkError();
+        }
+    }
+
+    @Override
+    public void writeLines(List<String> lines) throws IOException {
+        if (channel != null) {
+            channel.writeLines(lines);
+        } else {
+            //print() does not trigger the auto flush: one flush for all
+            for (String s : lines) {
+                out.print(s);
+                out.print(System.lineSeparator());
+            }
+            out.flush();
+            checkError();
+        }
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        return (channel != null) ? channel.readLine() : in.readLine();
+    }
+
+    /**
+     * Reads a text line into a framer. Through the non-blocking channel the
+     * bytes go from the receive buffer to the framer without a String.
+     *
+     * @param framer framer of the report being read
+     * @return true if the report is complete
+     * @throws IOException if the link is broken or closed by the server
+     */
+    @Override
+    public boolean readLine(ResponseFramer framer) throws IOException {
+        if (channel != null) {
+            return channel.readLine(framer);
+        }
+        String line = in.readLine();
+        if (line == null) {
+            throw new EOFException("Connection closed by server");
+        }
+        return framer.offer(line);
+    }
+
+    @Override
+    public boolean isOpen() {
+        if (channel != null) {
+            return channel.isOpen();
+        }
+        return sock != null && !sock.isClosed();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        if (sock != null) {
+            sock.close();
+        }
+    }
+
+    /**
+     * PrintWriter swallows the exceptions of the socket stream.
+     */
+    private void checkError() throws IOException {
+        if (out.checkError()) {
+            throw new IOException("Error writing to " + this);
+        }
+    }
+
+    /**
+     * Through the non-blocking channel, the writer is a view of the channel:
+     * what it prints is written when it is flushed (a println flushes).
+     *
+     * @return the writer or null if not open
+     */
+    public PrintWriter getWriter() {
+        return out;
+    }
+
+    /**
+     * Through the non-blocking channel, the reader is a view of the channel
+     * that parks the caller until a line arrives; it takes the lines one at a
+     * time, so it does not hold bytes of the next report.
+     *
+     * @return the reader or null if not open
+     */
+    public BufferedReader getReader() {
+        return in;
+    }
+
+    /**
+     * @return options of the socket
+     */
+    public ConnectionOptions getOptions() {
+        return new ConnectionOptions(options);
+    }
+
+    /**
+     * @return counters of the system calls made on the socket, since the
+     * transport was created (across reconnections)
+     */
+    public IoCounters getCounters() {
+        return counters;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + port;
+    }
+
+    /**
+     * Counts the writes to the socket stream, each of which is a system call.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private final IoCounters counters;
+
+        CountingOutputStream(OutputStream out, IoCounters counters) {
+            super(out);
+            this.counters = counters;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            counters.wrote(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            counters.wrote(len);
+        }
+    }
+
+    /**
+     * Counts the reads from the socket stream, each of which is a system call.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private final IoCounters counters;
+
+        CountingInputStream(InputStream in, IoCounters counters) {
+            super(in);
+            this.counters = counters;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            counters.read((b < 0) ? 0 : 1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            counters.read(n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.transport;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.List;
+import ws3dproxy.protocol.ResponseFramer;
+
+/**
+ * The line-oriented link between a {@link ws3dproxy.Connection} and the
+ * server: commands are written as text lines and reports are read back as
+ * text lines. Framing of the reports is done by the connection.
+ *
+ * Implementations: {@link TcpTransport} (the WorldServer3D socket),
+ * {@link QueueTransport} (in-memory, served by another thread) and
+ * {@link ScriptedTransport} (canned reports, no server at all).
+ * Decorators such as {@link RecordingTransport} wrap one of these; use
+ * {@link #unwrap()} to reach the transport that carries the lines.
+ *
+ * Writes may be called by one thread while another one is waiting in
+ * {@link #readLine()}.
+ */
+public interface Transport {
+
+    /**
+     * Establishes the link. The server greeting is the first line to be read.
+     *
+     * @throws IOException if the server is unreachable
+     */
+    void open() throws IOException;
+
+    /**
+     * Writes a text line (the line separator is appended).
+     *
+     * @param line text to be sent
+     * @throws IOException if the link is broken
+     */
+    void writeLine(String line) throws IOException;
+
+    /**
+     * Writes several text lines at once, e.g. in a single socket write.
+     *
+     * @param lines texts to be sent
+     * @throws IOException if the link is broken
+     */
+    void writeLines(List<String> lines) throws IOException;
+
+    /**
+     * Reads a text line, waiting until one is available.
+     *
+     * @return the line without the line terminator, or null if the link was
+     * closed by the server
+     * @throws IOException if the link is broken
+     */
+    String readLine() throws IOException;
+
+    /**
+     * Reads a text line into the framer of the report being read. By default
+     * the line is read as a String; {@link TcpTransport} hands the bytes
+     * over without one.
+     *
+     * @param framer framer of the report being read
+     * @return true if the report is complete
+     * @throws IOException if the link is broken or closed by the server
+     */
+    default boolean readLine(ResponseFramer framer) throws IOException {
+        String line = readLine();
+        if (line == null) {
+            throw new EOFException("Connection closed by server");
+        }
+        return framer.offer(line);
+    }
+
+    /**
+     * @return the transport that carries the lines: this one, or the one
+     * wrapped by a decorator such as {@link RecordingTransport}
+     */
+    default Transport unwrap() {
+        return this;
+    }
+
+    /**
+     * @return true if the link is open
+     */
+    boolean isOpen();
+
+    /**
+     * Closes the link. A thread waiting in {@link #readLine()} is woken up.
+     *
+     * @throws IOException if the link can not be closed
+     */
+    void close() throws IOException;
+}
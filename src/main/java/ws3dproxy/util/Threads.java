@@ -0,0 +1,70 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.util;
+
+/**
+ * Creates the background threads of the library: the I/O threads of the
+ * connections, the threads of the gateway and of the local server, the
+ * resources generator. Agents may use it as well for their own loops.
+ *
+ * This is the Java 8 version: platform daemon threads. On Java 21 and later
+ * the multi-release JAR holds a version that creates virtual threads instead
+ * (unless the system property {@value #PLATFORM_PROPERTY} is "true"), so that
+ * thousands of agent loops do not need a platform thread each.
+ */
+public final class Threads {
+
+    /**
+     * System property that keeps platform threads on Java 21.
+     */
+    public static final String PLATFORM_PROPERTY = "ws3dproxy.platformThreads";
+
+    private Threads() {
+    }
+
+    /**
+     * @return true if the threads created are virtual threads
+     */
+    public static boolean isVirtual() {
+        return false;
+    }
+
+    /**
+     * Creates a thread that does not keep the JVM alive.
+     *
+     * @param task what the thread runs
+     * @param name name of the thread
+     * @return the thread, not started
+     */
+    public static Thread newThread(Runnable task, String name) {
+        Thread t = new Thread(task, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    /**
+     * Creates and starts a thread that does not keep the JVM alive.
+     *
+     * @param task what the thread runs
+     * @param name name of the thread
+     * @return the thread, started
+     */
+    public static Thread start(Runnable task, String name) {
+        Thread t = newThread(task, name);
+        t.start();
+        return t;
+    }
+}
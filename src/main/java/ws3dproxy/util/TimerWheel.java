@@ -0,0 +1,252 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timer wheel: a single thread expires any number of timeouts with a
+ * resolution of one tick. Scheduling and cancelling cost O(1) and never
+ * block, so a timeout can be armed around every command even when almost all
+ * of them are cancelled a few microseconds later.
+ *
+ * The thread of the wheel (see {@link Threads}) sleeps until the next bucket
+ * that holds a timeout, and for as long as nothing is scheduled: an idle
+ * wheel does not wake up every tick. The tasks run on that thread: they must
+ * be short.
+ */
+public class TimerWheel {
+
+    /**
+     * A scheduled task.
+     */
+    public static final class Timeout {
+
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private long rounds;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return true if the task will not run; false if it has already run
+         * (or is running)
+         */
+        public boolean cancel() {
+            return state.compareAndSet(WAITING, CANCELLED) || state.get() == CANCELLED;
+        }
+
+        /**
+         * @return true if the task has run (or is running)
+         */
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+    }
+
+    private static volatile TimerWheel shared;
+
+    private final long tickNanos;
+    private final Timeout[] buckets;
+    private final int mask;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<Timeout>();
+    private final long start;
+    private long tick = 0;
+    /**
+     * Timeouts in the buckets (cancelled ones included, until their bucket
+     * is visited). Owned by the thread of the wheel.
+     */
+    private int count = 0;
+    /**
+     * When the thread of the wheel wakes up next, in nanoseconds since the
+     * start, or Long.MAX_VALUE when it sleeps until a timeout is scheduled.
+     */
+    private volatile long wakeAt = 0;
+    private final Thread thread;
+
+    /**
+     * Creates and starts a wheel.
+     *
+     * @param tickDuration resolution of the timeouts
+     * @param unit unit of the resolution
+     * @param ticksPerWheel number of buckets (rounded up to a power of 2)
+     * @param name name of the thread of the wheel
+     */
+    public TimerWheel(long tickDuration, TimeUnit unit, int ticksPerWheel, String name) {
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        this.tickNanos = Math.max(1, unit.toNanos(tickDuration));
+        this.buckets = new Timeout[size];
+        this.mask = size - 1;
+        this.start = System.nanoTime();
+        thread = Threads.start(new Runnable() {
+            @Override
+            public void run() {
+                work();
+            }
+        }, name);
+    }
+
+    /**
+     * @return the wheel shared by all connections (10 ms ticks)
+     */
+    public static TimerWheel getShared() {
+        TimerWheel w = shared;
+        if (w == null) {
+            synchronized (TimerWheel.class) {
+                w = shared;
+                if (w == null) {
+                    w = new TimerWheel(10, TimeUnit.MILLISECONDS, 512, "WS3D-timer");
+                    shared = w;
+                }
+            }
+        }
+        return w;
+    }
+
+    /**
+     * Runs a task once the delay has elapsed, unless it is cancelled before.
+     *
+     * @param task task to be run on the thread of the wheel
+     * @param delay the delay
+     * @param unit unit of the delay
+     * @return handle to cancel the task
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout t = new Timeout(task, System.nanoTime() - start + unit.toNanos(delay));
+        added.add(t);
+        if (t.deadline < wakeAt) {
+            LockSupport.unpark(thread);
+        }
+        return t;
+    }
+
+    private void work() {
+        while (true) {
+            long now = System.nanoTime() - start;
+            if (count == 0) {
+                //nothing in the buckets: the ticks slept through are skipped
+                tick = Math.max(tick, now / tickNanos);
+            }
+            transferAdded();
+            long deadline;
+            while ((deadline = (tick + 1) * tickNanos) <= now) {
+                expire((int) (tick & mask), deadline);
+                tick++;
+            }
+            long wake = nextWakeUp();
+            wakeAt = wake;
+            //a timeout scheduled before wakeAt was published may not unpark
+            if (!added.isEmpty()) {
+                continue;
+            }
+            if (wake == Long.MAX_VALUE) {
+                LockSupport.park(this);
+            } else {
+                long left = wake - (System.nanoTime() - start);
+                if (left > 0) {
+                    LockSupport.parkNanos(this, left);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the end of the next tick whose bucket holds a timeout, or
+     * Long.MAX_VALUE if the buckets are empty
+     */
+    private long nextWakeUp() {
+        if (count == 0) {
+            return Long.MAX_VALUE;
+        }
+        for (int k = 0; k < buckets.length; k++) {
+            if (buckets[(int) ((tick + k) & mask)] != null) {
+                return (tick + k + 1) * tickNanos;
+            }
+        }
+        return (tick + 1) * tickNanos;
+    }
+
+    /**
+     * Moves the newly scheduled timeouts into their buckets.
+     */
+    private void transferAdded() {
+        Timeout t;
+        while ((t = added.poll()) != null) {
+            if (t.state.get() == Timeout.CANCELLED) {
+                continue;
+            }
+            //a timeout already due goes into the current bucket
+            long due = Math.max(tick, t.deadline / tickNanos);
+            t.rounds = (due - tick) / buckets.length;
+            int i = (int) (due & mask);
+            t.next = buckets[i];
+            buckets[i] = t;
+            count++;
+        }
+    }
+
+    private void expire(int bucket, long now) {
+        Timeout prev = null;
+        Timeout t = buckets[bucket];
+        while (t != null) {
+            Timeout next = t.next;
+            boolean remove;
+            if (t.state.get() == Timeout.CANCELLED) {
+                remove = true;
+            } else if (t.rounds <= 0 && t.deadline <= now) {
+                remove = true;
+                if (t.state.compareAndSet(Timeout.WAITING, Timeout.EXPIRED)) {
+                    try {
+                        t.task.run();
+                    } catch (RuntimeException ex) {
+                        Logger.logException(TimerWheel.class.getName(), ex);
+                    }
+                }
+            } else {
+                remove = false;
+                t.rounds--;
+            }
+            if (remove) {
+                if (prev == null) {
+                    buckets[bucket] = next;
+                } else {
+                    prev.next = next;
+                }
+                t.next = null;
+                count--;
+            } else {
+                prev = t;
+            }
+            t = next;
+        }
+    }
+}
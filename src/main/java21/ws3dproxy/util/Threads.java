@@ -0,0 +1,73 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.util;
+
+/**
+ * Creates the background threads of the library: the I/O threads of the
+ * connections, the threads of the gateway and of the local server, the
+ * resources generator. Agents may use it as well for their own loops.
+ *
+ * This is the Java 21 version, picked from the multi-release JAR: virtual
+ * threads, unless the system property {@value #PLATFORM_PROPERTY} is "true".
+ * A virtual thread blocked on a socket stream, a lock of the library or
+ * {@link Thread#sleep(long)} releases its carrier thread.
+ */
+public final class Threads {
+
+    /**
+     * System property that keeps platform threads on Java 21.
+     */
+    public static final String PLATFORM_PROPERTY = "ws3dproxy.platformThreads";
+
+    private static final boolean VIRTUAL = !Boolean.getBoolean(PLATFORM_PROPERTY);
+
+    private Threads() {
+    }
+
+    /**
+     * @return true if the threads created are virtual threads
+     */
+    public static boolean isVirtual() {
+        return VIRTUAL;
+    }
+
+    /**
+     * Creates a thread that does not keep the JVM alive.
+     *
+     * @param task what the thread runs
+     * @param name name of the thread
+     * @return the thread, not started
+     */
+    public static Thread newThread(Runnable task, String name) {
+        if (VIRTUAL) {
+            return Thread.ofVirtual().name(name).unstarted(task);
+        }
+        return Thread.ofPlatform().name(name).daemon(true).unstarted(task);
+    }
+
+    /**
+     * Creates and starts a thread that does not keep the JVM alive.
+     *
+     * @param task what the thread runs
+     * @param name name of the thread
+     * @return the thread, started
+     */
+    public static Thread start(Runnable task, String name) {
+        Thread t = newThread(task, name);
+        t.start();
+        return t;
+    }
+}
@@ -0,0 +1,86 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import ws3dproxy.transport.QueueTransport;
+
+/**
+ * Every command submitted to the I/O thread of a connection is completed,
+ * even when it races with the shutdown of the thread.
+ */
+public class AsyncDispatcherTest {
+
+    @Test
+    public void submitRacingShutdownIsCompleted() throws Exception {
+        final CountDownLatch checked = new CountDownLatch(1);
+        final CountDownLatch shutDown = new CountDownLatch(1);
+        //the submitter is held between its first look at the dispatcher and
+        //the queue, as if it were preempted there
+        Connection conn = new Connection(new QueueTransport()) {
+            @Override
+            public QueueMetrics getQueueMetrics() {
+                if (Thread.currentThread().getName().equals("submitter") && checked.getCount() > 0) {
+                    checked.countDown();
+                    try {
+                        shutDown.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.getQueueMetrics();
+            }
+        };
+        final AsyncDispatcher dispatcher = new AsyncDispatcher(conn);
+        final CompletableFuture<CompletableFuture<String>> submitted = new CompletableFuture<CompletableFuture<String>>();
+        Thread submitter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                submitted.complete(dispatcher.submit("getsimulpars ", true));
+            }
+        }, "submitter");
+        submitter.start();
+        assertTrue(checked.await(5, TimeUnit.SECONDS));
+        dispatcher.shutdown();
+        joinIoThread(conn);
+        shutDown.countDown();
+
+        CompletableFuture<String> future = submitted.get(5, TimeUnit.SECONDS);
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("completed with a report after the shutdown");
+        } catch (ExecutionException ex) {
+            //closed
+        } catch (TimeoutException ex) {
+            fail("never completed");
+        }
+    }
+
+    private static void joinIoThread(Connection conn) throws InterruptedException {
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().equals("WS3D-IO " + conn)) {
+                t.join(5000);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy;
+
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import ws3dproxy.model.CreatureState;
+import ws3dproxy.model.Leaflet;
+import ws3dproxy.model.Thing;
+import ws3dproxy.protocol.ReportBuffer;
+
+/**
+ * Creature states decoded from the bytes of "getcreaturestate" reports.
+ */
+public class CreatureStateDecodingTest {
+
+    private static String creature(String name, String leaflets) {
+        return name + " 3 100.5 200.25 40.0 90.0 1 0.0 1.0 875.5 0.0 0.0 12 80.5 180.25 120.5 220.25 Red NONE 0 " + leaflets;
+    }
+
+    private static String thing(String name, int occluded) {
+        return "|| " + name + " 3 " + occluded + " 10.0 20.0 30.0 40.0 0.0 1.0 0.0 0.0 Red 15.0 35.0 ";
+    }
+
+    private static CreatureState decode(String report) {
+        ReportBuffer r = new ReportBuffer();
+        r.append(report);
+        return CommandUtility.decodeCreatureState(r);
+    }
+
+    @Test
+    public void withoutLeafletsOrThings() {
+        CreatureState cs = decode(creature("Creature_Empty", "0 0 ") + "0");
+        assertEquals("Creature_Empty", cs.getNameID());
+        assertEquals("3", cs.getIndex());
+        assertEquals(100.5, cs.getPosition().getX(), 0);
+        assertEquals(200.25, cs.getPosition().getY(), 0);
+        assertEquals(875.5, cs.getFuel(), 0);
+        assertEquals(0, cs.hasLeaflet());
+        assertTrue(cs.getLeaflets().isEmpty());
+        assertTrue(cs.getThingsInCameraFrustrum().isEmpty());
+    }
+
+    @Test
+    public void withLeafletsAndThings() {
+        String leaflets = "1 2 1627 2 Red 2 0 Blue 1 1 10 false 1628 1 Green 3 3 20 true ";
+        CreatureState cs = decode(creature("Creature_Full", leaflets) + "3 " + thing("Jewel_1", 0) + thing("Jewel_2", 1) + thing("Food_3", 0));
+        assertEquals(1, cs.hasLeaflet());
+        List<Leaflet> l = cs.getLeaflets();
+        assertEquals(2, l.size());
+        Leaflet first = l.get(0).getID() == 1627L ? l.get(0) : l.get(1);
+        assertEquals(10, first.getPayment());
+        assertEquals(2, first.getTotalNumberOfType("Red"));
+        assertEquals(1, first.getCollectedNumberOfType("Blue"));
+        //the occluded thing is in the camera frustrum only
+        assertEquals(3, cs.getThingsInCameraFrustrum().size());
+        assertEquals(2, cs.getThingsInVision().size());
+        for (Thing t : cs.getThingsInVision()) {
+            assertTrue(t.getName(), !t.getName().equals("Jewel_2"));
+        }
+    }
+
+    @Test
+    public void eachStateKeepsItsLeaflets() {
+        CreatureState a = decode(creature("Creature_A", "1 1 1700 1 Red 1 0 5 false ") + "0");
+        CreatureState b = decode(creature("Creature_B", "0 0 ") + "0");
+        assertEquals(1, a.getLeaflets().size());
+        assertEquals(0, b.getLeaflets().size());
+    }
+}
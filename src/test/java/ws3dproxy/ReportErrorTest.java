@@ -0,0 +1,80 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Test;
+import ws3dproxy.protocol.ReportFormats;
+import ws3dproxy.protocol.ReportSchema;
+import ws3dproxy.transport.ScriptedTransport;
+
+/**
+ * A malformed report reaches the caller of {@link CommandUtility} as a
+ * {@link CommandExecException}, in both decoding modes.
+ */
+public class ReportErrorTest {
+
+    @After
+    public void restoreMode() {
+        ReportFormats.setMode(ReportSchema.Mode.STRICT);
+    }
+
+    private static Connection connection(String verb, String report) {
+        Connection conn = new Connection(new ScriptedTransport("Server ready").respond(verb, report));
+        conn.open();
+        return conn;
+    }
+
+    private static String errorOf(Connection conn) {
+        try {
+            CommandUtility.sendGetSimulationParameters(conn, ReportFormats.recordDecoder(ReportFormats.SIMULATION_PARAMETERS));
+        } catch (CommandExecException ex) {
+            return ex.getMessage();
+        }
+        fail("no error");
+        return null;
+    }
+
+    @Test
+    public void malformedNumber() {
+        for (ReportSchema.Mode mode : ReportSchema.Mode.values()) {
+            ReportFormats.setMode(mode);
+            String message = errorOf(connection("getsimulpars", "800 6x0 100 200"));
+            assertEquals(mode.toString(), "Bad report of \"getsimulpars\": Bad simulation parameters.height at token 1: \"6x0\"", message);
+        }
+    }
+
+    @Test
+    public void missingField() {
+        for (ReportSchema.Mode mode : ReportSchema.Mode.values()) {
+            ReportFormats.setMode(mode);
+            String message = errorOf(connection("getsimulpars", "800 600 100"));
+            assertTrue(mode + ": " + message, message.contains("Missing simulation parameters.delivery spot Y"));
+        }
+    }
+
+    @Test
+    public void errorReport() {
+        for (ReportSchema.Mode mode : ReportSchema.Mode.values()) {
+            ReportFormats.setMode(mode);
+            String message = errorOf(connection("getsimulpars", "@@@ Invalid command"));
+            assertEquals("@@@ Invalid command", message);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.model;
+
+import java.util.concurrent.CompletableFuture;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import ws3dproxy.CommandUtility;
+import ws3dproxy.Connection;
+import ws3dproxy.transport.QueueTransport;
+
+/**
+ * The states of a creature are applied in the order they were requested,
+ * whatever the order their reports arrive in.
+ */
+public class CreatureStateOrderTest {
+
+    private static String state(double x) {
+        return "Creature_77 77 " + x + " 200.0 40.0 90.0 1 0.0 1.0 875.5 0.0 0.0 12 80.5 180.25 120.5 220.25 Red NONE 0 0 0 0";
+    }
+
+    private static void awaitBlocked(Thread t) throws InterruptedException {
+        while (t.getState() != Thread.State.WAITING && t.getState() != Thread.State.BLOCKED) {
+            assertTrue("finished before the server replied", t.isAlive());
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void asyncReportDelayedPastSyncUpdate() throws Exception {
+        QueueTransport transport = new QueueTransport();
+        QueueTransport server = transport.getPeer();
+        server.writeLine("Server ready");
+        server.writeLine(state(100));
+        Connection conn = new Connection(transport);
+        conn.open();
+        try {
+            final Creature c = Creature.getInstance(CommandUtility.getCreatureState(conn, "Creature_77"), conn);
+            server.readLine();
+
+            CompletableFuture<Creature> async = c.updateStateAsync();
+            assertTrue(server.readLine().startsWith("getcreaturestate"));
+            //requested after the async update, but waits for its report
+            Thread sync = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    c.updateState();
+                }
+            });
+            sync.start();
+            awaitBlocked(sync);
+
+            server.writeLine(state(200));
+            async.get();
+            assertTrue(server.readLine().startsWith("getcreaturestate"));
+            server.writeLine(state(300));
+            sync.join();
+            assertEquals(300, c.getPosition().getX(), 0);
+        } finally {
+            conn.close();
+        }
+    }
+}
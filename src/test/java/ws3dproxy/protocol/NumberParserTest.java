@@ -0,0 +1,160 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * {@link NumberParser} against {@link Double#parseDouble(String)} and
+ * {@link Long#parseLong(String)}: the same bits for every input, the same
+ * {@link NumberFormatException} for the invalid ones.
+ */
+public class NumberParserTest {
+
+    private static final String[] DOUBLES = {
+        "0", "0.0", "-0.0", "+0.0", "00012.5000", "1", "-1", "+1.5", ".5", "5.", "-.5",
+        "401.9960653492687", "-283.10427937219686", "1.0E-4", "1.0e-4", "1.5E3", "1.5E+3", "-2.5E-3",
+        "0.1", "0.2", "0.3", "3.141592653589793", "2.718281828459045", "1.7976931348623157E308",
+        "4.9E-324", "2.2250738585072014E-308", "2.225073858507201E-308", "1.0E-320", "5E-324",
+        "2.4703282292062327E-324", "2.4703282292062328E-324", "1.0E-400", "1.0E400", "-1.0E400",
+        "9007199254740993", "9007199254740992", "18014398509481985", "123456789012345678",
+        "1234567890123456789", "12345678901234567890", "1.2345678901234567890123",
+        "0.30000000000000004", "100000000000000000000000", "1e22", "1e23", "8.98846567431158E307",
+        "0.000000000000000000000000000001", "7.2057594037927933E16", "9.999999999999999E22",
+        "NaN", "-Infinity", "Infinity", "1.5d", "1.5f"};
+
+    private static final String[] INVALID = {"", "-", "+", ".", "e5", "1e", "1e+", "1.5.5", "1,5", "abc", "1x5", "--1", "0x10"};
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void assertSameDouble(String s) {
+        byte[] b = bytes("<" + s + ">");
+        double expected = Double.parseDouble(s);
+        double actual = NumberParser.parseDouble(b, 1, b.length - 1);
+        assertEquals(s, Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual));
+    }
+
+    @Test
+    public void edgeCases() {
+        for (String s : DOUBLES) {
+            assertSameDouble(s);
+        }
+    }
+
+    @Test
+    public void invalidNumbers() {
+        for (String s : INVALID) {
+            byte[] b = bytes(s);
+            try {
+                NumberParser.parseDouble(b, 0, b.length);
+                fail("\"" + s + "\" parsed");
+            } catch (NumberFormatException ex) {
+                //as Double.parseDouble
+            }
+        }
+    }
+
+    @Test
+    public void shortestRepresentationsRoundTrip() {
+        //the way the server prints its doubles
+        Random random = new Random(20230);
+        for (int i = 0; i < 200000; i++) {
+            double v = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(30) - 10);
+            assertSameDouble(Double.toString(v));
+        }
+    }
+
+    @Test
+    public void randomBitsRoundTrip() {
+        //every exponent, subnormals included
+        Random random = new Random(20231);
+        for (int i = 0; i < 200000; i++) {
+            double v = Double.longBitsToDouble(random.nextLong());
+            if (!Double.isNaN(v)) {
+                assertSameDouble(Double.toString(v));
+            }
+        }
+    }
+
+    @Test
+    public void randomDigitsRoundTrip() {
+        //up to 25 digits, so that both the fast path and the fallback run
+        Random random = new Random(20232);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            sb.setLength(0);
+            if (random.nextBoolean()) {
+                sb.append('-');
+            }
+            int digits = 1 + random.nextInt(25);
+            int point = random.nextInt(digits + 1);
+            for (int k = 0; k < digits; k++) {
+                if (k == point) {
+                    sb.append('.');
+                }
+                sb.append((char) ('0' + random.nextInt(10)));
+            }
+            if (random.nextInt(4) == 0) {
+                sb.append('E').append(random.nextInt(700) - 350);
+            }
+            assertSameDouble(sb.toString());
+        }
+    }
+
+    @Test
+    public void halfwayCases() {
+        //exactly between two doubles: rounded to even
+        assertSameDouble("9007199254740993");
+        assertSameDouble("9007199254740995");
+        assertSameDouble("1.00000000000000011102230246251565404236316680908203125");
+        assertSameDouble("1.00000000000000033306690738754696212708950042724609375");
+    }
+
+    @Test
+    public void longsAndInts() {
+        String[] longs = {"0", "-0", "+7", "-7", "2147483647", "-2147483648", "2147483648", "999999999999999999",
+            "1000000000000000000", "9223372036854775807", "-9223372036854775808"};
+        for (String s : longs) {
+            byte[] b = bytes(s);
+            assertEquals(s, Long.parseLong(s), NumberParser.parseLong(b, 0, b.length));
+        }
+        byte[] b = bytes("-2147483648");
+        assertEquals(Integer.MIN_VALUE, NumberParser.parseInt(b, 0, b.length));
+        String[] invalid = {"", "-", "1.0", "9223372036854775808", "12a", "1e3"};
+        for (String s : invalid) {
+            b = bytes(s);
+            try {
+                NumberParser.parseLong(b, 0, b.length);
+                fail("\"" + s + "\" parsed");
+            } catch (NumberFormatException ex) {
+                //as Long.parseLong
+            }
+        }
+        b = bytes("2147483648");
+        try {
+            NumberParser.parseInt(b, 0, b.length);
+            fail("2147483648 parsed as an int");
+        } catch (NumberFormatException ex) {
+            //as Integer.parseInt
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.protocol;
+
+import java.nio.charset.StandardCharsets;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tokens of a report, read in place from its bytes.
+ */
+public class ReportBufferTest {
+
+    @Test
+    public void tokensAreSplitAtWhitespace() {
+        ReportBuffer r = new ReportBuffer();
+        r.append("  getall\t12 || Jewel_1  ");
+        assertEquals(4, r.tokenCount());
+        assertTrue(r.tokenEquals(0, "getall"));
+        assertTrue(r.tokenEquals(2, "||"));
+        assertFalse(r.tokenEquals(3, "Jewel_"));
+        assertEquals("Jewel_1", r.tokenString(3));
+        assertEquals(12, r.parseInt(1));
+    }
+
+    @Test
+    public void linesAreJoinedWithoutSeparator() {
+        ReportBuffer r = new ReportBuffer();
+        r.append("1 2 ");
+        r.append("3");
+        assertEquals("1 2 3", r.toString());
+        assertEquals(3, r.tokenCount());
+        assertEquals(3, r.parseInt(2));
+    }
+
+    @Test
+    public void lineBreakBetweenTokensBecomesASpace() {
+        ReportBuffer text = new ReportBuffer();
+        text.append("1 2");
+        text.append("3");
+        ReportBuffer bytes = new ReportBuffer();
+        byte[] b = "1 23".getBytes(StandardCharsets.US_ASCII);
+        bytes.append(b, 0, 3);
+        bytes.append(b, 3, 1);
+        for (ReportBuffer r : new ReportBuffer[]{text, bytes}) {
+            assertEquals("1 2 3", r.toString());
+            assertEquals(3, r.tokenCount());
+            assertEquals(2, r.parseInt(1));
+            assertEquals(3, r.parseInt(2));
+        }
+    }
+
+    @Test
+    public void bytesAndTextGiveTheSameTokens() {
+        String line = "Creature_1 0 100.5 -200.25 1.0E-4 NONE";
+        ReportBuffer text = new ReportBuffer();
+        text.append(line);
+        byte[] b = ("<" + line + ">").getBytes(StandardCharsets.US_ASCII);
+        ReportBuffer bytes = new ReportBuffer();
+        bytes.append(b, 1, line.length());
+        assertEquals(text.tokenCount(), bytes.tokenCount());
+        for (int i = 0; i < text.tokenCount(); i++) {
+            assertEquals(text.tokenString(i), bytes.tokenString(i));
+        }
+        assertEquals(-200.25, bytes.parseDouble(3), 0);
+        assertEquals(1.0E-4, bytes.parseDouble(4), 0);
+    }
+
+    @Test
+    public void manyTokens() {
+        ReportBuffer r = new ReportBuffer();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append(i).append(' ');
+        }
+        r.append(sb.toString());
+        assertEquals(5000, r.tokenCount());
+        assertEquals(4999L, r.parseLong(4999));
+    }
+
+    @Test
+    public void clearEmptiesTheBuffer() {
+        ReportBuffer r = new ReportBuffer();
+        r.append("1 2 3");
+        r.clear();
+        assertEquals(0, r.tokenCount());
+        assertEquals(0, r.length());
+        r.append("4");
+        assertEquals("4", r.toString());
+    }
+
+    @Test
+    public void copyOutlivesTheReuseOfTheBuffer() {
+        ReportBuffer r = new ReportBuffer();
+        StringBuilder sb = new StringBuilder("300");
+        for (int i = 0; i < 300; i++) {
+            sb.append(" Jewel_").append(i);
+        }
+        r.append(sb.toString());
+        ReportBuffer copy = new ReportBuffer();
+        copy.append("stale tokens");
+        r.copyTo(copy);
+        r.clear();
+        r.append("1 next");
+        assertEquals(301, copy.tokenCount());
+        assertEquals(300, copy.parseInt(0));
+        assertEquals("Jewel_299", copy.tokenString(300));
+        assertEquals(sb.toString(), copy.toString());
+    }
+
+    @Test
+    public void lastLineIsTheOneJustAppended() {
+        ReportBuffer r = new ReportBuffer();
+        r.append("2 Jewel_1");
+        r.append("Jewel_2 Red".getBytes(StandardCharsets.US_ASCII), 0, 11);
+        assertEquals(2, r.lineCount());
+        assertEquals("Jewel_2 Red", r.lastLine());
+        r.clear();
+        assertEquals(0, r.lineCount());
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void textIsNotANumber() {
+        ReportBuffer r = new ReportBuffer();
+        r.append("Red");
+        r.parseDouble(0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void missingToken() {
+        ReportBuffer r = new ReportBuffer();
+        r.append("1 2");
+        r.parseInt(2);
+    }
+}
@@ -0,0 +1,116 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Errors of the STRICT and FAST decoding modes: both report a missing or
+ * malformed field as a {@link ReportFormatException} naming it.
+ */
+public class ReportSchemaTest {
+
+    private static final ReportSchema SCHEMA = new ReportSchema("test");
+    private static final ReportSchema.TextField NAME = SCHEMA.textField("name");
+    private static final ReportSchema.IntField COUNT = SCHEMA.intField("count");
+    private static final ReportSchema.LongField ID = SCHEMA.longField("ID");
+    private static final ReportSchema.DoubleField X = SCHEMA.doubleField("X");
+    private static final ReportSchema.FlagField DONE = SCHEMA.flagField("done");
+
+    private static ReportBuffer report(String text) {
+        ReportBuffer r = new ReportBuffer();
+        r.append(text);
+        return r;
+    }
+
+    private static ReportFormatException decodeError(String text, ReportSchema.Mode mode) {
+        try {
+            SCHEMA.decode(report(text), 0, SCHEMA.newRecord(), mode);
+        } catch (ReportFormatException ex) {
+            return ex;
+        }
+        fail(mode + " decoded \"" + text + "\"");
+        return null;
+    }
+
+    @Test
+    public void bothModesDecodeTheSameValues() {
+        for (ReportSchema.Mode mode : ReportSchema.Mode.values()) {
+            ReportSchema.Record r = SCHEMA.newRecord();
+            ReportBuffer b = report("|| Jewel_1 -7 1627 -1.5E-3 true rest");
+            assertEquals(mode.toString(), 6, SCHEMA.decode(b, 1, r, mode));
+            assertEquals("Jewel_1", r.get(NAME));
+            assertEquals(-7, r.get(COUNT));
+            assertEquals(1627L, r.get(ID));
+            assertEquals(-1.5E-3, r.get(X), 0);
+            assertTrue(r.get(DONE));
+        }
+    }
+
+    @Test
+    public void separatorIsSkipped() {
+        ReportSchema s = new ReportSchema("separated").separatedBy("||");
+        ReportSchema.IntField v = s.intField("value");
+        ReportSchema.Record r = s.newRecord();
+        for (ReportSchema.Mode mode : ReportSchema.Mode.values()) {
+            assertEquals(2, s.decode(report("|| 5"), 0, r, mode));
+            assertEquals(5, r.get(v));
+            assertEquals(1, s.decode(report("6"), 0, r, mode));
+            assertEquals(6, r.get(v));
+        }
+    }
+
+    @Test
+    public void malformedNumberNamesTheField() {
+        for (ReportSchema.Mode mode : ReportSchema.Mode.values()) {
+            ReportFormatException ex = decodeError("Jewel_1 7 1627 1x5 true", mode);
+            assertEquals(mode.toString(), "test.X", ex.getField());
+            assertEquals(3, ex.getToken());
+            assertEquals("Bad test.X at token 3: \"1x5\"", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void malformedIntNamesTheField() {
+        for (ReportSchema.Mode mode : ReportSchema.Mode.values()) {
+            ReportFormatException ex = decodeError("Jewel_1 seven 1627 1.5 true", mode);
+            assertEquals(mode.toString(), "test.count", ex.getField());
+            assertEquals(1, ex.getToken());
+        }
+    }
+
+    @Test
+    public void missingFieldIsNamed() {
+        for (ReportSchema.Mode mode : ReportSchema.Mode.values()) {
+            ReportFormatException ex = decodeError("Jewel_1 7", mode);
+            assertEquals(mode.toString(), "test.ID", ex.getField());
+            assertEquals("Missing test.ID: the report has 2 tokens", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void flagIsNotChecked() {
+        //any token other than "true" is false, in both modes
+        for (ReportSchema.Mode mode : ReportSchema.Mode.values()) {
+            ReportSchema.Record r = SCHEMA.newRecord();
+            SCHEMA.decode(report("Jewel_1 7 1627 1.5 1"), 0, r, mode);
+            assertEquals(false, r.get(DONE));
+        }
+    }
+}
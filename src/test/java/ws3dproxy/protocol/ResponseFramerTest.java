@@ -0,0 +1,194 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.StringTokenizer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Framing of multi-line reports: a report ends when its structure is
+ * complete, wherever the server breaks its lines.
+ */
+public class ResponseFramerTest {
+
+    private static final String CREATURE = "Creature_1 0 100.5 200.25 40.0 90.0 1 0.0 1.0 1000.0 0.0 0.0 0 80.5 180.25 120.5 220.25 Red NONE 0 ";
+    private static final String LEAFLET = "1627 2 Jewel_Red 2 0 Jewel_Blue 1 1 10 false ";
+
+    private static String thing(int k) {
+        return "|| Jewel_" + k + " 3 0 10.0 20.0 30.0 40.0 0.0 1.0 0.0 0.0 Red 15.0 35.0 ";
+    }
+
+    private static String creatureState(int leaflets, int things) {
+        StringBuilder sb = new StringBuilder(CREATURE);
+        if (leaflets == 0) {
+            sb.append("0 0 ");
+        } else {
+            sb.append("1 ").append(leaflets).append(' ');
+            for (int l = 0; l < leaflets; l++) {
+                sb.append(LEAFLET);
+            }
+        }
+        sb.append(things).append(' ');
+        for (int k = 0; k < things; k++) {
+            sb.append(thing(k));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Feeds the report one token per line, and checks that it is complete
+     * with its last token only.
+     */
+    private static void assertFramedAtLastToken(String command, String report) {
+        ResponseFramer framer = new ResponseFramer(command);
+        String[] tokens = report.trim().split(" ");
+        for (int i = 0; i < tokens.length; i++) {
+            boolean complete = framer.offer(tokens[i] + " ");
+            assertEquals("token " + i + " of " + tokens.length, i == tokens.length - 1, complete);
+        }
+        assertEquals(tokens.length, framer.getReport().tokenCount());
+    }
+
+    @Test
+    public void singleLineReportEndsWithItsLine() {
+        ResponseFramer framer = new ResponseFramer("getsack 0");
+        assertTrue(framer.offer("1 2 0 1 0 0 0 0"));
+        assertEquals("1 2 0 1 0 0 0 0", framer.getResponse());
+    }
+
+    @Test
+    public void emptyLineIsAWholeReport() {
+        ResponseFramer framer = new ResponseFramer("checkXY 10 10");
+        assertTrue(framer.offer(""));
+        assertEquals("", framer.getResponse());
+    }
+
+    @Test
+    public void errorReportEndsWithItsLine() {
+        ResponseFramer framer = new ResponseFramer("getcreaturestate Creature_9");
+        assertTrue(framer.offer("@@@ Creature not found: Creature_9"));
+        assertTrue(framer.isError());
+    }
+
+    @Test
+    public void creatureStateWithoutLeafletsOrThings() {
+        assertFramedAtLastToken("getcreaturestate Creature_1", creatureState(0, 0));
+    }
+
+    @Test
+    public void creatureStateWithThings() {
+        assertFramedAtLastToken("getcreaturestate Creature_1", creatureState(0, 3));
+    }
+
+    @Test
+    public void creatureStateWithLeaflets() {
+        assertFramedAtLastToken("getcreaturestate Creature_1", creatureState(3, 0));
+    }
+
+    @Test
+    public void creatureStateWithLeafletsAndThings() {
+        assertFramedAtLastToken("getcreaturestate Creature_1", creatureState(2, 5));
+    }
+
+    @Test
+    public void creatureStateSplitAtArbitraryLines() {
+        String report = creatureState(2, 4);
+        ResponseFramer framer = new ResponseFramer("getcreaturestate Creature_1");
+        //broken after a space, which stays at the end of the first line
+        int half = report.indexOf(' ', report.length() / 2) + 1;
+        assertFalse(framer.offer(report.substring(0, half)));
+        assertFalse(framer.offer(""));
+        assertTrue(framer.offer(report.substring(half)));
+        assertEquals(report, framer.getResponse());
+    }
+
+    @Test
+    public void creatureStateSplitBetweenTwoTokens() {
+        String report = creatureState(2, 4);
+        ResponseFramer framer = new ResponseFramer("getcreaturestate Creature_1");
+        //the line break replaces the space between two tokens
+        int space = report.indexOf(' ', report.length() / 2);
+        assertFalse(framer.offer(report.substring(0, space)));
+        assertTrue(framer.offer(report.substring(space + 1)));
+        assertEquals(report, framer.getResponse());
+        StringTokenizer st = new StringTokenizer(framer.getResponse());
+        ReportBuffer r = framer.getReport();
+        assertEquals(st.countTokens(), r.tokenCount());
+        for (int i = 0; st.hasMoreTokens(); i++) {
+            assertEquals(st.nextToken(), r.tokenString(i));
+        }
+    }
+
+    @Test
+    public void allThingsWithoutThings() {
+        assertFramedAtLastToken("getall", "0");
+    }
+
+    @Test
+    public void allThingsWithThings() {
+        StringBuilder sb = new StringBuilder("4 ");
+        for (int k = 0; k < 4; k++) {
+            sb.append(thing(k));
+        }
+        assertFramedAtLastToken("getall", sb.toString());
+    }
+
+    @Test
+    public void allThingsWithoutSeparators() {
+        StringBuilder sb = new StringBuilder("2 ");
+        for (int k = 0; k < 2; k++) {
+            sb.append(thing(k).substring(3));
+        }
+        assertFramedAtLastToken("getall", sb.toString());
+    }
+
+    @Test
+    public void bytesAreFramedAsText() {
+        String report = creatureState(1, 2);
+        byte[] b = ("xx" + report + "yy").getBytes(StandardCharsets.US_ASCII);
+        ResponseFramer framer = new ResponseFramer("getcreaturestate Creature_1");
+        assertTrue(framer.offer(b, 2, report.length()));
+        assertEquals(report, framer.getResponse());
+    }
+
+    @Test
+    public void malformedCountEndsTheReport() {
+        ResponseFramer framer = new ResponseFramer("getall");
+        assertTrue(framer.offer("x"));
+    }
+
+    @Test
+    public void framerIsReusedAfterReset() {
+        ResponseFramer framer = new ResponseFramer("getall");
+        assertTrue(framer.offer("1 " + thing(0)));
+        framer.reset("getcreaturestate Creature_1");
+        assertFalse(framer.isComplete());
+        assertFalse(framer.offer(CREATURE));
+        assertTrue(framer.offer("0 0 0"));
+        assertEquals(CREATURE + "0 0 0", framer.getResponse());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void lineAfterTheEndIsRejected() {
+        ResponseFramer framer = new ResponseFramer("getsack 0");
+        framer.offer("1 2");
+        framer.offer("3 4");
+    }
+}
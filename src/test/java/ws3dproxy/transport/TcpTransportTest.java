@@ -0,0 +1,69 @@
+/*****************************************************************************
+ * Copyright 2026 DCA-FEEC-UNICAMP
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *****************************************************************************/
+package ws3dproxy.transport;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+/**
+ * The writer and the reader of the non-blocking channel work as those of the
+ * blocking streams, and share the lines with the transport.
+ */
+public class TcpTransportTest {
+
+    @Test
+    public void writerAndReaderOfTheChannel() throws Exception {
+        ServerSocket ss = new ServerSocket(0);
+        TcpTransport t = new TcpTransport("localhost", ss.getLocalPort(), false);
+        try {
+            t.open();
+            Socket peer = ss.accept();
+            PrintWriter server = new PrintWriter(peer.getOutputStream(), true);
+            BufferedReader fromClient = new BufferedReader(new InputStreamReader(peer.getInputStream()));
+
+            PrintWriter out = t.getWriter();
+            BufferedReader in = t.getReader();
+            assertNotNull(out);
+            assertNotNull(in);
+            out.println("getsimulpars ");
+            assertEquals("getsimulpars ", fromClient.readLine());
+
+            assertFalse(in.ready());
+            server.println("800 600 750.0 550.0");
+            server.println("1 next");
+            while (!in.ready()) {
+                Thread.sleep(1);
+            }
+            assertEquals("800 600 750.0 550.0", in.readLine());
+            //the reader did not take the next line from the transport
+            assertEquals("1 next", t.readLine());
+
+            peer.close();
+            assertNull(in.readLine());
+        } finally {
+            t.close();
+            ss.close();
+        }
+    }
+}